@@ -0,0 +1,156 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import eu.andreatt.ejerciciof_dein.service.EscritorCsv;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * La clase {@code DatosSinteticos} genera agendas de prueba con nombres y apellidos españoles.
+ * Los nombres y apellidos siguen una distribución de frecuencias parecida a la del padrón, de modo
+ * que, como en {@code prue.csv}, unos pocos valores se repiten mucho y hay una cola larga de valores
+ * raros, con tildes y eñes. Con la misma semilla se genera siempre la misma agenda.
+ */
+public final class DatosSinteticos {
+
+    /** Semilla usada por defecto en los benchmarks. */
+    public static final long SEMILLA = 20240917L;
+
+    private static final String[] NOMBRES = {
+            "María", "Antonio", "Manuel", "José", "Carmen", "Francisco", "Ana", "David", "Juan", "Laura",
+            "Javier", "Isabel", "Daniel", "Lucía", "Carlos", "Cristina", "Jesús", "Marta", "Alejandro", "Sofía",
+            "Miguel", "Elena", "Rafael", "Pilar", "Pablo", "Dolores", "Sergio", "Raquel", "Luis", "Andrea",
+            "Fernando", "Rosa", "Jorge", "Paula", "Alberto", "Sara", "Álvaro", "Teresa", "Diego", "Mercedes",
+            "Adrián", "Beatriz", "Raúl", "Nuria", "Iván", "Silvia", "Rubén", "Julia", "Óscar", "Irene",
+            "Enrique", "Patricia", "Ramón", "Montserrat", "Andrés", "Encarnación", "Vicente", "Rocío", "Joaquín", "Alba",
+            "Santiago", "Inmaculada", "Ignacio", "Ángela", "Hugo", "Noelia", "Íñigo", "Begoña", "Ane", "Maite",
+            "Aitor", "Nerea", "Xavier", "Montse", "Jordi", "Núria", "Xoán", "Uxía", "Iker", "Ainhoa"
+    };
+
+    private static final String[] APELLIDOS = {
+            "García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez", "Pérez", "Gómez", "Martín",
+            "Jiménez", "Hernández", "Ruiz", "Díaz", "Moreno", "Muñoz", "Álvarez", "Romero", "Gutiérrez", "Alonso",
+            "Navarro", "Torres", "Domínguez", "Ramos", "Vázquez", "Ramírez", "Gil", "Serrano", "Morales", "Molina",
+            "Blanco", "Suárez", "Castro", "Ortega", "Delgado", "Ortiz", "Marín", "Rubio", "Núñez", "Medina",
+            "Sanz", "Castillo", "Iglesias", "Cortés", "Garrido", "Santos", "Guerrero", "Lozano", "Cano", "Cruz",
+            "Méndez", "Flores", "Prieto", "Herrera", "Peña", "León", "Márquez", "Cabrera", "Gallego", "Calvo",
+            "Vidal", "Campos", "Reyes", "Vega", "Fuentes", "Carrasco", "Díez", "Aguilar", "Caballero", "Nieto",
+            "Etxeberria", "Goikoetxea", "Agirre", "Puig", "Ferrer", "Castaño", "Otero", "Varela", "Gonzalez", "Ibáñez"
+    };
+
+    /** Sílabas con las que se forma la cola larga de apellidos poco frecuentes. */
+    private static final String[] SILABAS = {
+            "al", "ba", "ca", "da", "e", "fa", "ga", "i", "ja", "la", "ma", "na", "ña", "o", "pa", "ra", "sa",
+            "ta", "u", "va", "za", "rez", "lla", "rro", "ño", "güe", "ción", "tx", "ko", "berri"
+    };
+
+    private static final double[] PESOS_NOMBRES = pesosZipf(NOMBRES.length, 1.0);
+    private static final double[] PESOS_APELLIDOS = pesosZipf(APELLIDOS.length, 0.9);
+
+    private DatosSinteticos() {
+    }
+
+    /**
+     * Genera una agenda de personas.
+     *
+     * @param filas   El número de personas.
+     * @param semilla La semilla del generador.
+     * @return Las personas generadas.
+     */
+    public static List<Persona> personas(int filas, long semilla) {
+        SplittableRandom aleatorio = new SplittableRandom(semilla);
+        List<Persona> personas = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            personas.add(new Persona(nombre(aleatorio), apellido(aleatorio), edad(aleatorio)));
+        }
+        return personas;
+    }
+
+    /**
+     * Devuelve un archivo CSV con una agenda generada, creándolo en el directorio temporal la primera vez.
+     * Los archivos se reutilizan entre ejecuciones porque generar los más grandes lleva varios segundos.
+     *
+     * @param filas   El número de personas.
+     * @param semilla La semilla del generador.
+     * @return El archivo CSV con encabezado.
+     * @throws IOException Si no se puede escribir el archivo.
+     */
+    public static Path csv(int filas, long semilla) throws IOException {
+        Path archivo = Path.of(System.getProperty("java.io.tmpdir"), "agenda-" + filas + "-" + semilla + ".csv");
+        if (Files.isRegularFile(archivo)) {
+            return archivo;
+        }
+        Path temporal = Files.createTempFile(archivo.getParent(), "agenda-", ".tmp");
+        SplittableRandom aleatorio = new SplittableRandom(semilla);
+        try (EscritorCsv escritor = new EscritorCsv(FileChannel.open(temporal, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))) {
+            escritor.escribirEncabezado();
+            for (int i = 0; i < filas; i++) {
+                escritor.escribirFila(nombre(aleatorio), apellido(aleatorio), edad(aleatorio));
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return archivo;
+    }
+
+    private static String nombre(SplittableRandom aleatorio) {
+        return NOMBRES[elegir(PESOS_NOMBRES, aleatorio)];
+    }
+
+    /**
+     * El 95 % de los apellidos sale de la lista de frecuentes; el resto se compone con sílabas
+     * para que también haya valores poco repetidos, como en una agenda real.
+     */
+    private static String apellido(SplittableRandom aleatorio) {
+        if (aleatorio.nextInt(100) < 95) {
+            return APELLIDOS[elegir(PESOS_APELLIDOS, aleatorio)];
+        }
+        StringBuilder apellido = new StringBuilder();
+        int silabas = 2 + aleatorio.nextInt(3);
+        for (int i = 0; i < silabas; i++) {
+            apellido.append(SILABAS[aleatorio.nextInt(SILABAS.length)]);
+        }
+        apellido.setCharAt(0, Character.toUpperCase(apellido.charAt(0)));
+        return apellido.toString();
+    }
+
+    /**
+     * Edad entre 0 y 99 con más peso en las edades adultas: media de dos uniformes, desplazada.
+     */
+    private static int edad(SplittableRandom aleatorio) {
+        return Math.min(99, (aleatorio.nextInt(90) + aleatorio.nextInt(90)) / 2 + aleatorio.nextInt(15));
+    }
+
+    /**
+     * Elige una posición según los pesos acumulados.
+     */
+    private static int elegir(double[] acumulados, SplittableRandom aleatorio) {
+        int pos = Arrays.binarySearch(acumulados, aleatorio.nextDouble());
+        return Math.min(acumulados.length - 1, pos >= 0 ? pos : -pos - 1);
+    }
+
+    /**
+     * Calcula los pesos acumulados y normalizados de una distribución de Zipf.
+     */
+    private static double[] pesosZipf(int n, double exponente) {
+        double[] acumulados = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, exponente);
+            acumulados[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            acumulados[i] /= total;
+        }
+        return acumulados;
+    }
+}
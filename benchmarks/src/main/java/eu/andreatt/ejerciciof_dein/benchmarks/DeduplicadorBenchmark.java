@@ -0,0 +1,72 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import eu.andreatt.ejerciciof_dein.service.Deduplicador;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el {@link Deduplicador} de la importación con todas las claves en memoria y obligándolo a
+ * desbordar a disco con el presupuesto mínimo. Dividiendo el tiempo entre las filas se comprueba
+ * que el coste por fila se mantiene al crecer el archivo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class DeduplicadorBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int filas;  // Número de filas que se depuran
+
+    @Param({"memoria", "disco"})
+    private String modo;  // "disco" usa el presupuesto mínimo para forzar el desbordamiento
+
+    private String[] nombres;
+    private String[] apellidos;
+    private int[] edades;
+
+    @Setup
+    public void preparar() {
+        List<Persona> personas = DatosSinteticos.personas(filas, DatosSinteticos.SEMILLA);
+        nombres = new String[filas];
+        apellidos = new String[filas];
+        edades = new int[filas];
+        for (int i = 0; i < filas; i++) {
+            Persona persona = personas.get(i);
+            nombres[i] = persona.getNombre();
+            apellidos[i] = persona.getApellido();
+            edades[i] = persona.getEdad();
+        }
+    }
+
+    @Benchmark
+    public long depurar() throws IOException {
+        long[] conservadas = {0};
+        long presupuesto = modo.equals("disco") ? 0 : Long.MAX_VALUE;
+        try (Deduplicador deduplicador = new Deduplicador((nombre, apellido, edad) -> conservadas[0]++,
+                presupuesto, Path.of(System.getProperty("java.io.tmpdir")))) {
+            for (int i = 0; i < filas; i++) {
+                deduplicador.recibir(nombres[i], apellidos[i], edades[i]);
+            }
+            deduplicador.terminar();
+            return conservadas[0] + deduplicador.duplicadas();
+        }
+    }
+}
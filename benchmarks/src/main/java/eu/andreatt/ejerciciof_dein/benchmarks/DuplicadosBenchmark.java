@@ -0,0 +1,87 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.IndicePersonas;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la detección de duplicados basada en {@code Persona.equals} y {@code hashCode}: la búsqueda
+ * lineal con {@code List.contains} que hacía antes el modal, la consulta al {@link IndicePersonas}
+ * y la eliminación de duplicados de toda la agenda con un {@code HashSet}.
+ * Las consultas mezclan personas que están en la agenda con personas nuevas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class DuplicadosBenchmark {
+
+    /** Número de personas que se buscan en cada invocación. */
+    private static final int CONSULTAS = 100;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int filas;  // Número de personas de la agenda
+
+    private ObservableList<Persona> personas;
+    private IndicePersonas indice;
+    private Persona[] consultas;
+
+    @Setup
+    public void preparar() {
+        personas = FXCollections.observableArrayList(DatosSinteticos.personas(filas, DatosSinteticos.SEMILLA));
+        indice = new IndicePersonas(personas);
+        // La mitad son copias de personas de la agenda y la otra mitad, de otra agenda generada con otra semilla
+        List<Persona> otras = DatosSinteticos.personas(CONSULTAS, DatosSinteticos.SEMILLA + 1);
+        consultas = new Persona[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            Persona origen = i % 2 == 0 ? personas.get((int) ((long) i * filas / CONSULTAS)) : otras.get(i);
+            consultas[i] = new Persona(origen.getNombre(), origen.getApellido(), origen.getEdad());
+        }
+    }
+
+    @Benchmark
+    public int busquedaLineal() {
+        int encontradas = 0;
+        for (Persona consulta : consultas) {
+            if (personas.contains(consulta)) {
+                encontradas++;
+            }
+        }
+        return encontradas;
+    }
+
+    @Benchmark
+    public int indiceHash() {
+        int encontradas = 0;
+        for (Persona consulta : consultas) {
+            if (indice.contiene(consulta)) {
+                encontradas++;
+            }
+        }
+        return encontradas;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int eliminarDuplicados() {
+        return new HashSet<>(personas).size();
+    }
+}
@@ -0,0 +1,102 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.service.EscritorCsv;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el bucle de escritura de {@code exportar}: las filas de una {@link InstantaneaAgenda}
+ * escritas con {@link EscritorCsv}, a un archivo real y a un canal que descarta los bytes
+ * (para separar el coste de componer y codificar las filas del de la escritura en disco).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ExportarCsvBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int filas;  // Número de personas exportadas
+
+    private InstantaneaAgenda agenda;
+    private Path archivo;
+
+    @Setup
+    public void preparar() throws IOException {
+        agenda = InstantaneaAgenda.de(DatosSinteticos.personas(filas, DatosSinteticos.SEMILLA));
+        archivo = Files.createTempFile("exportar-", ".csv");
+    }
+
+    @TearDown
+    public void limpiar() throws IOException {
+        Files.deleteIfExists(archivo);
+    }
+
+    @Benchmark
+    public long aArchivo() throws IOException {
+        return escribir(FileChannel.open(archivo, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    @Benchmark
+    public long sinDisco() throws IOException {
+        return escribir(new CanalNulo());
+    }
+
+    private long escribir(WritableByteChannel canal) throws IOException {
+        EscritorCsv escritor = new EscritorCsv(canal);
+        try (escritor) {
+            escritor.escribirEncabezado();
+            for (int i = 0, n = agenda.tamano(); i < n; i++) {
+                escritor.escribirFila(agenda.nombre(i), agenda.apellido(i), agenda.edad(i));
+            }
+        }
+        return escritor.bytesEscritos();
+    }
+
+    /**
+     * Canal que acepta y descarta todos los bytes.
+     */
+    private static final class CanalNulo implements WritableByteChannel {
+
+        private boolean abierto = true;
+
+        @Override
+        public int write(ByteBuffer origen) {
+            int bytes = origen.remaining();
+            origen.position(origen.limit());
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return abierto;
+        }
+
+        @Override
+        public void close() {
+            abierto = false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.IndiceBusqueda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Mide el filtrado de {@code filtrarPersonas}: el recorrido lineal con {@code contains} que se
+ * hacía antes, el mismo recorrido sobre las claves de búsqueda ya normalizadas de cada persona, la consulta al {@link IndiceBusqueda} y la aplicación del predicado a la
+ * {@code FilteredList} que muestra la tabla. Los textos cubren un filtro corto que coincide con
+ * mucho, uno selectivo y uno que no coincide con nada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class FiltrarPersonasBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int filas;  // Número de personas de la agenda
+
+    @Param({"ar", "gonz", "xyzw"})
+    private String texto;  // Texto del filtro, ya en minúsculas
+
+    private ObservableList<Persona> personas;
+    private IndiceBusqueda indice;
+    private FilteredList<Persona> filtradas;
+
+    @Setup
+    public void preparar() {
+        personas = FXCollections.observableArrayList(DatosSinteticos.personas(filas, DatosSinteticos.SEMILLA));
+        indice = new IndiceBusqueda(personas);
+        filtradas = new FilteredList<>(personas);
+    }
+
+    /**
+     * Recorre toda la lista pasando a minúsculas cada nombre y apellido.
+     */
+    @Benchmark
+    public int recorridoLineal() {
+        int coincidencias = 0;
+        for (Persona persona : personas) {
+            if (persona.getNombre().toLowerCase().contains(texto) || persona.getApellido().toLowerCase().contains(texto)) {
+                coincidencias++;
+            }
+        }
+        return coincidencias;
+    }
+
+    /**
+     * Recorre toda la lista comparando las claves normalizadas que guarda cada persona, sin crear cadenas.
+     */
+    @Benchmark
+    public int recorridoClaves() {
+        int coincidencias = 0;
+        for (Persona persona : personas) {
+            if (persona.claveNombre().contains(texto) || persona.claveApellido().contains(texto)) {
+                coincidencias++;
+            }
+        }
+        return coincidencias;
+    }
+
+    /**
+     * Resuelve la búsqueda en el índice y cuenta las coincidencias con el predicado resultante.
+     */
+    @Benchmark
+    public int indiceTrigramas() {
+        Predicate<Persona> predicado = indice.coincidencias(texto);
+        int coincidencias = 0;
+        for (Persona persona : personas) {
+            if (predicado.test(persona)) {
+                coincidencias++;
+            }
+        }
+        return coincidencias;
+    }
+
+    /**
+     * Aplica a la vista filtrada un predicado nuevo del índice, como hace la tabla al cambiar el filtro.
+     */
+    @Benchmark
+    public int vistaFiltrada() {
+        filtradas.setPredicate(indice.coincidencias(texto));
+        return filtradas.size();
+    }
+}
@@ -0,0 +1,81 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import eu.andreatt.ejerciciof_dein.service.LectorCsvParalelo;
+import eu.andreatt.ejerciciof_dein.service.PersonaCsv;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el análisis de un CSV de personas tal como lo hace {@code importar}: línea a línea con
+ * {@link PersonaCsv#parsear(String, long)} y en paralelo con {@link LectorCsvParalelo}.
+ * No incluye la publicación en la lista, que se hace en el hilo de JavaFX.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ImportarCsvBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int filas;  // Número de personas del archivo
+
+    private Path archivo;
+
+    @Setup
+    public void preparar() throws IOException {
+        archivo = DatosSinteticos.csv(filas, DatosSinteticos.SEMILLA);
+    }
+
+    /**
+     * Lectura secuencial con {@code BufferedReader}, como en los archivos pequeños.
+     */
+    @Benchmark
+    public long lineaALinea(Blackhole agujero) throws IOException {
+        long leidas = 0;
+        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            long numLinea = 1;
+            String linea = reader.readLine(); // Encabezado
+            while (linea != null && (linea = reader.readLine()) != null) {
+                numLinea++;
+                if (!linea.isEmpty()) {
+                    agujero.consume(PersonaCsv.parsear(linea, numLinea));
+                    leidas++;
+                }
+            }
+        }
+        return leidas;
+    }
+
+    /**
+     * Lectura en paralelo de trozos proyectados en memoria, como en los archivos grandes.
+     */
+    @Benchmark
+    public long paralelo(Blackhole agujero) throws IOException {
+        return new LectorCsvParalelo().leer(archivo, (personas, bytesHasta) -> {
+            for (Persona persona : personas) {
+                agujero.consume(persona);
+            }
+            return true;
+        });
+    }
+}
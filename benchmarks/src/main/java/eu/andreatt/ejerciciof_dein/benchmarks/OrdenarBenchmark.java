@@ -0,0 +1,74 @@
+package eu.andreatt.ejerciciof_dein.benchmarks;
+
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.OrdenPersonas;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la ordenación de la agenda por apellido y, a igualdad, por edad descendente: con un comparador
+ * sobre las propiedades de cada persona, como hacía la tabla con {@code SortedList}, y con
+ * {@link OrdenPersonas}, que ordena por claves {@code int}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class OrdenarBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int filas;  // Número de personas de la agenda
+
+    private List<Persona> personas;
+    private InstantaneaAgenda agenda;
+    private OrdenPersonas orden;
+    private Comparator<Persona> comparadorPropiedades;
+
+    @Setup
+    public void preparar() {
+        personas = DatosSinteticos.personas(filas, DatosSinteticos.SEMILLA);
+        agenda = InstantaneaAgenda.de(personas);
+        orden = new OrdenPersonas(List.of(new OrdenPersonas.Criterio(OrdenPersonas.Campo.APELLIDO, false),
+                new OrdenPersonas.Criterio(OrdenPersonas.Campo.EDAD, true)));
+        // Lo mismo que compone la tabla: el valor de la propiedad de cada celda, con la edad convertida en Integer
+        Comparator<Persona> porApellido = Comparator.comparing(persona -> persona.apellidoProperty().getValue());
+        Comparator<Persona> porEdad = Comparator.comparing(persona -> persona.edadProperty().asObject().getValue());
+        comparadorPropiedades = porApellido.thenComparing(porEdad.reversed());
+    }
+
+    @Benchmark
+    public List<Persona> comparadorPropiedades() {
+        List<Persona> copia = new ArrayList<>(personas);
+        copia.sort(comparadorPropiedades);
+        return copia;
+    }
+
+    @Benchmark
+    public List<Persona> comparadorColacion() {
+        List<Persona> copia = new ArrayList<>(personas);
+        copia.sort(orden.comparador());
+        return copia;
+    }
+
+    @Benchmark
+    public int[] clavesEnteras() {
+        return orden.ordenar(agenda);
+    }
+}
@@ -0,0 +1,123 @@
+package eu.andreatt.ejerciciof_dein.application;
+
+import eu.andreatt.ejerciciof_dein.model.OrdenPersonas;
+import eu.andreatt.ejerciciof_dein.service.FlujoAgenda;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * La clase {@code AgendaBatch} es la entrada de línea de comandos para procesar agendas sin interfaz
+ * gráfica, por ejemplo desde cron en un servidor sin pantalla. No inicializa JavaFX.
+ * <p>
+ * Uso: {@code AgendaBatch [opciones] entrada.csv salida.(csv|bin)}, con las opciones
+ * {@code --sin-duplicados}, {@code --texto TEXTO}, {@code --edad-min N}, {@code --edad-max N},
+ * {@code --ordenar CAMPOS} y {@code --formato csv|bin} (por defecto se deduce de la extensión de la salida).
+ * Los CSV de entrada o de salida terminados en {@code .gz} van comprimidos en gzip.
+ */
+public final class AgendaBatch {
+
+    private static final String USO = """
+            Uso: AgendaBatch [opciones] entrada.csv salida.(csv|bin)
+              --sin-duplicados   Conserva solo la primera aparición de cada nombre, apellido y edad
+              --texto TEXTO      Conserva las personas cuyo nombre o apellido contiene TEXTO
+              --edad-min N       Conserva las personas de N años o más
+              --edad-max N       Conserva las personas de N años o menos
+              --ordenar CAMPOS   Ordena por nombre, apellido y/o edad, separados por comas;
+                                 un guion delante ordena de mayor a menor (p. ej. apellido,-edad)
+              --formato csv|bin  Formato de salida (por defecto, según la extensión de la salida)
+            Los CSV terminados en .gz se leen y se escriben comprimidos en gzip.""";
+
+    private AgendaBatch() {
+    }
+
+    /**
+     * Procesa la agenda según los argumentos y muestra el recuento de filas en la salida de errores.
+     * Termina con código 0 si todo va bien, 1 si falla la lectura o escritura y 2 si los argumentos no son válidos.
+     *
+     * @param args Los argumentos de línea de comandos.
+     */
+    public static void main(String[] args) {
+        FlujoAgenda flujo = new FlujoAgenda();
+        FlujoAgenda.Formato formato = null;
+        int edadMinima = Integer.MIN_VALUE;
+        int edadMaxima = Integer.MAX_VALUE;
+        Path entrada = null;
+        Path salida = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--sin-duplicados" -> flujo.sinDuplicados();
+                    case "--texto" -> flujo.filtrarTexto(valor(args, ++i));
+                    case "--edad-min" -> edadMinima = Integer.parseInt(valor(args, ++i));
+                    case "--edad-max" -> edadMaxima = Integer.parseInt(valor(args, ++i));
+                    case "--ordenar" -> flujo.ordenarPor(orden(valor(args, ++i)));
+                    case "--formato" -> formato = switch (valor(args, ++i)) {
+                        case "csv" -> FlujoAgenda.Formato.CSV;
+                        case "bin" -> FlujoAgenda.Formato.BINARIO;
+                        default -> throw new IllegalArgumentException("Formato desconocido: " + args[i]);
+                    };
+                    default -> {
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                        } else if (entrada == null) {
+                            entrada = Path.of(args[i]);
+                        } else if (salida == null) {
+                            salida = Path.of(args[i]);
+                        } else {
+                            throw new IllegalArgumentException("Sobra el argumento: " + args[i]);
+                        }
+                    }
+                }
+            }
+            if (salida == null) {
+                throw new IllegalArgumentException("Faltan los archivos de entrada y salida");
+            }
+        } catch (IllegalArgumentException e) { // También NumberFormatException
+            System.err.println(e.getMessage());
+            System.err.println(USO);
+            System.exit(2);
+            return;
+        }
+        flujo.edadEntre(edadMinima, edadMaxima);
+
+        try {
+            FlujoAgenda.Resumen resumen = flujo.ejecutar(entrada, salida, formato != null ? formato : FlujoAgenda.Formato.de(salida));
+            double segundos = Math.max(1e-9, resumen.nanos() / 1e9);
+            System.err.printf("%,d filas leídas, %,d duplicadas, %,d filtradas, %,d escritas en %,.1f s (%,.0f filas/s)%n",
+                    resumen.leidas(), resumen.duplicadas(), resumen.filtradas(), resumen.escritas(),
+                    segundos, resumen.leidas() / segundos);
+        } catch (IOException e) {
+            System.err.println("Error al procesar la agenda: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Traduce una lista de campos como {@code apellido,-edad} en un orden de personas.
+     */
+    private static OrdenPersonas orden(String campos) {
+        List<OrdenPersonas.Criterio> criterios = new ArrayList<>();
+        for (String campo : campos.split(",")) {
+            boolean descendente = campo.startsWith("-");
+            String nombre = (descendente ? campo.substring(1) : campo).trim().toUpperCase(Locale.ROOT);
+            try {
+                criterios.add(new OrdenPersonas.Criterio(OrdenPersonas.Campo.valueOf(nombre), descendente));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Campo de ordenación desconocido: " + campo);
+            }
+        }
+        return new OrdenPersonas(criterios);
+    }
+
+    private static String valor(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Falta el valor de " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
@@ -1,12 +1,17 @@
 package eu.andreatt.ejerciciof_dein.application;
 
+import eu.andreatt.ejerciciof_dein.controller.HelloController;
+import eu.andreatt.ejerciciof_dein.metricas.Metricas;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * La clase {@code HelloApplication} es la entrada principal de la aplicación JavaFX.
@@ -14,9 +19,28 @@ import java.io.IOException;
  */
 public class HelloApplication extends Application {
 
+    /** Archivo binario donde se compacta la agenda y desde el que se restaura al arrancar. */
+    public static final Path ARCHIVO_SESION = Path.of(System.getProperty("user.home"), ".ejerciciof", "agenda.bin");
+
+    /** Diario donde se registra cada cambio de la agenda desde la última compactación. */
+    public static final Path ARCHIVO_DIARIO = ARCHIVO_SESION.resolveSibling("agenda.diario");
+
+    /** Propiedad del sistema con un archivo CSV o una carpeta que se empieza a seguir al arrancar. */
+    public static final String PROPIEDAD_SEGUIR = "agenda.seguir";
+
+    /** Propiedad del sistema con el puerto local en el que se atienden consultas HTTP sobre la agenda. */
+    public static final String PROPIEDAD_PUERTO_CONSULTAS = "agenda.http.puerto";
+
+    private HelloController controller;  // Controlador de la ventana principal
+
     /**
      * El método {@code start} es el punto de entrada de la aplicación JavaFX.
      * Carga la interfaz desde un archivo FXML y establece las dimensiones mínimas de la ventana.
+     * Mide los pulsos de la escena y muestra u oculta el resumen de métricas con F12.
+     * Después restaura en segundo plano la agenda de la sesión anterior, aplicando el diario de cambios,
+     * empieza a seguir el archivo o carpeta indicado en {@value #PROPIEDAD_SEGUIR}, si lo hay,
+     * arranca el servidor de consultas si se indica su puerto en {@value #PROPIEDAD_PUERTO_CONSULTAS}
+     * y prepara la ventana modal del editor para que la primera apertura sea inmediata.
      *
      * @param stage El escenario principal (ventana) de la aplicación.
      * @throws IOException Si no se puede cargar el archivo FXML.
@@ -32,6 +56,34 @@ public class HelloApplication extends Application {
         stage.setTitle("PERSONAS"); // Título de la ventana
         stage.setScene(scene);
         stage.show(); // Mostrar la ventana
+
+        controller = fxmlLoader.getController();
+        Metricas.medirPulsos(scene);
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.F12), controller::alternarMetricas);
+        controller.abrirSesion(ARCHIVO_SESION, ARCHIVO_DIARIO);
+        String seguir = System.getProperty(PROPIEDAD_SEGUIR);
+        if (seguir != null && !seguir.isBlank()) {
+            controller.seguir(Path.of(seguir));
+        }
+        String puerto = System.getProperty(PROPIEDAD_PUERTO_CONSULTAS);
+        if (puerto != null && !puerto.isBlank()) {
+            controller.arrancarServidorConsultas(puerto); // Muestra la dirección o el error en la ventana
+        }
+        controller.precargarEditor();
+    }
+
+    /**
+     * El método {@code stop} se llama al cerrar la aplicación. Compacta el diario en el archivo de sesión.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            try {
+                controller.cerrarSesion();
+            } catch (IOException e) {
+                System.err.println("No se pudo guardar la sesión: " + e.getMessage());
+            }
+        }
     }
 
     /**
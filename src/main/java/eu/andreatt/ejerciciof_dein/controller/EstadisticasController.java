@@ -0,0 +1,112 @@
+package eu.andreatt.ejerciciof_dein.controller;
+
+import eu.andreatt.ejerciciof_dein.model.EstadisticasAgenda;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.util.Duration;
+
+/**
+ * Controlador de la ventana de estadísticas: un histograma de edades, los apellidos más frecuentes
+ * y un resumen con el total y la edad media.
+ * <p>
+ * Las estadísticas se mantienen al día con la lista en {@link EstadisticasAgenda}; la ventana solo
+ * las lee cada poco tiempo mientras está abierta y no redibuja nada si no han cambiado, de modo que
+ * una importación grande no provoca un redibujado por cada lote.
+ */
+public class EstadisticasController {
+
+    /** Apellidos que se muestran en la tabla de frecuencias. */
+    private static final int APELLIDOS_MOSTRADOS = 15;
+
+    /** Intervalo entre dos lecturas de las estadísticas mientras la ventana está abierta. */
+    private static final Duration INTERVALO_REFRESCO = Duration.millis(500);
+
+    @FXML
+    private Label lblResumen;  // Total de personas, edad media y apellidos distintos
+
+    @FXML
+    private BarChart<String, Number> graficoEdades;  // Personas por tramo de edad
+
+    @FXML
+    private TableView<EstadisticasAgenda.Frecuencia> tablaApellidos;  // Apellidos más frecuentes
+
+    @FXML
+    private TableColumn<EstadisticasAgenda.Frecuencia, String> colApellido;  // Columna del apellido
+
+    @FXML
+    private TableColumn<EstadisticasAgenda.Frecuencia, Number> colPersonas;  // Columna del número de personas
+
+    private EstadisticasAgenda estadisticas;  // Estadísticas que se muestran
+    private final XYChart.Series<String, Number> serieEdades = new XYChart.Series<>();  // Una barra por tramo
+    private Timeline refresco;  // Lee las estadísticas periódicamente mientras la ventana está abierta
+    private long versionMostrada = -1;  // Versión de las estadísticas que se está mostrando
+
+    /**
+     * Prepara las columnas, las barras del histograma y el refresco periódico.
+     */
+    @FXML
+    public void initialize() {
+        colApellido.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(cellData.getValue().apellido()));
+        colPersonas.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().personas()));
+
+        // Las barras se crean una vez; al refrescar solo cambia su altura
+        for (int tramo = 0; tramo < EstadisticasAgenda.TRAMOS; tramo++) {
+            serieEdades.getData().add(new XYChart.Data<>(EstadisticasAgenda.etiquetaTramo(tramo), 0));
+        }
+        graficoEdades.getData().add(serieEdades);
+
+        refresco = new Timeline(new KeyFrame(INTERVALO_REFRESCO, e -> refrescar()));
+        refresco.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Establece las estadísticas que muestra la ventana.
+     *
+     * @param estadisticas Estadísticas de la agenda.
+     */
+    public void setEstadisticas(EstadisticasAgenda estadisticas) {
+        this.estadisticas = estadisticas;
+        versionMostrada = -1;
+    }
+
+    /**
+     * Muestra las estadísticas actuales y empieza a refrescarlas periódicamente.
+     */
+    public void iniciar() {
+        refrescar();
+        refresco.play();
+    }
+
+    /**
+     * Deja de refrescar las estadísticas, por ejemplo al ocultar la ventana.
+     */
+    public void detener() {
+        refresco.stop();
+    }
+
+    /**
+     * Vuelca las estadísticas en la ventana si han cambiado desde la última vez.
+     */
+    private void refrescar() {
+        if (estadisticas == null || estadisticas.version() == versionMostrada) {
+            return;
+        }
+        versionMostrada = estadisticas.version();
+
+        for (int tramo = 0; tramo < EstadisticasAgenda.TRAMOS; tramo++) {
+            serieEdades.getData().get(tramo).setYValue(estadisticas.personasEnTramo(tramo));
+        }
+        tablaApellidos.getItems().setAll(estadisticas.apellidosMasFrecuentes(APELLIDOS_MOSTRADOS));
+        lblResumen.setText(String.format("%,d personas, edad media %.1f, %,d apellidos distintos",
+                estadisticas.total(), estadisticas.edadMedia(), estadisticas.apellidosDistintos()));
+    }
+}
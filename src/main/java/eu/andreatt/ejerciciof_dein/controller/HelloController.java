@@ -1,10 +1,33 @@
 package eu.andreatt.ejerciciof_dein.controller;
 
+import eu.andreatt.ejerciciof_dein.metricas.EventoFiltro;
+import eu.andreatt.ejerciciof_dein.metricas.EventoVentanaModal;
+import eu.andreatt.ejerciciof_dein.metricas.Metricas;
+import eu.andreatt.ejerciciof_dein.model.ConsultaPersonas;
+import eu.andreatt.ejerciciof_dein.model.EstadisticasAgenda;
+import eu.andreatt.ejerciciof_dein.model.IndiceBusqueda;
+import eu.andreatt.ejerciciof_dein.model.IndicePersonas;
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.ListaPersonas;
+import eu.andreatt.ejerciciof_dein.model.OrdenPersonas;
 import eu.andreatt.ejerciciof_dein.model.Persona;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import eu.andreatt.ejerciciof_dein.model.VistaOrdenada;
+import eu.andreatt.ejerciciof_dein.service.DiarioCambios;
+import eu.andreatt.ejerciciof_dein.service.ExportarCsvTask;
+import eu.andreatt.ejerciciof_dein.service.ImportarCsvTask;
+import eu.andreatt.ejerciciof_dein.service.ImportarVariosCsvTask;
+import eu.andreatt.ejerciciof_dein.service.ListaCsvPaginada;
+import eu.andreatt.ejerciciof_dein.service.PersonaCsv;
+import eu.andreatt.ejerciciof_dein.service.SeguidorCsv;
+import eu.andreatt.ejerciciof_dein.service.ServidorConsultas;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
 import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -15,11 +38,17 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 
 
 import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Controlador de la interfaz gráfica de la aplicación que gestiona una tabla de personas.
@@ -27,11 +56,17 @@ import java.util.stream.Collectors;
  */
 public class HelloController {
 
+    /** Retardo por defecto entre la última pulsación en el filtro y su aplicación. */
+    public static final Duration RETARDO_FILTRO = Duration.millis(200);
+
+    /** Intervalo mínimo entre dos instantáneas publicadas para el servidor de consultas. */
+    public static final Duration INTERVALO_INSTANTANEAS = Duration.millis(250);
+
     @FXML
     private Button btnAgregarPersona;  // Botón para agregar una nueva persona
 
     @FXML
-    private Button btnEliminar;  // Botón para eliminar una persona seleccionada
+    private Button btnEliminar;  // Botón para eliminar las personas seleccionadas
 
     @FXML
     private Button btnModificar;  // Botón para modificar una persona seleccionada
@@ -57,8 +92,57 @@ public class HelloController {
     @FXML
     private TableColumn<Persona, Integer> colEdad;  // Columna para mostrar la edad de la persona
 
+    @FXML
+    private ProgressBar barraProgreso;  // Progreso de la importación o exportación en curso
+
+    @FXML
+    private Label lblEstado;  // Filas o bytes procesados y velocidad de la tarea en curso
+
+    @FXML
+    private Button btnCancelarTarea;  // Botón para cancelar la tarea en segundo plano
+
+    @FXML
+    private Button btnSeguir;  // Botón para empezar o dejar de seguir un archivo CSV
+
+    @FXML
+    private Button btnAbrirGrande;  // Botón para abrir o cerrar un archivo grande en solo lectura
+
+    @FXML
+    private Label lblMetricas;  // Resumen de las métricas de rendimiento, oculto por defecto
+
     private FileChooser fileChooser;
-    private ObservableList<Persona> listaPersonas = FXCollections.observableArrayList();
+    private Task<?> tareaActual;  // Tarea de importación o exportación en curso, o null
+    // La lista avisa de las ediciones de una persona como actualizaciones para la vista filtrada y ordenada
+    private final ListaPersonas listaPersonas = new ListaPersonas();
+    private final IndicePersonas indicePersonas = new IndicePersonas(listaPersonas);  // Detección de duplicados
+    private final IndiceBusqueda indiceBusqueda = new IndiceBusqueda(listaPersonas);  // Búsqueda por nombre, apellido y edad
+    private final EstadisticasAgenda estadisticas = new EstadisticasAgenda(listaPersonas);  // Histograma de edades y apellidos
+    private final FilteredList<Persona> personasFiltradas = new FilteredList<>(listaPersonas);  // Vista filtrada
+    private final VistaOrdenada personasOrdenadas = new VistaOrdenada(personasFiltradas);  // Vista que muestra la tabla
+    private PauseTransition retardoFiltro;  // Agrupa las pulsaciones seguidas en el filtro
+    private String filtroAplicado = "";  // Último filtro aplicado a la vista
+    private long ultimaPulsacion;  // Instante de la última pulsación en el filtro, para medir su latencia
+    private Timeline refrescoMetricas;  // Actualiza el resumen de métricas mientras está visible
+    private CompletableFuture<FXMLLoader> editorPrecargado;  // Carga en segundo plano del FXML del modal, o null
+    private Stage ventanaEditor;  // Ventana modal que se reutiliza en cada alta o modificación
+    private ModalEController controladorEditor;  // Controlador de la ventana modal reutilizada
+    private Stage ventanaEstadisticas;  // Ventana de estadísticas, que se crea al abrirla por primera vez
+    private SeguidorCsv seguidor;  // Seguimiento del archivo o carpeta al que se añaden personas, o null
+    private int seguimientos;  // Seguimientos empezados, para descartar los lotes que lleguen de uno ya detenido
+    private boolean restaurandoSesion;  // La sesión anterior se está cargando y todavía reemplazará la lista
+    private Path seguimientoPendiente;  // Archivo o carpeta que se empezará a seguir al restaurar la sesión
+    private DiarioCambios diario;  // Diario donde se registra cada cambio de la agenda, o null hasta abrir la sesión
+    private boolean errorDiarioAvisado;  // Ya se ha avisado de que el diario ha dejado de escribir
+    private ListaCsvPaginada archivoGrande;  // Archivo que muestra la tabla en lugar de la agenda, o null
+    private ServidorConsultas servidorConsultas;  // Servidor HTTP local de consultas, o null si no se ha arrancado
+    private PauseTransition retardoInstantanea;  // Agrupa los cambios de la agenda en una sola instantánea
+    private String estadoPendiente;  // Último mensaje llegado mientras una tarea ocupaba la barra de estado, o null
+    private InstantaneaAgenda.Seguimiento instantaneas;  // Bloques de la agenda que han cambiado desde la última instantánea
+    private final ListChangeListener<Persona> oyenteInstantanea = cambio -> {
+        if (retardoInstantanea.getStatus() != Animation.Status.RUNNING) {
+            retardoInstantanea.playFromStart();
+        }
+    };  // Programa una instantánea nueva tras cada cambio de la agenda
 
     /**
      * Inicializa los elementos de la tabla, asignando los valores de las columnas correspondientes
@@ -72,27 +156,95 @@ public class HelloController {
         colApellido.setCellValueFactory(cellData -> cellData.getValue().apellidoProperty());
         colEdad.setCellValueFactory(cellData -> cellData.getValue().edadProperty().asObject());
 
-        tabla.setItems(listaPersonas);
+        // La tabla muestra siempre la misma vista; al ordenar o filtrar solo cambian su orden y su predicado
+        tabla.setSortPolicy(t -> {
+            personasOrdenadas.setOrden(ordenDeLaTabla());
+            return true;
+        });
+        tabla.setItems(personasOrdenadas);
+        tabla.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);  // Permite eliminar varias a la vez
+
+        // Filtrar personas cuando se deja de escribir durante el retardo configurado
+        retardoFiltro = new PauseTransition(RETARDO_FILTRO);
+        retardoFiltro.setOnFinished(e -> filtrarPersonas(txtFiltro.getText()));
+        txtFiltro.textProperty().addListener((observable, oldValue, newValue) -> {
+            ultimaPulsacion = System.nanoTime();
+            retardoFiltro.playFromStart();
+        });
+
+        // El resumen de métricas se refresca cada segundo solo mientras se muestra
+        lblMetricas.managedProperty().bind(lblMetricas.visibleProperty());
+        refrescoMetricas = new Timeline(new KeyFrame(Duration.seconds(1), e -> lblMetricas.setText(Metricas.resumen())));
+        refrescoMetricas.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Traduce las columnas por las que el usuario ha ordenado la tabla en un orden de personas.
+     *
+     * @return El orden, o {@code null} si la tabla no está ordenada.
+     */
+    private OrdenPersonas ordenDeLaTabla() {
+        List<OrdenPersonas.Criterio> criterios = new ArrayList<>();
+        for (TableColumn<Persona, ?> columna : tabla.getSortOrder()) {
+            OrdenPersonas.Campo campo = columna == colNombre ? OrdenPersonas.Campo.NOMBRE
+                    : columna == colApellido ? OrdenPersonas.Campo.APELLIDO : OrdenPersonas.Campo.EDAD;
+            criterios.add(new OrdenPersonas.Criterio(campo, columna.getSortType() == TableColumn.SortType.DESCENDING));
+        }
+        return criterios.isEmpty() ? null : new OrdenPersonas(criterios);
+    }
 
-        // Filtrar personas
-        txtFiltro.textProperty().addListener((observable, oldValue, newValue) -> filtrarPersonas(newValue));
+    /**
+     * Muestra u oculta el resumen de métricas de rendimiento bajo la barra de estado.
+     */
+    public void alternarMetricas() {
+        boolean mostrar = !lblMetricas.isVisible();
+        lblMetricas.setVisible(mostrar);
+        if (mostrar) {
+            lblMetricas.setText(Metricas.resumen());
+            refrescoMetricas.play();
+        } else {
+            refrescoMetricas.stop();
+        }
+    }
+
+    /**
+     * Establece el retardo entre la última pulsación en el campo de filtro y la aplicación del filtro.
+     * Con un retardo de cero el filtro se aplica en la siguiente pulsación del temporizador.
+     *
+     * @param retardo El nuevo retardo.
+     */
+    public void setRetardoFiltro(Duration retardo) {
+        retardoFiltro.setDuration(retardo);
     }
 
     /**
-     * Filtra las personas de la lista en función del texto ingresado en el campo de búsqueda.
-     * Si no se proporciona ningún filtro, se muestran todas las personas.
+     * Filtra las personas de la lista según la consulta escrita en el campo de búsqueda, por ejemplo
+     * {@code apellido:López edad>=30} (ver {@link ConsultaPersonas}). Si no se proporciona ningún filtro,
+     * se muestran todas las personas. Si la consulta no es válida, se indica en la barra de estado y se
+     * mantiene el filtro anterior. Solo se cambia el predicado de la vista filtrada, por lo que la tabla
+     * conserva la selección y el orden.
      *
-     * @param filtro El texto utilizado para filtrar las personas.
+     * @param filtro La consulta utilizada para filtrar las personas.
      */
     private void filtrarPersonas(String filtro) {
-        if (filtro == null || filtro.isEmpty()) {
-            tabla.setItems(listaPersonas);
-        } else {
-            List<Persona> filtrada = listaPersonas.stream()
-                    .filter(p -> p.getNombre().toLowerCase().contains(filtro.toLowerCase()))
-                    .collect(Collectors.toList());
-            tabla.setItems(FXCollections.observableArrayList(filtrada));
+        String texto = filtro == null ? "" : filtro.trim();
+        if (texto.equals(filtroAplicado)) {
+            return; // Las pulsaciones agrupadas han dejado el mismo filtro
+        }
+        ConsultaPersonas consulta;
+        try {
+            consulta = ConsultaPersonas.compilar(texto);
+        } catch (IllegalArgumentException e) {
+            mostrarEstado("Consulta no válida: " + e.getMessage());
+            return;
         }
+        filtroAplicado = texto;
+        EventoFiltro evento = new EventoFiltro();
+        evento.iniciar();
+
+        // Los índices resuelven la consulta una vez; el predicado solo consulta el resultado
+        personasFiltradas.setPredicate(indiceBusqueda.consultar(consulta));
+        Metricas.registrarFiltro(evento, texto, personasFiltradas.size(), ultimaPulsacion);
     }
 
 
@@ -108,38 +260,46 @@ public class HelloController {
     }
 
     /**
-     * Acción que se ejecuta al hacer clic en el botón "Eliminar". Elimina la persona seleccionada
+     * Acción que se ejecuta al hacer clic en el botón "Eliminar". Elimina las personas seleccionadas
      * de la tabla después de confirmar la acción a través de una ventana emergente.
      *
      * @param event Evento que se dispara al hacer clic en el botón.
      */
     @FXML
     void eliminar(ActionEvent event) {
-        Persona personaSeleccionada = tabla.getSelectionModel().getSelectedItem(); // Obtiene la persona seleccionada
+        List<Persona> seleccionadas = List.copyOf(tabla.getSelectionModel().getSelectedItems()); // Obtiene las personas seleccionadas
 
-        if (personaSeleccionada != null) {
-            confirmarEliminacion(event, personaSeleccionada); // Confirma la eliminación de la persona
+        if (!seleccionadas.isEmpty()) {
+            confirmarEliminacion(event, seleccionadas); // Confirma la eliminación de las personas
         } else {
             mostrarAlertError(((Button) event.getSource()).getScene().getWindow(), "Por favor, selecciona una persona para eliminar."); // Muestra error si no hay selección
         }
     }
 
     /**
-     * Confirma la eliminación de una persona mostrando una ventana de confirmación.
-     * Si el usuario acepta, se elimina la persona seleccionada de la tabla.
+     * Confirma la eliminación de las personas seleccionadas mostrando una ventana de confirmación.
+     * Si el usuario acepta, se eliminan todas de la lista en un solo lote, con una única pasada
+     * y un único cambio para la tabla.
      *
      * @param event Evento que dispara la acción.
-     * @param personaSeleccionada La persona que se va a eliminar.
+     * @param seleccionadas Las personas que se van a eliminar.
      */
-    private void confirmarEliminacion(ActionEvent event, Persona personaSeleccionada) {
+    private void confirmarEliminacion(ActionEvent event, List<Persona> seleccionadas) {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION); // Crea una alerta de confirmación
         alert.setTitle("Confirmar eliminación"); // Título de la alerta
         alert.setHeaderText(null); // Sin encabezado
-        alert.setContentText("¿Estás seguro de que deseas eliminar a " + personaSeleccionada.getNombre() + "?"); // Contenido de la alerta
+        alert.setContentText(seleccionadas.size() == 1
+                ? "¿Estás seguro de que deseas eliminar a " + seleccionadas.get(0).getNombre() + "?"
+                : String.format("¿Estás seguro de que deseas eliminar a %,d personas?", seleccionadas.size())); // Contenido de la alerta
 
         // Muestra la alerta y espera la respuesta
         if (alert.showAndWait().get() == ButtonType.OK) {
-            tabla.getItems().remove(personaSeleccionada); // Elimina la persona de la lista
+            tabla.getSelectionModel().clearSelection(); // La tabla no tiene que recolocar la selección fila a fila
+            listaPersonas.lote().eliminarTodas(seleccionadas).confirmar(); // Elimina las personas de la lista
+            if (diario != null) {
+                seleccionadas.forEach(diario::registrarBaja); // Registra las bajas en el diario
+                compactarSiConviene();
+            }
         }
     }
 
@@ -196,35 +356,32 @@ public class HelloController {
      * @param persona La persona a modificar, o null si se está agregando una nueva.
      */
     private void ventanaModal(String titulo, Persona persona) {
+        EventoVentanaModal evento = new EventoVentanaModal();
+        evento.iniciar();
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/eu/andreatt/ejerciciof_dein/fxml/modalF.fxml"));
-            Parent root = loader.load();
-
-            // Obtener el controlador del modal
-            ModalEController modalController = loader.getController();
+            // Obtener el controlador del modal, creando la ventana si aún no existe
+            ModalEController modalController = editor();
 
-            // Pasar la lista de personas al controlador del modal
-            modalController.setPersonas(tabla.getItems());
+            // Pasar la lista de personas y su índice al controlador del modal
+            modalController.setPersonas(listaPersonas);
+            modalController.setIndice(indicePersonas);
+            modalController.setDiario(diario);
 
             if (persona != null) {
                 modalController.cargarPersona(persona); // Cargar los datos de la persona en el modal
+            } else {
+                modalController.prepararAlta(); // Vaciar lo que quedara de la vez anterior
             }
 
-            // Crear la nueva escena y la ventana modal
-            Scene newScene = new Scene(root);
-            Stage newStage = new Stage();
-            newStage.initModality(Modality.APPLICATION_MODAL);  // Define la ventana como modal
-            newStage.setResizable(false);  // No permite redimensionar la ventana
-            newStage.setWidth(300);  // Establece el ancho de la ventana
-            newStage.setHeight(200);  // Establece la altura de la ventana
-            newStage.setScene(newScene);  // Asocia la escena con la ventana
-            newStage.setTitle(titulo);  // Título de la ventana
+            ventanaEditor.setTitle(titulo);  // Título de la ventana
+            ventanaEditor.setOnShown(e -> Metricas.registrarVentanaModal(evento, titulo));  // Mide hasta que se ve
 
             // Mostrar la ventana modal y esperar a que se cierre
-            newStage.showAndWait();
+            ventanaEditor.showAndWait();
 
             // Actualizar la tabla una vez que se cierra el modal
             tabla.refresh();
+            compactarSiConviene();
 
         } catch (IOException e) {
             // Muestra un mensaje de error si ocurre una excepción al cargar el modal
@@ -236,6 +393,81 @@ public class HelloController {
         }
     }
 
+    /**
+     * Empieza a cargar en segundo plano el FXML de la ventana modal, de modo que la primera vez que
+     * se abra ya esté lista. Los nodos pueden crearse fuera del hilo de JavaFX mientras no formen
+     * parte de una escena visible; la escena y la ventana se crean después en el hilo de JavaFX.
+     */
+    public void precargarEditor() {
+        if (editorPrecargado != null) {
+            return;
+        }
+        editorPrecargado = CompletableFuture.supplyAsync(() -> {
+            try {
+                FXMLLoader loader = nuevoLoaderEditor();
+                loader.load();
+                return loader;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        editorPrecargado.thenAccept(loader -> Platform.runLater(() -> {
+            if (ventanaEditor == null) {
+                crearVentanaEditor(loader);
+                ventanaEditor.getScene().getRoot().applyCss(); // Adelanta la carga de estilos y skins
+            }
+        }));
+    }
+
+    /**
+     * Devuelve el controlador de la ventana modal, creando la ventana la primera vez. Si la carga
+     * en segundo plano sigue en curso se espera a que termine; si falló, se carga aquí.
+     *
+     * @return El controlador de la ventana modal reutilizable.
+     * @throws IOException Si no se puede cargar el FXML del modal.
+     */
+    private ModalEController editor() throws IOException {
+        if (ventanaEditor == null) {
+            FXMLLoader loader = null;
+            if (editorPrecargado != null) {
+                try {
+                    loader = editorPrecargado.get();
+                } catch (ExecutionException e) {
+                    loader = null; // Se vuelve a intentar en el hilo de JavaFX, que informará del error
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (loader == null) {
+                loader = nuevoLoaderEditor();
+                loader.load();
+            }
+            crearVentanaEditor(loader);
+        }
+        return controladorEditor;
+    }
+
+    private FXMLLoader nuevoLoaderEditor() {
+        return new FXMLLoader(getClass().getResource("/eu/andreatt/ejerciciof_dein/fxml/modalF.fxml"));
+    }
+
+    /**
+     * Crea la escena y la ventana modal que se reutilizarán en cada apertura.
+     * Cerrar la ventana solo la oculta, así que sus nodos y su controlador se conservan.
+     *
+     * @param loader El cargador que ya ha cargado el FXML del modal.
+     */
+    private void crearVentanaEditor(FXMLLoader loader) {
+        Parent root = loader.getRoot();
+        controladorEditor = loader.getController();
+        ventanaEditor = new Stage();
+        ventanaEditor.initModality(Modality.APPLICATION_MODAL);  // Define la ventana como modal
+        ventanaEditor.setResizable(false);  // No permite redimensionar la ventana
+        ventanaEditor.setWidth(300);  // Establece el ancho de la ventana
+        ventanaEditor.setHeight(200);  // Establece la altura de la ventana
+        ventanaEditor.setScene(new Scene(root));  // Asocia la escena con la ventana
+    }
+
     /**
      * Acción que se ejecuta al hacer clic en el botón "Exportar". Permite al usuario exportar
      * los datos de las personas en la tabla a un archivo CSV.
@@ -247,29 +479,27 @@ public class HelloController {
         Stage stage = new Stage();
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Exportar archivo CSV");
-        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        FileChooser.ExtensionFilter filtroGzip = new FileChooser.ExtensionFilter("CSV comprimido", "*.csv.gz");
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV Files", "*.csv"), filtroGzip);
 
         // Mostrar el cuadro de diálogo de guardar
         File archivoGuardar = fileChooser.showSaveDialog(stage);
 
         if (archivoGuardar != null) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(archivoGuardar))) {
-                // Encabezado del archivo CSV
-                writer.write("Nombre,Apellido,Edad\n");
-
-                // Recorrer los items de la tabla y escribir cada persona en el archivo
-                for (Persona persona : tabla.getItems()) {
-                    writer.write(persona.getNombre() + "," + persona.getApellido() + "," + persona.getEdad() + "\n");
-                }
-            } catch (IOException e) {
-                mostrarAlertError(stage, "Error al exportar archivo: " + e.getMessage());
+            if (fileChooser.getSelectedExtensionFilter() == filtroGzip && !PersonaCsv.comprimido(archivoGuardar.toPath())) {
+                // Se eligió el CSV comprimido sin escribir la extensión, que es la que decide el formato
+                archivoGuardar = new File(archivoGuardar.getPath() + (archivoGuardar.getName().endsWith(".csv") ? ".gz" : ".csv.gz"));
             }
+            // La tarea copia ahora los items de la tabla y escribe el archivo en segundo plano
+            ejecutarTarea(new ExportarCsvTask(archivoGuardar, tabla.getItems()), "Error al exportar archivo: ");
         }
     }
 
     /**
      * Acción que se ejecuta al hacer clic en el botón "Importar". Permite al usuario importar
-     * datos de personas desde un archivo CSV y mostrarlos en la tabla.
+     * datos de personas desde uno o varios archivos CSV y mostrarlos en la tabla.
+     * Un solo archivo reemplaza el contenido de la tabla; varios se leen a la vez y sus personas
+     * se añaden a las que ya había.
      *
      * @param event Evento que se dispara al hacer clic en el botón.
      */
@@ -277,34 +507,510 @@ public class HelloController {
     void importar(ActionEvent event) {
         Stage stage = new Stage();
         FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Importar archivo CSV");
+        fileChooser.setTitle("Importar archivos CSV");
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV Files", "*.csv", "*.csv.gz"));
+
+        List<File> archivosSeleccionados = fileChooser.showOpenMultipleDialog(stage);
+        if (archivosSeleccionados == null || archivosSeleccionados.isEmpty()) {
+            return;
+        }
+        // La importación no pasa por el diario: solo si termina bien se compacta el estado completo.
+        // Si se cancela o falla, la lista conserva lo que tenía y la agenda guardada sigue valiendo.
+        if (archivosSeleccionados.size() == 1) {
+            // La tarea reemplaza el contenido de la lista con las personas del archivo
+            ImportarCsvTask tarea = new ImportarCsvTask(archivosSeleccionados.get(0), listaPersonas);
+            tarea.setOnSucceeded(e -> compactarSesion());
+            ejecutarTarea(tarea, "Error al importar archivo: ");
+        } else {
+            // Cada archivo se lee en su propio hilo; las personas nuevas se añaden de una vez al terminar
+            ImportarVariosCsvTask varios = new ImportarVariosCsvTask(archivosSeleccionados, listaPersonas, indicePersonas::contiene);
+            varios.setOnSucceeded(e -> {
+                compactarSesion();
+                avisarArchivosFallidos(varios.getResultados());
+            });
+            ejecutarTarea(varios, "Error al importar archivos: ");
+        }
+    }
+
+    /**
+     * Muestra un aviso con los archivos de una importación múltiple que no se han podido importar.
+     *
+     * @param resultados El resultado de cada archivo.
+     */
+    private void avisarArchivosFallidos(List<ImportarVariosCsvTask.ResultadoArchivo> resultados) {
+        StringBuilder errores = new StringBuilder();
+        for (ImportarVariosCsvTask.ResultadoArchivo resultado : resultados) {
+            if (resultado.fallido()) {
+                errores.append(resultado.archivo().getName()).append(": ").append(resultado.error()).append('\n');
+            }
+        }
+        if (!errores.isEmpty()) {
+            mostrarAlert(tabla.getScene().getWindow(), Alert.AlertType.WARNING, "Importación incompleta",
+                    "Los siguientes archivos no se han importado:\n" + errores);
+        }
+    }
+
+    /**
+     * Acción que se ejecuta al hacer clic en el botón "Abrir grande". Muestra en la tabla, en solo lectura,
+     * un archivo CSV demasiado grande para importarlo: solo se leen las filas que se ven, así que la primera
+     * pantalla aparece enseguida y la memoria no depende del tamaño del archivo. Si ya se está mostrando
+     * uno, se cierra y la tabla vuelve a mostrar la agenda.
+     *
+     * @param event Evento que se dispara al hacer clic en el botón.
+     */
+    @FXML
+    void abrirArchivoGrande(ActionEvent event) {
+        if (archivoGrande != null) {
+            cerrarArchivoGrande();
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Abrir archivo CSV grande");
         fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        File archivo = fileChooser.showOpenDialog(tabla.getScene().getWindow());
+        if (archivo == null) {
+            return;
+        }
+        try {
+            archivoGrande = new ListaCsvPaginada(archivo.toPath());
+        } catch (IOException e) {
+            mostrarAlertError(tabla.getScene().getWindow(), "No se puede abrir " + archivo.getName() + ": " + e.getMessage());
+            return;
+        }
+        tabla.getSelectionModel().clearSelection();
+        tabla.setItems(archivoGrande);
+        activarSoloLectura(true);
+        btnAbrirGrande.setText("Volver a la agenda");
+        // La tabla se va llenando mientras se indexa; la agenda sigue intacta detrás
+        ejecutarTarea(archivoGrande.indexar(), "Error al abrir el archivo: ");
+    }
 
-        File archivoSeleccionado = fileChooser.showOpenDialog(stage);
-        if (archivoSeleccionado != null) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(archivoSeleccionado))) {
-                String linea;
-                tabla.getItems().clear(); // Limpiar la tabla antes de importar
+    /**
+     * Cierra el archivo grande, si hay uno abierto, y vuelve a mostrar la agenda en la tabla.
+     */
+    private void cerrarArchivoGrande() {
+        if (archivoGrande == null) {
+            return;
+        }
+        ListaCsvPaginada cerrado = archivoGrande;
+        archivoGrande = null;
+        tabla.getSelectionModel().clearSelection();
+        tabla.setItems(personasOrdenadas);
+        activarSoloLectura(false);
+        btnAbrirGrande.setText("Abrir grande");
+        try {
+            cerrado.close(); // También cancela la indexación si sigue en curso
+        } catch (IOException e) {
+            mostrarEstado("Error al cerrar " + cerrado.getArchivo().getFileName() + ": " + e.getMessage());
+        }
+    }
 
-                // Leer el archivo línea por línea (omitimos el encabezado)
-                reader.readLine(); // Saltar la primera línea que contiene el encabezado
+    /**
+     * Desactiva los controles que modifican, filtran u ordenan la agenda mientras la tabla muestra un
+     * archivo grande, o los vuelve a activar.
+     *
+     * @param activo {@code true} al mostrar un archivo grande.
+     */
+    private void activarSoloLectura(boolean activo) {
+        activarEdicion(!activo && !restaurandoSesion);
+        btnSeguir.setDisable(activo);
+        txtFiltro.setDisable(activo);
+        btnImportar.setDisable(activo || tareaActual != null);
+        btnExportar.setDisable(activo || tareaActual != null);
+        for (TableColumn<Persona, ?> columna : tabla.getColumns()) {
+            columna.setSortable(!activo); // Ordenar obligaría a leer el archivo entero
+        }
+    }
 
-                while ((linea = reader.readLine()) != null) {
-                    String[] datos = linea.split(","); // Separar los valores por coma
-                    String nombre = datos[0];
-                    String apellido = datos[1];
-                    int edad = Integer.parseInt(datos[2]);
+    /**
+     * Activa o desactiva los botones que añaden, modifican o eliminan personas de la agenda.
+     *
+     * @param activa {@code true} para permitir editar la agenda.
+     */
+    private void activarEdicion(boolean activa) {
+        btnAgregarPersona.setDisable(!activa);
+        btnModificar.setDisable(!activa);
+        btnEliminar.setDisable(!activa);
+    }
 
-                    // Crear un nuevo objeto Persona y añadirlo a la tabla
-                    Persona persona = new Persona(nombre, apellido, edad);
-                    tabla.getItems().add(persona);
+    /**
+     * Recupera en segundo plano la agenda de la sesión anterior a partir de la agenda binaria y el diario
+     * de cambios, y deja abierto el diario para registrar los cambios de esta sesión. Mientras tanto no se
+     * puede editar la agenda, porque la restauración reemplazará la lista y esos cambios no irían al diario.
+     * Si la restauración se cancela o falla, se avisa de que los cambios de esta sesión no se guardarán;
+     * la agenda guardada queda intacta.
+     *
+     * @param archivoAgenda La agenda binaria donde se compacta el diario.
+     * @param archivoDiario El diario de cambios.
+     */
+    public void abrirSesion(Path archivoAgenda, Path archivoDiario) {
+        Task<DiarioCambios> tarea = new Task<>() {
+            @Override
+            protected DiarioCambios call() throws IOException {
+                updateMessage("Restaurando la sesión anterior...");
+                long inicio = System.nanoTime();
+                DiarioCambios abierto = DiarioCambios.abrir(archivoAgenda, archivoDiario);
+                updateMessage(String.format("Sesión restaurada: %,d personas en %,d ms",
+                        abierto.personasRecuperadas().size(), (System.nanoTime() - inicio) / 1_000_000));
+                return abierto;
+            }
+        };
+        tarea.setOnSucceeded(e -> {
+            diario = tarea.getValue();
+            listaPersonas.setAll(diario.personasRecuperadas());
+        });
+        tarea.setOnCancelled(e -> mostrarAlert(tabla.getScene().getWindow(), Alert.AlertType.WARNING,
+                "Sesión no restaurada", "Se ha cancelado la restauración de la sesión anterior. "
+                        + "Los cambios de esta sesión no se guardarán y la agenda guardada no se modificará."));
+        restaurandoSesion = true;
+        activarEdicion(false);
+        tarea.runningProperty().addListener((observable, oldValue, enCurso) -> {
+            if (!enCurso) {
+                restaurandoSesion = false;
+                activarEdicion(archivoGrande == null);
+                if (seguimientoPendiente != null) {
+                    seguir(seguimientoPendiente);
+                    seguimientoPendiente = null;
                 }
+            }
+        });
+        ejecutarTarea(tarea, "No se ha podido restaurar la sesión anterior y los cambios de esta sesión no se guardarán: ");
+    }
+
+    /**
+     * Compacta el diario en una agenda binaria con el estado completo y cierra el diario.
+     * Debe llamarse desde el hilo de JavaFX. Si la sesión no llegó a abrirse no hace nada,
+     * para no sustituir la agenda guardada por una lista incompleta.
+     *
+     * @throws IOException Si no se ha podido escribir el diario o la agenda binaria.
+     */
+    public void cerrarSesion() throws IOException {
+        detenerServidorConsultas();
+        dejarDeSeguir();
+        cerrarArchivoGrande();
+        if (diario != null) {
+            DiarioCambios abierto = diario;
+            diario = null;
+            abierto.cerrar(InstantaneaAgenda.de(listaPersonas));
+        }
+    }
+
+    /**
+     * Pide al diario que guarde el estado completo de la agenda y empiece de nuevo.
+     */
+    private void compactarSesion() {
+        if (diario != null) {
+            diario.compactar(InstantaneaAgenda.de(listaPersonas));
+            comprobarDiario();
+        }
+    }
+
+    /**
+     * Compacta el diario si ya ha acumulado suficientes registros.
+     */
+    private void compactarSiConviene() {
+        if (diario != null && diario.convieneCompactar()) {
+            compactarSesion();
+        } else {
+            comprobarDiario();
+        }
+    }
+
+    /**
+     * Avisa, una sola vez, de que el diario ha dejado de guardar los cambios. El diario escribe en su
+     * propio hilo, así que un error de escritura se descubre en el siguiente cambio que se registra.
+     */
+    private void comprobarDiario() {
+        if (diario == null || diario.error() == null || errorDiarioAvisado) {
+            return;
+        }
+        errorDiarioAvisado = true;
+        mostrarEstado("El diario de cambios no funciona");
+        mostrarAlertError(tabla.getScene().getWindow(), "No se puede escribir el diario de cambios: "
+                + diario.error().getMessage() + "\nLos cambios de esta sesión ya no se guardan.");
+    }
+
+    /**
+     * Acción que se ejecuta al hacer clic en el botón "Seguir CSV". Si no se está siguiendo ningún
+     * archivo, permite elegir uno y añade a la tabla las personas que se le vayan añadiendo; si ya se
+     * está siguiendo uno, deja de seguirlo.
+     *
+     * @param event Evento que se dispara al hacer clic en el botón.
+     */
+    @FXML
+    void seguirArchivo(ActionEvent event) {
+        if (seguidor != null) {
+            dejarDeSeguir();
+            lblEstado.setText("Seguimiento detenido");
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Seguir archivo CSV");
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        File archivo = fileChooser.showOpenDialog(tabla.getScene().getWindow());
+        if (archivo != null) {
+            seguir(archivo.toPath());
+        }
+    }
+
+    /**
+     * Empieza a seguir un archivo CSV, o todos los CSV de una carpeta, al que otro programa va añadiendo
+     * personas. Lo que ya contiene y lo que se le añada después se incorpora a la tabla en lotes pequeños,
+     * sin las personas que ya estaban. Si la sesión anterior todavía se está restaurando, el seguimiento
+     * empieza al terminar, para que la restauración no reemplace lo que ya se haya incorporado.
+     *
+     * @param objetivo El archivo o la carpeta a seguir.
+     */
+    public void seguir(Path objetivo) {
+        if (restaurandoSesion) {
+            seguimientoPendiente = objetivo;
+            return;
+        }
+        dejarDeSeguir();
+        int seguimiento = ++seguimientos;
+        try {
+            seguidor = new SeguidorCsv(objetivo, true, new SeguidorCsv.Receptor() {
+                @Override
+                public void recibir(Path archivo, List<Persona> personas) {
+                    Platform.runLater(() -> agregarSeguidas(seguimiento, archivo, personas));
+                }
+
+                @Override
+                public void error(Path archivo, String mensaje) {
+                    Platform.runLater(() -> {
+                        if (seguimiento == seguimientos && seguidor != null) {
+                            mostrarEstado(archivo.getFileName() + ": " + mensaje);
+                        }
+                    });
+                }
+            });
+            btnSeguir.setText("Dejar de seguir");
+            mostrarEstado("Siguiendo " + objetivo.getFileName());
+        } catch (IOException e) {
+            mostrarAlertError(tabla.getScene().getWindow(), "No se puede seguir " + objetivo + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deja de seguir el archivo o carpeta, si se estaba siguiendo alguno. No espera a que el seguidor
+     * termine de leer; los lotes que entregue después se descartan al llegar.
+     */
+    private void dejarDeSeguir() {
+        if (seguidor == null) {
+            return;
+        }
+        try {
+            seguidor.close();
+        } catch (IOException e) {
+            mostrarEstado("Error al dejar de seguir: " + e.getMessage());
+        }
+        seguidor = null;
+        btnSeguir.setText("Seguir CSV");
+    }
+
+    /**
+     * Añade a la tabla un lote de personas leídas del archivo seguido, sin las repetidas ni las que ya
+     * estaban, y registra las altas en el diario. Si el seguimiento del que proceden ya se ha detenido,
+     * el lote se descarta.
+     *
+     * @param seguimiento El número del seguimiento que las ha leído.
+     * @param archivo     El archivo del que proceden.
+     * @param personas    Las personas leídas.
+     */
+    private void agregarSeguidas(int seguimiento, Path archivo, List<Persona> personas) {
+        if (seguidor == null || seguimiento != seguimientos) {
+            return; // Lote de un seguimiento que ya se ha detenido
+        }
+        List<Persona> nuevas = new ArrayList<>(personas.size());
+        Set<Persona> vistas = new HashSet<>();
+        for (Persona persona : personas) {
+            if (!indicePersonas.contiene(persona) && vistas.add(persona)) {
+                nuevas.add(persona);
+            }
+        }
+        listaPersonas.addAll(nuevas);  // Un solo cambio de lista por lote
+        if (diario != null) {
+            nuevas.forEach(diario::registrarAlta);
+            compactarSiConviene();
+        }
+        mostrarEstado(String.format("%s: %,d personas nuevas", archivo.getFileName(), nuevas.size()));
+    }
+
+    /**
+     * Arranca el servidor HTTP local que permite a otros programas consultar la agenda mientras la
+     * aplicación está abierta. El servidor lee una instantánea inmutable de la agenda que se publica
+     * desde aquí tras cada cambio o lote de cambios, agrupando los que llegan seguidos para no copiar la
+     * agenda más de una vez cada {@link #INTERVALO_INSTANTANEAS}. Cada instantánea solo copia los bloques
+     * de la agenda que han cambiado y comparte los demás con la anterior, así que una edición o unas altas
+     * al final no copian la agenda entera en el hilo de JavaFX; las consultas nunca tocan la lista ni hacen
+     * esperar a la interfaz. Debe llamarse desde el hilo de JavaFX.
+     *
+     * @param puerto El puerto local, o 0 para que el sistema elija uno libre.
+     * @return El puerto en el que escucha el servidor.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public int iniciarServidorConsultas(int puerto) throws IOException {
+        detenerServidorConsultas();
+        servidorConsultas = new ServidorConsultas(puerto);
+        retardoInstantanea = new PauseTransition(INTERVALO_INSTANTANEAS);
+        retardoInstantanea.setOnFinished(e -> publicarInstantanea());
+        instantaneas = InstantaneaAgenda.seguir(listaPersonas);
+        listaPersonas.addListener(oyenteInstantanea);
+        publicarInstantanea();
+        return servidorConsultas.getPuerto();
+    }
+
+    /**
+     * Arranca el servidor de consultas en el puerto indicado como texto, tal como llega de la propiedad
+     * del sistema, y muestra su dirección en la barra de estado. Si no se puede arrancar, lo avisa con una alerta y la aplicación
+     * sigue sin servidor. Debe llamarse desde el hilo de JavaFX, con la ventana ya visible.
+     *
+     * @param puerto El puerto local, o 0 para que el sistema elija uno libre.
+     */
+    public void arrancarServidorConsultas(String puerto) {
+        try {
+            int enUso = iniciarServidorConsultas(Integer.parseInt(puerto.trim()));
+            mostrarEstado("Consultas en http://localhost:" + enUso + "/personas");
+        } catch (IOException | NumberFormatException e) {
+            mostrarAlertError(tabla.getScene().getWindow(),
+                    "No se pudo arrancar el servidor de consultas en el puerto " + puerto + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Detiene el servidor de consultas, si está en marcha.
+     */
+    private void detenerServidorConsultas() {
+        if (servidorConsultas == null) {
+            return;
+        }
+        listaPersonas.removeListener(oyenteInstantanea);
+        instantaneas.detener();
+        instantaneas = null;
+        retardoInstantanea.stop();
+        servidorConsultas.close();
+        servidorConsultas = null;
+    }
+
+    /**
+     * Renueva la instantánea de la agenda con sus claves de búsqueda y la entrega al servidor de consultas de una vez.
+     */
+    private void publicarInstantanea() {
+        if (servidorConsultas != null) {
+            servidorConsultas.publicar(instantaneas.siguiente());
+        }
+    }
+
+    /**
+     * Muestra un mensaje en la barra de estado. Si la está usando una tarea en curso, el mensaje se
+     * muestra cuando termine, junto al último mensaje de la tarea.
+     *
+     * @param mensaje El mensaje.
+     */
+    private void mostrarEstado(String mensaje) {
+        if (lblEstado.textProperty().isBound()) {
+            estadoPendiente = mensaje;
+        } else {
+            lblEstado.setText(mensaje);
+        }
+    }
+
+    /**
+     * Acción que se ejecuta al hacer clic en el botón "Estadísticas". Abre, o trae al frente, una ventana
+     * con el histograma de edades y los apellidos más frecuentes, que se actualiza mientras está abierta.
+     *
+     * @param event Evento que se dispara al hacer clic en el botón.
+     */
+    @FXML
+    void mostrarEstadisticas(ActionEvent event) {
+        if (ventanaEstadisticas == null) {
+            try {
+                FXMLLoader loader = new FXMLLoader(getClass().getResource("/eu/andreatt/ejerciciof_dein/fxml/estadisticas.fxml"));
+                Parent root = loader.load();
+                EstadisticasController controlador = loader.getController();
+                controlador.setEstadisticas(estadisticas);
+                ventanaEstadisticas = new Stage();
+                ventanaEstadisticas.setTitle("Estadísticas");
+                ventanaEstadisticas.initOwner(tabla.getScene().getWindow());
+                ventanaEstadisticas.setScene(new Scene(root));
+                // Solo se refresca mientras se ve; al cerrarla se oculta y se conserva para la próxima vez
+                ventanaEstadisticas.setOnShown(e -> controlador.iniciar());
+                ventanaEstadisticas.setOnHidden(e -> controlador.detener());
             } catch (IOException e) {
-                mostrarAlertError(stage, "Error al importar archivo: " + e.getMessage());
+                mostrarAlertError(tabla.getScene().getWindow(), "Error al abrir las estadísticas: " + e.getMessage());
+                return;
             }
         }
+        ventanaEstadisticas.show();
+        ventanaEstadisticas.toFront();
+    }
+
+    /**
+     * Acción que se ejecuta al hacer clic en el botón "Cancelar" de la barra de estado.
+     * Cancela la importación o exportación en curso.
+     *
+     * @param event Evento que se dispara al hacer clic en el botón.
+     */
+    @FXML
+    void cancelarTarea(ActionEvent event) {
+        if (tareaActual != null) {
+            tareaActual.cancel();
+        }
     }
 
+    /**
+     * Ejecuta una tarea en un hilo en segundo plano y muestra su progreso en la barra de estado.
+     * Mientras la tarea está en curso se desactivan los botones de importar y exportar.
+     *
+     * @param tarea        La tarea a ejecutar.
+     * @param prefijoError El texto que precede al mensaje de error si la tarea falla.
+     */
+    private void ejecutarTarea(Task<?> tarea, String prefijoError) {
+        tareaActual = tarea;
+        barraProgreso.progressProperty().bind(tarea.progressProperty());
+        lblEstado.textProperty().bind(tarea.messageProperty());
+        barraProgreso.setVisible(true);
+        btnCancelarTarea.setDisable(false);
+        btnImportar.setDisable(true);
+        btnExportar.setDisable(true);
+        btnAbrirGrande.setDisable(archivoGrande == null); // Solo se puede cerrar el archivo que se está indexando
+
+        tarea.runningProperty().addListener((observable, oldValue, enCurso) -> {
+            if (!enCurso) {
+                finalizarTarea(tarea);
+            }
+        });
+        tarea.setOnFailed(e -> mostrarAlertError(tabla.getScene().getWindow(), prefijoError + tarea.getException().getMessage()));
 
+        Thread hilo = new Thread(tarea, "tarea-agenda");
+        hilo.setDaemon(true);  // No impide cerrar la aplicación
+        hilo.start();
+    }
 
+    /**
+     * Restaura la barra de estado cuando la tarea termina, falla o se cancela.
+     * Conserva el último mensaje de la tarea en la etiqueta de estado.
+     *
+     * @param tarea La tarea que ha terminado.
+     */
+    private void finalizarTarea(Task<?> tarea) {
+        if (tareaActual != tarea) {
+            return;
+        }
+        tareaActual = null;
+        String ultimoMensaje = tarea.getMessage();
+        barraProgreso.progressProperty().unbind();
+        lblEstado.textProperty().unbind();
+        String estado = tarea.isCancelled() ? "Tarea cancelada. " + ultimoMensaje : ultimoMensaje;
+        if (estadoPendiente != null) {
+            estado = estado == null || estado.isEmpty() ? estadoPendiente : estado + " · " + estadoPendiente;
+            estadoPendiente = null;
+        }
+        lblEstado.setText(estado);
+        barraProgreso.setVisible(false);
+        btnCancelarTarea.setDisable(true);
+        btnImportar.setDisable(archivoGrande != null);
+        btnExportar.setDisable(archivoGrande != null);
+        btnAbrirGrande.setDisable(false);
+    }
 }
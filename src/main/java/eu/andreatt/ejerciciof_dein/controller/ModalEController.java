@@ -1,6 +1,9 @@
 package eu.andreatt.ejerciciof_dein.controller;
 
+import eu.andreatt.ejerciciof_dein.model.ClavePersona;
+import eu.andreatt.ejerciciof_dein.model.IndicePersonas;
 import eu.andreatt.ejerciciof_dein.model.Persona;
+import eu.andreatt.ejerciciof_dein.service.DiarioCambios;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -34,6 +37,8 @@ public class ModalEController {
 
     private Persona persona;  // Objeto Persona que se creará a partir de los datos ingresados
     private ObservableList<Persona> personas;  // Lista observable que contiene las personas
+    private IndicePersonas indice;  // Índice hash de la lista para detectar duplicados
+    private DiarioCambios diario;  // Diario donde se registran las altas y modificaciones, o null
 
     /**
      * Establece la lista de personas donde se añadirá o editara la persona.
@@ -44,6 +49,24 @@ public class ModalEController {
         this.personas = personas;
     }
 
+    /**
+     * Establece el índice de la lista de personas, usado para comprobar duplicados en tiempo constante.
+     *
+     * @param indice Índice de la lista de personas.
+     */
+    public void setIndice(IndicePersonas indice) {
+        this.indice = indice;
+    }
+
+    /**
+     * Establece el diario donde se registran las altas y modificaciones para recuperarlas tras un cierre inesperado.
+     *
+     * @param diario Diario de cambios de la agenda, o null si no se registran.
+     */
+    public void setDiario(DiarioCambios diario) {
+        this.diario = diario;
+    }
+
     /**
      * Maneja el evento de cancelar la operación, cerrando la ventana sin realizar cambios.
      *
@@ -65,6 +88,16 @@ public class ModalEController {
         txtNombre.setText(persona.getNombre());  // Carga el nombre
         txtApellido.setText(persona.getApellido());  // Carga el apellido
         txtEdad.setText(String.valueOf(persona.getEdad()));  // Carga la edad
+        txtNombre.requestFocus();  // La ventana se reutiliza: el foco vuelve siempre al primer campo
+    }
+
+    /**
+     * Deja la ventana lista para agregar una persona nueva, olvidando la que se editó la última vez.
+     */
+    public void prepararAlta() {
+        this.persona = null;
+        limpiarCampos();
+        txtNombre.requestFocus();
     }
 
     /**
@@ -100,9 +133,13 @@ public class ModalEController {
                 Persona personaEditada = new Persona(nombre, apellido, edad);
                 if (!verificarExistePersona(win, personaEditada)) {
                     // Actualiza la persona existente
+                    ClavePersona anterior = ClavePersona.de(persona);
                     persona.setNombre(nombre);
                     persona.setApellido(apellido);
                     persona.setEdad(edad);
+                    if (diario != null) {
+                        diario.registrarModificacion(anterior, persona);  // Registra el cambio en el diario
+                    }
                 } else {
                     cargarPersona(persona);  // Carga nuevamente la persona si ya existe
                     return; // Si ya existe, no se guarda ni se cierra la ventana
@@ -116,6 +153,9 @@ public class ModalEController {
                 }
                 if (!verificarExistePersona(win, nuevaPersona)) {
                     personas.add(nuevaPersona);  // Intenta agregar la nueva persona a la lista
+                    if (diario != null) {
+                        diario.registrarAlta(nuevaPersona);  // Registra el alta en el diario
+                    }
                 } else {
                     return;  // Si ya existe, no hace nada
                 }
@@ -137,17 +177,15 @@ public class ModalEController {
      * @return true si la persona ya existe en la lista, false de lo contrario.
      */
     private boolean verificarExistePersona(Window win, Persona p) {
-        if (personas == null) {
+        if (personas == null || indice == null) {
             mostrarAlertError(win, "La lista de personas no está inicializada.");
             return false;  // La lista no está inicializada, no puede existir nada
         }
-        // Verificar si la persona ya existe en la lista
-        for (Persona persona : personas) {
-            if (persona.equals(p)) { // Utiliza equals para comparar
-                mostrarAlertError(win, "Esa persona ya existe");  // Muestra alerta si la persona ya está en la lista
-                limpiarCampos();  // Limpia los campos de texto
-                return true; // Salir del método para evitar cerrar la ventana
-            }
+        // Verificar en el índice si la persona ya existe en la lista
+        if (indice.contiene(p)) {
+            mostrarAlertError(win, "Esa persona ya existe");  // Muestra alerta si la persona ya está en la lista
+            limpiarCampos();  // Limpia los campos de texto
+            return true; // Salir del método para evitar cerrar la ventana
         }
         return false;  // La persona no existe
     }
@@ -0,0 +1,33 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+
+/**
+ * Base de los eventos de JDK Flight Recorder de la agenda. Además del intervalo que registra JFR,
+ * mide su duración con {@code System.nanoTime()} para alimentar los histogramas de {@link Metricas}
+ * aunque no haya ninguna grabación en curso.
+ */
+@Category("Agenda")
+public abstract class EventoAgenda extends Event {
+
+    private transient long inicio;  // Los campos transient no se graban
+
+    /**
+     * Empieza a medir el evento.
+     */
+    public void iniciar() {
+        inicio = System.nanoTime();
+        begin();
+    }
+
+    /**
+     * Termina de medir el evento.
+     *
+     * @return La duración en nanosegundos desde {@link #iniciar()}.
+     */
+    long terminar() {
+        end();
+        return System.nanoTime() - inicio;
+    }
+}
@@ -0,0 +1,14 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Exportación de la tabla a un archivo CSV.
+ */
+@Name("eu.andreatt.agenda.Exportacion")
+@Label("Exportación CSV")
+@Category({"Agenda", "Archivos"})
+public final class EventoExportacion extends EventoTransferencia {
+}
@@ -0,0 +1,26 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Aplicación del filtro de la tabla. La duración del evento es la de calcular y aplicar el predicado;
+ * la latencia incluye además el retardo desde la última pulsación en el campo de filtro.
+ */
+@Name("eu.andreatt.agenda.Filtro")
+@Label("Filtro de la tabla")
+@Category({"Agenda", "Interfaz"})
+public final class EventoFiltro extends EventoAgenda {
+
+    @Label("Texto")
+    String texto;
+
+    @Label("Coincidencias")
+    int coincidencias;
+
+    @Label("Latencia desde la pulsación")
+    @Timespan
+    long latencia;
+}
@@ -0,0 +1,14 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Importación de un archivo CSV.
+ */
+@Name("eu.andreatt.agenda.Importacion")
+@Label("Importación CSV")
+@Category({"Agenda", "Archivos"})
+public final class EventoImportacion extends EventoTransferencia {
+}
@@ -0,0 +1,17 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * CSS y layout de la escena principal en un pulso de JavaFX. Por defecto solo se graban
+ * los pulsos que superan el tiempo de un fotograma.
+ */
+@Name("eu.andreatt.agenda.Pulso")
+@Label("Pulso de JavaFX")
+@Category({"Agenda", "Interfaz"})
+@Threshold("16 ms")
+public final class EventoPulso extends EventoAgenda {
+}
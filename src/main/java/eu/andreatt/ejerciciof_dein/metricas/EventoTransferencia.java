@@ -0,0 +1,33 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+
+/**
+ * Campos comunes de los eventos de importación y exportación de archivos.
+ */
+public abstract class EventoTransferencia extends EventoAgenda {
+
+    @Label("Archivo")
+    String archivo;
+
+    @Label("Filas")
+    long filas;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Filas por segundo")
+    @Frequency
+    long filasPorSegundo;
+
+    @Label("Bytes por segundo")
+    @DataAmount
+    @Frequency
+    long bytesPorSegundo;
+
+    @Label("Cancelada")
+    boolean cancelada;
+}
@@ -0,0 +1,17 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Apertura de la ventana modal para agregar o modificar una persona, hasta que se muestra.
+ */
+@Name("eu.andreatt.agenda.VentanaModal")
+@Label("Apertura de la ventana modal")
+@Category({"Agenda", "Interfaz"})
+public final class EventoVentanaModal extends EventoAgenda {
+
+    @Label("Título")
+    String titulo;
+}
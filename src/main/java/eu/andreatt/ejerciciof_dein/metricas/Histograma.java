@@ -0,0 +1,71 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de duraciones con cubetas de potencias de dos en microsegundos. Registrar una
+ * duración no reserva memoria y puede hacerse desde cualquier hilo; los percentiles se
+ * aproximan por el límite superior de su cubeta, es decir, con un error de hasta el doble.
+ */
+public final class Histograma {
+
+    private static final int CUBETAS = 40;  // Hasta unos 12 días, más que suficiente
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final AtomicLong cuenta = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra una duración.
+     *
+     * @param nanos La duración en nanosegundos.
+     */
+    public void registrar(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        int cubeta = Math.min(CUBETAS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        cubetas.incrementAndGet(cubeta);
+        cuenta.incrementAndGet();
+        maximo.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Devuelve el número de duraciones registradas.
+     *
+     * @return El número de duraciones.
+     */
+    public long cuenta() {
+        return cuenta.get();
+    }
+
+    /**
+     * Devuelve la mayor duración registrada.
+     *
+     * @return La duración máxima en nanosegundos, o 0 si no hay ninguna.
+     */
+    public long maximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Aproxima un percentil de las duraciones registradas.
+     *
+     * @param percentil El percentil, entre 0 y 100.
+     * @return El límite superior de la cubeta del percentil en nanosegundos, o 0 si no hay duraciones.
+     */
+    public long percentil(double percentil) {
+        long total = cuenta.get();
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(total * percentil / 100);
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cubetas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(maximo.get(), (1L << i) * 1_000);
+            }
+        }
+        return maximo.get();
+    }
+}
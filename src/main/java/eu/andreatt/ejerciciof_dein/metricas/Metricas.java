@@ -0,0 +1,194 @@
+package eu.andreatt.ejerciciof_dein.metricas;
+
+import javafx.scene.Scene;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * La clase {@code Metricas} reúne la instrumentación de la agenda: emite los eventos de
+ * JDK Flight Recorder y mantiene contadores e histogramas en memoria que se pueden consultar
+ * sin grabar nada, por ejemplo desde la barra de estado.
+ * <p>
+ * Los eventos se graban con {@code -XX:StartFlightRecording} o desde JDK Mission Control;
+ * aparecen en la categoría "Agenda".
+ */
+public final class Metricas {
+
+    /**
+     * Tiempo de calcular y aplicar el predicado de cada filtro, sin el retardo que agrupa las pulsaciones.
+     * La latencia desde la última pulsación solo se graba en el evento {@link EventoFiltro}.
+     */
+    public static final Histograma FILTRO = new Histograma();
+
+    /** Tiempo desde que se pide la ventana modal hasta que se muestra. */
+    public static final Histograma VENTANA_MODAL = new Histograma();
+
+    /** Duración del CSS y el layout de la escena principal en cada pulso. */
+    public static final Histograma PULSO = new Histograma();
+
+    private static final LongAdder filasImportadas = new LongAdder();
+    private static final LongAdder bytesImportados = new LongAdder();
+    private static final LongAdder filasExportadas = new LongAdder();
+    private static final LongAdder bytesExportados = new LongAdder();
+    private static volatile long filasPorSegundoImportacion;  // De la última importación
+    private static volatile long bytesPorSegundoExportacion;  // De la última exportación
+
+    private Metricas() {
+    }
+
+    /**
+     * Registra una importación terminada, completa o no.
+     *
+     * @param evento    El evento iniciado al empezar la importación.
+     * @param archivo   El nombre del archivo.
+     * @param filas     Las filas importadas.
+     * @param bytes     Los bytes leídos.
+     * @param cancelada {@code true} si la importación se canceló.
+     */
+    public static void registrarImportacion(EventoImportacion evento, String archivo, long filas, long bytes, boolean cancelada) {
+        long nanos = evento.terminar();
+        filasImportadas.add(filas);
+        bytesImportados.add(bytes);
+        filasPorSegundoImportacion = porSegundo(filas, nanos);
+        completar(evento, archivo, filas, bytes, nanos, cancelada);
+    }
+
+    /**
+     * Registra una exportación terminada, completa o no.
+     *
+     * @param evento    El evento iniciado al empezar la exportación.
+     * @param archivo   El nombre del archivo.
+     * @param filas     Las filas exportadas.
+     * @param bytes     Los bytes escritos.
+     * @param cancelada {@code true} si la exportación se canceló.
+     */
+    public static void registrarExportacion(EventoExportacion evento, String archivo, long filas, long bytes, boolean cancelada) {
+        long nanos = evento.terminar();
+        filasExportadas.add(filas);
+        bytesExportados.add(bytes);
+        bytesPorSegundoExportacion = porSegundo(bytes, nanos);
+        completar(evento, archivo, filas, bytes, nanos, cancelada);
+    }
+
+    /**
+     * Registra la aplicación de un filtro a la tabla.
+     *
+     * @param evento        El evento iniciado antes de calcular el predicado.
+     * @param texto         El texto del filtro.
+     * @param coincidencias El número de filas que muestra la tabla.
+     * @param pulsacion     El instante ({@code System.nanoTime()}) de la última pulsación en el filtro.
+     */
+    public static void registrarFiltro(EventoFiltro evento, String texto, int coincidencias, long pulsacion) {
+        FILTRO.registrar(evento.terminar());
+        if (evento.shouldCommit()) {
+            evento.texto = texto;
+            evento.coincidencias = coincidencias;
+            evento.latencia = System.nanoTime() - pulsacion;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Registra que la ventana modal ya se muestra.
+     *
+     * @param evento El evento iniciado al pedir la ventana.
+     * @param titulo El título de la ventana.
+     */
+    public static void registrarVentanaModal(EventoVentanaModal evento, String titulo) {
+        VENTANA_MODAL.registrar(evento.terminar());
+        if (evento.shouldCommit()) {
+            evento.titulo = titulo;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Mide el CSS y el layout de la escena en cada pulso, entre los oyentes de antes y después del layout.
+     * Debe llamarse desde el hilo de JavaFX.
+     *
+     * @param escena La escena a medir.
+     */
+    public static void medirPulsos(Scene escena) {
+        EventoPulso[] actual = new EventoPulso[1];
+        escena.addPreLayoutPulseListener(() -> {
+            actual[0] = new EventoPulso();
+            actual[0].iniciar();
+        });
+        escena.addPostLayoutPulseListener(() -> {
+            EventoPulso evento = actual[0];
+            if (evento != null) {
+                PULSO.registrar(evento.terminar());
+                evento.commit();
+                actual[0] = null;
+            }
+        });
+    }
+
+    /**
+     * Resume las métricas en una línea para la barra de estado.
+     *
+     * @return El resumen.
+     */
+    public static String resumen() {
+        return String.format("Filtro p50 %s p99 %s · Modal p50 %s · Pulso p99 %s máx %s · Importación %,d filas/s · Exportación %,.1f MB/s",
+                ms(FILTRO.percentil(50)), ms(FILTRO.percentil(99)), ms(VENTANA_MODAL.percentil(50)),
+                ms(PULSO.percentil(99)), ms(PULSO.maximo()),
+                filasPorSegundoImportacion, bytesPorSegundoExportacion / 1e6);
+    }
+
+    /**
+     * Devuelve el total de filas importadas desde que arrancó la aplicación.
+     *
+     * @return Las filas importadas.
+     */
+    public static long filasImportadas() {
+        return filasImportadas.sum();
+    }
+
+    /**
+     * Devuelve el total de bytes leídos al importar desde que arrancó la aplicación.
+     *
+     * @return Los bytes importados.
+     */
+    public static long bytesImportados() {
+        return bytesImportados.sum();
+    }
+
+    /**
+     * Devuelve el total de filas exportadas desde que arrancó la aplicación.
+     *
+     * @return Las filas exportadas.
+     */
+    public static long filasExportadas() {
+        return filasExportadas.sum();
+    }
+
+    /**
+     * Devuelve el total de bytes escritos al exportar desde que arrancó la aplicación.
+     *
+     * @return Los bytes exportados.
+     */
+    public static long bytesExportados() {
+        return bytesExportados.sum();
+    }
+
+    private static void completar(EventoTransferencia evento, String archivo, long filas, long bytes, long nanos, boolean cancelada) {
+        if (evento.shouldCommit()) {
+            evento.archivo = archivo;
+            evento.filas = filas;
+            evento.bytes = bytes;
+            evento.filasPorSegundo = porSegundo(filas, nanos);
+            evento.bytesPorSegundo = porSegundo(bytes, nanos);
+            evento.cancelada = cancelada;
+            evento.commit();
+        }
+    }
+
+    private static long porSegundo(long cantidad, long nanos) {
+        return (long) (cantidad / Math.max(1e-9, nanos / 1e9));
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%,.1f ms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,22 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+/**
+ * Identidad de una persona: los valores que usa {@code Persona.equals} para decidir si dos personas son la misma.
+ * A diferencia de {@code Persona}, es inmutable y puede usarse como clave en tablas hash.
+ *
+ * @param nombre   El nombre de la persona.
+ * @param apellido El apellido de la persona.
+ * @param edad     La edad de la persona.
+ */
+public record ClavePersona(String nombre, String apellido, int edad) {
+
+    /**
+     * Obtiene la clave con los valores actuales de una persona.
+     *
+     * @param persona La persona.
+     * @return La clave de la persona.
+     */
+    public static ClavePersona de(Persona persona) {
+        return new ClavePersona(persona.getNombre(), persona.getApellido(), persona.getEdad());
+    }
+}
@@ -0,0 +1,233 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Consulta del campo de filtro, ya analizada. Una consulta es una lista de condiciones separadas por
+ * espacios que tienen que cumplirse todas:
+ * <ul>
+ *     <li>{@code texto}: el nombre o el apellido contienen el texto.</li>
+ *     <li>{@code nombre:texto} y {@code apellido:texto}: ese campo contiene el texto.</li>
+ *     <li>{@code edad:30}, {@code edad=30}, {@code edad:30-39}: la edad es esa o está en ese intervalo.</li>
+ *     <li>{@code edad>30}, {@code edad>=30}, {@code edad<40}, {@code edad<=40}: la edad está por encima o por debajo.</li>
+ * </ul>
+ * Los textos no distinguen tildes ni mayúsculas y pueden ir entre comillas dobles si llevan espacios, como en
+ * {@code apellido:"de la Fuente"}. Una palabra con dos puntos que no empieza por un campo conocido se
+ * busca como texto.
+ * <p>
+ * La consulta se analiza una vez y se resuelve con {@link IndiceBusqueda#consultar}; {@link #acepta}
+ * evalúa las condiciones directamente sobre una persona.
+ */
+public final class ConsultaPersonas {
+
+    private final List<String> textos = new ArrayList<>();  // Textos que deben estar en el nombre o el apellido
+    private final List<String> nombres = new ArrayList<>();  // Textos que deben estar en el nombre
+    private final List<String> apellidos = new ArrayList<>();  // Textos que deben estar en el apellido
+    private int edadMinima = Integer.MIN_VALUE;  // Edad mínima admitida, incluida
+    private int edadMaxima = Integer.MAX_VALUE;  // Edad máxima admitida, incluida
+
+    private ConsultaPersonas() {
+    }
+
+    /**
+     * Analiza una consulta del campo de filtro.
+     *
+     * @param consulta El texto de la consulta.
+     * @return La consulta analizada.
+     * @throws IllegalArgumentException Si alguna condición sobre la edad no es válida o a un campo le falta el valor.
+     */
+    public static ConsultaPersonas compilar(String consulta) {
+        ConsultaPersonas compilada = new ConsultaPersonas();
+        for (String termino : terminos(consulta == null ? "" : consulta)) {
+            compilada.agregarTermino(termino);
+        }
+        return compilada;
+    }
+
+    /**
+     * Crea una consulta que busca un texto en el nombre o el apellido, sin interpretarlo.
+     *
+     * @param texto El texto a buscar.
+     * @return La consulta, vacía si el texto está vacío.
+     */
+    public static ConsultaPersonas deTexto(String texto) {
+        ConsultaPersonas consulta = new ConsultaPersonas();
+        consulta.agregarTexto(consulta.textos, texto);
+        return consulta;
+    }
+
+    /**
+     * Indica si la consulta no tiene ninguna condición y acepta a todas las personas.
+     *
+     * @return {@code true} si la consulta está vacía.
+     */
+    public boolean vacia() {
+        return textos.isEmpty() && nombres.isEmpty() && apellidos.isEmpty() && !limitaEdad();
+    }
+
+    /**
+     * Comprueba las condiciones de la consulta sobre los valores actuales de una persona.
+     *
+     * @param persona La persona.
+     * @return {@code true} si la persona cumple todas las condiciones.
+     */
+    public boolean acepta(Persona persona) {
+        return acepta(persona.claveNombre(), persona.claveApellido(), persona.getEdad());
+    }
+
+    /**
+     * Comprueba las condiciones de la consulta sobre unos valores ya normalizados con
+     * {@link IndiceBusqueda#normalizar}, como las claves de búsqueda de una persona.
+     *
+     * @param nombre   El nombre normalizado.
+     * @param apellido El apellido normalizado.
+     * @param edad     La edad.
+     * @return {@code true} si los valores cumplen todas las condiciones.
+     */
+    public boolean acepta(String nombre, String apellido, int edad) {
+        if (edad < edadMinima || edad > edadMaxima) {
+            return false;
+        }
+        for (String texto : textos) {
+            if (!nombre.contains(texto) && !apellido.contains(texto)) {
+                return false;
+            }
+        }
+        for (String texto : nombres) {
+            if (!nombre.contains(texto)) {
+                return false;
+            }
+        }
+        for (String texto : apellidos) {
+            if (!apellido.contains(texto)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve todos los textos de la consulta, normalizados, sea cual sea su campo.
+     */
+    List<String> todosLosTextos() {
+        List<String> todos = new ArrayList<>(textos);
+        todos.addAll(nombres);
+        todos.addAll(apellidos);
+        return todos;
+    }
+
+    boolean limitaEdad() {
+        return edadMinima != Integer.MIN_VALUE || edadMaxima != Integer.MAX_VALUE;
+    }
+
+    int edadMinima() {
+        return edadMinima;
+    }
+
+    int edadMaxima() {
+        return edadMaxima;
+    }
+
+    /**
+     * Interpreta una condición de la consulta.
+     */
+    private void agregarTermino(String termino) {
+        String minusculas = termino.toLowerCase(Locale.ROOT);
+        if (minusculas.startsWith("nombre:")) {
+            agregarTexto(nombres, valor(termino, "nombre:".length(), "nombre"));
+        } else if (minusculas.startsWith("apellido:")) {
+            agregarTexto(apellidos, valor(termino, "apellido:".length(), "apellido"));
+        } else if (minusculas.startsWith("edad")) {
+            agregarEdad(termino, minusculas.substring("edad".length()));
+        } else {
+            agregarTexto(textos, termino);
+        }
+    }
+
+    /**
+     * Interpreta una condición sobre la edad a partir de su operador y su valor.
+     */
+    private void agregarEdad(String termino, String resto) {
+        if (resto.startsWith(">=")) {
+            limitar(numero(resto.substring(2), termino), Integer.MAX_VALUE);
+        } else if (resto.startsWith("<=")) {
+            limitar(Integer.MIN_VALUE, numero(resto.substring(2), termino));
+        } else if (resto.startsWith(">")) {
+            int edad = numero(resto.substring(1), termino);
+            limitar(edad == Integer.MAX_VALUE ? edad : edad + 1, Integer.MAX_VALUE);
+        } else if (resto.startsWith("<")) {
+            int edad = numero(resto.substring(1), termino);
+            limitar(Integer.MIN_VALUE, edad == Integer.MIN_VALUE ? edad : edad - 1);
+        } else if (resto.startsWith(":") || resto.startsWith("=")) {
+            String valor = resto.substring(1);
+            int guion = valor.indexOf('-', 1); // Un guion inicial sería el signo
+            if (guion > 0) {
+                limitar(numero(valor.substring(0, guion), termino), numero(valor.substring(guion + 1), termino));
+            } else {
+                int edad = numero(valor, termino);
+                limitar(edad, edad);
+            }
+        } else {
+            agregarTexto(textos, termino); // Una palabra que solo empieza por "edad"
+        }
+    }
+
+    /**
+     * Estrecha el intervalo de edades admitidas.
+     */
+    private void limitar(int minima, int maxima) {
+        edadMinima = Math.max(edadMinima, minima);
+        edadMaxima = Math.min(edadMaxima, maxima);
+    }
+
+    private void agregarTexto(List<String> destino, String texto) {
+        String normalizado = IndiceBusqueda.normalizar(texto);
+        if (!normalizado.isEmpty()) {
+            destino.add(normalizado);
+        }
+    }
+
+    private static String valor(String termino, int inicio, String campo) {
+        String valor = termino.substring(inicio);
+        if (valor.isEmpty()) {
+            throw new IllegalArgumentException("Falta el texto que buscar en " + campo);
+        }
+        return valor;
+    }
+
+    private static int numero(String valor, String termino) {
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Edad no válida en \"" + termino + "\"");
+        }
+    }
+
+    /**
+     * Separa la consulta en condiciones por los espacios que no están entre comillas, y quita las comillas.
+     */
+    private static List<String> terminos(String consulta) {
+        List<String> terminos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < consulta.length(); i++) {
+            char c = consulta.charAt(i);
+            if (c == '"') {
+                entreComillas = !entreComillas;
+            } else if (Character.isWhitespace(c) && !entreComillas) {
+                if (!actual.isEmpty()) {
+                    terminos.add(actual.toString());
+                    actual.setLength(0);
+                }
+            } else {
+                actual.append(c);
+            }
+        }
+        if (!actual.isEmpty()) {
+            terminos.add(actual.toString());
+        }
+        return terminos;
+    }
+}
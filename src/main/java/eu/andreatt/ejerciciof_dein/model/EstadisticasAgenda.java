@@ -0,0 +1,182 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Estadísticas de una lista de personas: cuántas hay en cada tramo de edad, la edad media y los
+ * apellidos más frecuentes. Se mantienen al día con cada alta, baja o edición, sin volver a recorrer
+ * la lista, así que consultarlas cuesta lo mismo con mil personas que con millones, también mientras
+ * se está importando un archivo.
+ * <p>
+ * Los apellidos se agrupan por número de apariciones, de modo que subir o bajar la cuenta de un
+ * apellido solo lo cambia de grupo y los más frecuentes se obtienen recorriendo los primeros grupos.
+ */
+public final class EstadisticasAgenda extends IndiceIncremental {
+
+    /** Años que abarca cada tramo de edad. */
+    public static final int ANCHO_TRAMO = 10;
+
+    /** Número de tramos de edad: de diez en diez hasta los 99 y un último tramo para 100 o más. */
+    public static final int TRAMOS = 11;
+
+    /**
+     * Número de personas que tienen un apellido.
+     *
+     * @param apellido El apellido.
+     * @param personas El número de personas con ese apellido.
+     */
+    public record Frecuencia(String apellido, int personas) {
+    }
+
+    private final long[] porTramo = new long[TRAMOS];  // Personas en cada tramo de edad
+    private long total;  // Personas de la lista
+    private long sumaEdades;  // Suma de las edades, para la media
+    private final Map<String, Integer> porApellido = new HashMap<>();  // Personas con cada apellido
+    // Apellidos agrupados por su número de personas, de más a menos frecuente y por orden alfabético
+    private final NavigableMap<Integer, TreeSet<String>> apellidosPorFrecuencia = new TreeMap<>(Collections.reverseOrder());
+    private long version;  // Aumenta con cada cambio, para saber si hay que refrescar una vista
+
+    /**
+     * Calcula las estadísticas de las personas actuales de la lista y empieza a escuchar sus cambios.
+     *
+     * @param personas La lista de personas.
+     */
+    public EstadisticasAgenda(ObservableList<Persona> personas) {
+        escuchar(personas);
+    }
+
+    /**
+     * Devuelve el número de personas de la lista.
+     *
+     * @return El número de personas.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Devuelve la edad media de las personas de la lista.
+     *
+     * @return La edad media, o 0 si la lista está vacía.
+     */
+    public double edadMedia() {
+        return total == 0 ? 0 : (double) sumaEdades / total;
+    }
+
+    /**
+     * Devuelve el número de personas de un tramo de edad.
+     *
+     * @param tramo El tramo, de 0 a {@link #TRAMOS} - 1.
+     * @return El número de personas cuya edad cae en el tramo.
+     */
+    public long personasEnTramo(int tramo) {
+        return porTramo[tramo];
+    }
+
+    /**
+     * Devuelve el texto que describe un tramo de edad, como {@code "20-29"} o {@code "100+"}.
+     *
+     * @param tramo El tramo, de 0 a {@link #TRAMOS} - 1.
+     * @return La descripción del tramo.
+     */
+    public static String etiquetaTramo(int tramo) {
+        int desde = tramo * ANCHO_TRAMO;
+        return tramo == TRAMOS - 1 ? desde + "+" : desde + "-" + (desde + ANCHO_TRAMO - 1);
+    }
+
+    /**
+     * Devuelve el número de apellidos distintos.
+     *
+     * @return El número de apellidos distintos.
+     */
+    public int apellidosDistintos() {
+        return porApellido.size();
+    }
+
+    /**
+     * Devuelve los apellidos más frecuentes, de más a menos personas y, a igualdad, por orden alfabético.
+     *
+     * @param cuantos El número máximo de apellidos.
+     * @return Los apellidos y su número de personas.
+     */
+    public List<Frecuencia> apellidosMasFrecuentes(int cuantos) {
+        List<Frecuencia> frecuentes = new ArrayList<>(cuantos);
+        for (Map.Entry<Integer, TreeSet<String>> grupo : apellidosPorFrecuencia.entrySet()) {
+            for (String apellido : grupo.getValue()) {
+                if (frecuentes.size() == cuantos) {
+                    return frecuentes;
+                }
+                frecuentes.add(new Frecuencia(apellido, grupo.getKey()));
+            }
+        }
+        return frecuentes;
+    }
+
+    /**
+     * Devuelve un número que cambia cada vez que cambian las estadísticas. Sirve para que una vista
+     * que se refresca periódicamente no se redibuje si no ha cambiado nada.
+     *
+     * @return La versión actual.
+     */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    protected void agregar(Persona persona) {
+        contar(persona.getApellido(), persona.getEdad(), 1);
+    }
+
+    @Override
+    protected void quitar(Persona persona) {
+        contar(persona.getApellido(), persona.getEdad(), -1);
+    }
+
+    @Override
+    protected void modificar(Persona persona, String nombreAnterior, String apellidoAnterior, int edadAnterior) {
+        if (apellidoAnterior.equals(persona.getApellido()) && edadAnterior == persona.getEdad()) {
+            return; // Solo ha cambiado el nombre, que no interviene en las estadísticas
+        }
+        contar(apellidoAnterior, edadAnterior, -1);
+        contar(persona.getApellido(), persona.getEdad(), 1);
+    }
+
+    /**
+     * Suma o resta una persona con el apellido y la edad indicados.
+     */
+    private void contar(String apellido, int edad, int delta) {
+        total += delta;
+        sumaEdades += (long) edad * delta;
+        porTramo[tramo(edad)] += delta;
+
+        int anterior = porApellido.getOrDefault(apellido, 0);
+        int nueva = anterior + delta;
+        if (anterior > 0) {
+            TreeSet<String> grupo = apellidosPorFrecuencia.get(anterior);
+            grupo.remove(apellido);
+            if (grupo.isEmpty()) {
+                apellidosPorFrecuencia.remove(anterior);
+            }
+        }
+        if (nueva > 0) {
+            porApellido.put(apellido, nueva);
+            apellidosPorFrecuencia.computeIfAbsent(nueva, n -> new TreeSet<>()).add(apellido);
+        } else {
+            porApellido.remove(apellido);
+        }
+        version++;
+    }
+
+    private static int tramo(int edad) {
+        return Math.max(0, Math.min(TRAMOS - 1, edad / ANCHO_TRAMO));
+    }
+}
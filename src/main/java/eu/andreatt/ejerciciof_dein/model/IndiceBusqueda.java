@@ -0,0 +1,365 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ObservableList;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+/**
+ * Índice de búsqueda de las personas, que resuelve las {@link ConsultaPersonas} del campo de filtro.
+ * <p>
+ * Cada persona recibe un identificador creciente. Para los textos se usan trigramas (grupos de tres
+ * caracteres seguidos) del nombre y del apellido: cada trigrama guarda la lista ordenada de los
+ * identificadores de las personas que lo contienen, y una búsqueda por subcadena interseca las listas
+ * de los trigramas de la consulta. Para la edad, un mapa ordenado guarda la lista de identificadores de
+ * cada edad, así que un intervalo de edades se resuelve juntando las listas de las edades que abarca.
+ * De las dos fuentes se recorre la que da menos candidatas, y solo se comprueban esas personas.
+ * <p>
+ * Los textos se comparan sin tildes ni mayúsculas, así que "González" y "gonzalez" coinciden. El índice
+ * y las comprobaciones usan las claves que cada persona guarda ya normalizadas; solo se normaliza la consulta.
+ * <p>
+ * Las bajas y ediciones no borran nada de las listas: la persona recibe un identificador nuevo y el
+ * antiguo queda muerto. Cuando hay más identificadores muertos que vivos, el índice se reconstruye.
+ */
+public final class IndiceBusqueda extends IndiceIncremental {
+
+    /** Longitud de los fragmentos indexados. Las consultas más cortas comprueban el texto directamente. */
+    private static final int N = 3;
+
+    /** Número mínimo de identificadores muertos antes de plantearse reconstruir el índice. */
+    private static final int MINIMO_RECONSTRUCCION = 1 << 16;
+
+    /** Cada carácter hasta U+024F sin tilde y en minúsculas; los demás se normalizan con {@link Normalizer}. */
+    private static final char[] PLEGADO = new char[0x250];
+
+    static {
+        for (char c = 0; c < PLEGADO.length; c++) {
+            String plegado = quitarMarcas(String.valueOf(c));
+            PLEGADO[c] = plegado.length() == 1 ? plegado.charAt(0) : Character.toLowerCase(c);
+        }
+    }
+
+    private final Map<Long, ListaIds> listas = new HashMap<>();  // Lista de identificadores de cada trigrama
+    private final NavigableMap<Integer, ListaIds> porEdad = new TreeMap<>();  // Lista de identificadores de cada edad
+    private Persona[] porId = new Persona[1024];  // Persona de cada identificador, o null si está muerto
+    private int siguienteId;  // Próximo identificador a asignar
+    private int vivos;  // Personas indexadas actualmente
+    private int generacion;  // Se incrementa al reconstruir, porque cambian todos los identificadores
+
+    /**
+     * Crea el índice con las personas actuales de la lista y empieza a escuchar sus cambios.
+     *
+     * @param personas La lista de personas a indexar.
+     */
+    public IndiceBusqueda(ObservableList<Persona> personas) {
+        escuchar(personas);
+    }
+
+    /**
+     * Obtiene un predicado que acepta las personas que cumplen la consulta. El índice se consulta una sola
+     * vez, al crear el predicado; las personas añadidas o editadas después se comprueban directamente.
+     *
+     * @param consulta La consulta.
+     * @return El predicado, o {@code null} si la consulta está vacía y no hay que filtrar.
+     */
+    public Predicate<Persona> consultar(ConsultaPersonas consulta) {
+        if (consulta.vacia()) {
+            return null;
+        }
+        BitSet encontrados = buscar(consulta);
+        if (encontrados == null) {
+            return consulta::acepta; // Solo hay textos demasiado cortos para los trigramas
+        }
+        int limite = siguienteId;
+        int generacionConsulta = generacion;
+        long selloConsulta = Persona.relojEdiciones();
+        return p -> {
+            int id = p.idBusqueda;
+            if (id < 0 || id >= limite || generacionConsulta != generacion || p.selloEdicion > selloConsulta) {
+                return consulta.acepta(p); // La persona ha cambiado desde la consulta
+            }
+            return encontrados.get(id);
+        };
+    }
+
+    /**
+     * Obtiene un predicado que acepta las personas cuyo nombre o apellido contiene el texto, sin
+     * distinguir mayúsculas. El texto se busca tal cual, sin interpretarlo como una consulta.
+     *
+     * @param texto El texto a buscar.
+     * @return El predicado, o {@code null} si el texto está vacío y no hay que filtrar.
+     */
+    public Predicate<Persona> coincidencias(String texto) {
+        return consultar(ConsultaPersonas.deTexto(texto));
+    }
+
+    /**
+     * Busca las personas que cumplen la consulta. Las candidatas salen de la intersección de las listas
+     * de todos los trigramas de sus textos o de las listas de las edades admitidas, lo que sea más corto,
+     * y después se comprueban una a una.
+     *
+     * @param consulta La consulta, no vacía.
+     * @return Los identificadores de las personas que cumplen la consulta, o {@code null} si el índice no
+     *         puede acotar la búsqueda y hay que comprobar a todas las personas.
+     */
+    private BitSet buscar(ConsultaPersonas consulta) {
+        BitSet encontrados = new BitSet(siguienteId);
+        int[] candidatas = null;
+        int n = 0;
+        List<String> textos = consulta.todosLosTextos();
+        LongStream.Builder todas = LongStream.builder();
+        for (String texto : textos) {
+            if (texto.length() >= N) {
+                for (long clave : trigramas(texto)) {
+                    todas.add(clave);
+                }
+            }
+        }
+        long[] claves = todas.build().distinct().toArray();
+        if (claves.length > 0) {
+            ListaIds[] listasTrigramas = new ListaIds[claves.length];
+            for (int i = 0; i < claves.length; i++) {
+                listasTrigramas[i] = listas.get(claves[i]);
+                if (listasTrigramas[i] == null) {
+                    return encontrados; // Ninguna persona tiene ese trigrama
+                }
+            }
+            // Se empieza por la lista más corta para que la intersección nunca crezca
+            Arrays.sort(listasTrigramas, Comparator.comparingInt(l -> l.tam));
+            candidatas = Arrays.copyOf(listasTrigramas[0].ids, listasTrigramas[0].tam);
+            n = candidatas.length;
+            for (int i = 1; i < listasTrigramas.length && n > 0; i++) {
+                n = intersecar(candidatas, n, listasTrigramas[i]);
+            }
+        }
+
+        if (consulta.limitaEdad()) {
+            if (consulta.edadMinima() > consulta.edadMaxima()) {
+                return encontrados; // Intervalo vacío
+            }
+            Collection<ListaIds> edades = porEdad.subMap(consulta.edadMinima(), true, consulta.edadMaxima(), true).values();
+            long enIntervalo = 0;
+            for (ListaIds lista : edades) {
+                enIntervalo += lista.tam;
+            }
+            if (candidatas == null || enIntervalo < n) {
+                // Las edades acotan más que los textos: las candidatas son todas las personas del intervalo
+                for (ListaIds lista : edades) {
+                    comprobar(consulta, lista.ids, lista.tam, encontrados);
+                }
+                return encontrados;
+            }
+        }
+        if (candidatas == null) {
+            return null;
+        }
+        // Los trigramas pueden aparecer separados o repartidos entre nombre y apellido: se comprueba el texto
+        comprobar(consulta, candidatas, n, encontrados);
+        return encontrados;
+    }
+
+    /**
+     * Marca los identificadores vivos de la lista cuyas personas cumplen la consulta.
+     */
+    private void comprobar(ConsultaPersonas consulta, int[] ids, int n, BitSet encontrados) {
+        for (int i = 0; i < n; i++) {
+            Persona persona = porId[ids[i]];
+            if (persona != null && consulta.acepta(persona)) {
+                encontrados.set(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Deja en las primeras posiciones de {@code resultado} los identificadores que también están en la lista.
+     * Avanza por la lista con búsqueda exponencial, que es rápida cuando la lista es mucho más larga.
+     *
+     * @return El número de identificadores que quedan.
+     */
+    private static int intersecar(int[] resultado, int n, ListaIds lista) {
+        int[] ids = lista.ids;
+        int tam = lista.tam;
+        int quedan = 0;
+        int pos = 0;
+        for (int i = 0; i < n && pos < tam; i++) {
+            int id = resultado[i];
+            int salto = 1;
+            while (pos + salto < tam && ids[pos + salto] < id) {
+                salto <<= 1;
+            }
+            int encontrado = Arrays.binarySearch(ids, pos, Math.min(pos + salto + 1, tam), id);
+            if (encontrado >= 0) {
+                resultado[quedan++] = id;
+                pos = encontrado + 1;
+            } else {
+                pos = -encontrado - 1;
+            }
+        }
+        return quedan;
+    }
+
+    @Override
+    protected void agregar(Persona persona) {
+        int id = siguienteId++;
+        if (id == porId.length) {
+            porId = Arrays.copyOf(porId, porId.length * 2);
+        }
+        porId[id] = persona;
+        persona.idBusqueda = id;
+        vivos++;
+        indexar(id, persona.claveNombre());
+        indexar(id, persona.claveApellido());
+        porEdad.computeIfAbsent(persona.getEdad(), e -> new ListaIds()).agregar(id);
+    }
+
+    @Override
+    protected void quitar(Persona persona) {
+        int id = persona.idBusqueda;
+        if (id >= 0 && id < siguienteId && porId[id] == persona) {
+            porId[id] = null;
+            persona.idBusqueda = -1;
+            vivos--;
+            reconstruirSiHaceFalta();
+        }
+    }
+
+    @Override
+    protected void modificar(Persona persona, String nombreAnterior, String apellidoAnterior, int edadAnterior) {
+        // Un identificador nuevo mantiene ordenadas las listas sin tener que borrar el antiguo de ellas
+        quitar(persona);
+        agregar(persona);
+    }
+
+    /**
+     * Añade el identificador a la lista de cada trigrama del texto.
+     */
+    private void indexar(int id, String texto) {
+        for (int i = 0; i + N <= texto.length(); i++) {
+            listas.computeIfAbsent(clave(texto, i), k -> new ListaIds()).agregar(id);
+        }
+    }
+
+    /**
+     * Reconstruye el índice desde cero cuando los identificadores muertos superan a los vivos.
+     */
+    private void reconstruirSiHaceFalta() {
+        int muertos = siguienteId - vivos;
+        if (muertos < MINIMO_RECONSTRUCCION || muertos < vivos) {
+            return;
+        }
+        Persona[] anteriores = porId;
+        int total = siguienteId;
+        listas.clear();
+        porEdad.clear();
+        porId = new Persona[Math.max(1024, vivos * 2)];
+        siguienteId = 0;
+        vivos = 0;
+        generacion++;
+        for (int i = 0; i < total; i++) {
+            if (anteriores[i] != null) {
+                agregar(anteriores[i]);
+            }
+        }
+    }
+
+    /**
+     * Normaliza un texto para compararlo sin distinguir tildes ni mayúsculas, igual en el índice, en las
+     * consultas y en el modo por lotes. Las letras pierden cualquier marca, también la ñ y la ç.
+     * Si el texto ya está normalizado se devuelve la misma cadena, sin crear otra.
+     *
+     * @param texto El texto, que puede ser {@code null}.
+     * @return El texto normalizado.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        int i = 0;
+        while (i < texto.length()) {
+            char c = texto.charAt(i);
+            if (c >= PLEGADO.length) {
+                return quitarMarcas(texto); // Marcas sueltas u otros alfabetos
+            }
+            if (PLEGADO[c] != c) {
+                break;
+            }
+            i++;
+        }
+        if (i == texto.length()) {
+            return texto;
+        }
+        char[] plegado = texto.toCharArray();
+        for (; i < plegado.length; i++) {
+            char c = plegado[i];
+            if (c >= PLEGADO.length) {
+                return quitarMarcas(texto);
+            }
+            plegado[i] = PLEGADO[c];
+        }
+        return new String(plegado);
+    }
+
+    /**
+     * Descompone el texto, quita las marcas diacríticas y lo pasa a minúsculas.
+     */
+    private static String quitarMarcas(String texto) {
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder resultado = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString();
+    }
+
+    /**
+     * Obtiene las claves distintas de los trigramas de un texto.
+     */
+    private static long[] trigramas(String texto) {
+        long[] claves = new long[texto.length() - N + 1];
+        for (int i = 0; i < claves.length; i++) {
+            claves[i] = clave(texto, i);
+        }
+        return Arrays.stream(claves).distinct().toArray();
+    }
+
+    /**
+     * Empaqueta los tres caracteres que empiezan en la posición indicada en un único {@code long}.
+     */
+    private static long clave(String texto, int i) {
+        return ((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2);
+    }
+
+    /**
+     * Lista creciente de identificadores de un trigrama. Como los identificadores se asignan en orden,
+     * añadir al final mantiene la lista ordenada.
+     */
+    private static final class ListaIds {
+
+        private int[] ids = new int[4];
+        private int tam;
+
+        void agregar(int id) {
+            if (tam > 0 && ids[tam - 1] == id) {
+                return; // El trigrama se repite en el mismo texto o en el nombre y el apellido
+            }
+            if (tam == ids.length) {
+                ids = Arrays.copyOf(ids, tam * 2);
+            }
+            ids[tam++] = id;
+        }
+    }
+}
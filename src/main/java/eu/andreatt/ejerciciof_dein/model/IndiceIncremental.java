@@ -0,0 +1,98 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Base de los índices que se mantienen al día con una lista de personas sin volver a recorrerla.
+ * Escucha los cambios de la lista y las ediciones de cada persona, sin necesidad de crear sus propiedades,
+ * y los traduce en llamadas a {@link #agregar}, {@link #quitar} y {@link #modificar}.
+ */
+public abstract class IndiceIncremental {
+
+    private final Persona.OyenteEdicion oyenteEdicion = this::personaEditada;
+
+    /**
+     * Indexa las personas actuales de la lista y empieza a escuchar sus cambios.
+     * Las subclases deben llamarlo al final de su constructor, cuando sus estructuras ya existen, y ser
+     * {@code final}: una subclase suya recibiría altas antes de haber inicializado sus propios campos.
+     *
+     * @param personas La lista de personas a indexar.
+     */
+    protected final void escuchar(ObservableList<Persona> personas) {
+        for (Persona persona : personas) {
+            vincular(persona);
+        }
+        personas.addListener(this::listaCambiada);
+    }
+
+    /**
+     * Añade al índice una persona que acaba de entrar en la lista.
+     *
+     * @param persona La persona añadida.
+     */
+    protected abstract void agregar(Persona persona);
+
+    /**
+     * Quita del índice una persona que acaba de salir de la lista.
+     *
+     * @param persona La persona eliminada, con sus valores actuales.
+     */
+    protected abstract void quitar(Persona persona);
+
+    /**
+     * Actualiza el índice tras editar una persona de la lista. Solo cambia uno de los tres valores.
+     *
+     * @param persona           La persona editada, ya con el valor nuevo.
+     * @param nombreAnterior    El nombre antes de la edición.
+     * @param apellidoAnterior  El apellido antes de la edición.
+     * @param edadAnterior      La edad antes de la edición.
+     */
+    protected abstract void modificar(Persona persona, String nombreAnterior, String apellidoAnterior, int edadAnterior);
+
+    /**
+     * Traduce los cambios de la lista en altas y bajas del índice.
+     */
+    private void listaCambiada(ListChangeListener.Change<? extends Persona> cambio) {
+        while (cambio.next()) {
+            if (cambio.wasPermutated() || cambio.wasUpdated()) {
+                continue; // El contenido de la lista no cambia
+            }
+            for (Persona persona : cambio.getRemoved()) {
+                desvincular(persona);
+            }
+            for (Persona persona : cambio.getAddedSubList()) {
+                vincular(persona);
+            }
+        }
+    }
+
+    /**
+     * Reconstruye los valores anteriores de una persona editada a partir del valor antiguo de la propiedad.
+     */
+    private void personaEditada(Persona persona, String propiedad, Object anterior) {
+        String nombre = persona.getNombre();
+        String apellido = persona.getApellido();
+        int edad = persona.getEdad();
+
+        switch (propiedad) {
+            case "nombre" -> nombre = (String) anterior;
+            case "apellido" -> apellido = (String) anterior;
+            case "edad" -> edad = ((Number) anterior).intValue();
+            default -> {
+                return;
+            }
+        }
+        modificar(persona, nombre, apellido, edad);
+    }
+
+    private void vincular(Persona persona) {
+        agregar(persona);
+        persona.agregarOyente(oyenteEdicion);
+    }
+
+    private void desvincular(Persona persona) {
+        quitar(persona);
+        persona.quitarOyente(oyenteEdicion);
+    }
+}
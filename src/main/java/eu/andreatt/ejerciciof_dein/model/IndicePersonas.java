@@ -0,0 +1,65 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ObservableList;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índice hash de las personas de una lista, por nombre, apellido y edad.
+ * Permite saber en tiempo constante si ya existe una persona igual a otra, sin recorrer la lista.
+ * Se mantiene sincronizado con la lista y con las ediciones hechas con {@code setNombre},
+ * {@code setApellido} y {@code setEdad}.
+ */
+public final class IndicePersonas extends IndiceIncremental {
+
+    private final Map<ClavePersona, Integer> ocurrencias = new HashMap<>();  // Veces que aparece cada clave en la lista
+
+    /**
+     * Crea el índice con las personas actuales de la lista y empieza a escuchar sus cambios.
+     *
+     * @param personas La lista de personas a indexar.
+     */
+    public IndicePersonas(ObservableList<Persona> personas) {
+        escuchar(personas);
+    }
+
+    /**
+     * Indica si la lista contiene una persona igual (según {@code Persona.equals}) a la indicada.
+     *
+     * @param persona La persona a buscar.
+     * @return {@code true} si hay alguna persona con el mismo nombre, apellido y edad.
+     */
+    public boolean contiene(Persona persona) {
+        return ocurrencias.containsKey(ClavePersona.de(persona));
+    }
+
+    /**
+     * Devuelve el número de claves distintas del índice.
+     *
+     * @return El número de personas distintas de la lista.
+     */
+    public int tamano() {
+        return ocurrencias.size();
+    }
+
+    @Override
+    protected void agregar(Persona persona) {
+        ocurrencias.merge(ClavePersona.de(persona), 1, Integer::sum);
+    }
+
+    @Override
+    protected void quitar(Persona persona) {
+        decrementar(ClavePersona.de(persona));
+    }
+
+    @Override
+    protected void modificar(Persona persona, String nombreAnterior, String apellidoAnterior, int edadAnterior) {
+        decrementar(new ClavePersona(nombreAnterior, apellidoAnterior, edadAnterior));
+        agregar(persona);
+    }
+
+    private void decrementar(ClavePersona clave) {
+        ocurrencias.computeIfPresent(clave, (c, n) -> n == 1 ? null : n - 1);
+    }
+}
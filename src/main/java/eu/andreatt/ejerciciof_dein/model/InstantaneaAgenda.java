@@ -0,0 +1,253 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Copia inmutable de los valores de una lista de personas en un momento dado.
+ * Se toma en el hilo de JavaFX y después puede leerse desde cualquier hilo sin que le
+ * afecten las ediciones posteriores de la agenda. Para buscar en ella, {@link #conClaves}
+ * copia además las claves de búsqueda que cada persona ya tiene normalizadas.
+ * <p>
+ * Los valores se guardan en bloques de {@link #TAMANO_BLOQUE} personas que nunca se modifican, así que
+ * dos instantáneas pueden compartir los bloques que no han cambiado entre ellas. {@link Seguimiento}
+ * aprovecha esto para renovar la instantánea de una lista copiando solo los bloques afectados.
+ */
+public final class InstantaneaAgenda {
+
+    /** Personas de cada bloque; el último puede tener menos. */
+    public static final int TAMANO_BLOQUE = 1 << 12;
+
+    private static final int BITS_BLOQUE = Integer.numberOfTrailingZeros(TAMANO_BLOQUE);
+
+    /** Instantánea sin personas. */
+    public static final InstantaneaAgenda VACIA = new InstantaneaAgenda(new Bloque[0], 0);
+
+    /**
+     * Valores de un tramo consecutivo de personas.
+     *
+     * @param clavesNombre   Nombres normalizados para buscar, o null si no se copiaron.
+     * @param clavesApellido Apellidos normalizados para buscar, o null si no se copiaron.
+     */
+    private record Bloque(String[] nombres, String[] apellidos, int[] edades, String[] clavesNombre, String[] clavesApellido) {
+
+        /**
+         * Copia los valores actuales de las personas de {@code desde} a {@code hasta}.
+         */
+        static Bloque copiar(List<Persona> personas, int desde, int hasta, boolean conClaves) {
+            int n = hasta - desde;
+            String[] nombres = new String[n];
+            String[] apellidos = new String[n];
+            int[] edades = new int[n];
+            String[] clavesNombre = conClaves ? new String[n] : null;
+            String[] clavesApellido = conClaves ? new String[n] : null;
+            for (int i = 0; i < n; i++) {
+                Persona persona = personas.get(desde + i);
+                nombres[i] = persona.getNombre();
+                apellidos[i] = persona.getApellido();
+                edades[i] = persona.getEdad();
+                if (conClaves) {
+                    clavesNombre[i] = persona.claveNombre();
+                    clavesApellido[i] = persona.claveApellido();
+                }
+            }
+            return new Bloque(nombres, apellidos, edades, clavesNombre, clavesApellido);
+        }
+    }
+
+    private final Bloque[] bloques;
+    private final int tamano;
+
+    private InstantaneaAgenda(Bloque[] bloques, int tamano) {
+        this.bloques = bloques;
+        this.tamano = tamano;
+    }
+
+    /**
+     * Copia los valores actuales de las personas. Debe llamarse desde el hilo que modifica la lista.
+     *
+     * @param personas Las personas a copiar, en el orden que tendrá la instantánea.
+     * @return La instantánea.
+     */
+    public static InstantaneaAgenda de(List<Persona> personas) {
+        return copiar(personas, false, null, null, 0);
+    }
+
+    /**
+     * Copia los valores actuales de las personas junto con sus claves de búsqueda, para resolver
+     * {@link ConsultaPersonas} sobre la instantánea sin normalizar cada fila. Debe llamarse desde el
+     * hilo que modifica la lista.
+     *
+     * @param personas Las personas a copiar, en el orden que tendrá la instantánea.
+     * @return La instantánea.
+     */
+    public static InstantaneaAgenda conClaves(List<Persona> personas) {
+        return copiar(personas, true, null, null, 0);
+    }
+
+    /**
+     * Empieza a seguir los cambios de una lista para renovar su instantánea, con claves de búsqueda,
+     * copiando solo los bloques que cambian. Debe llamarse desde el hilo que modifica la lista.
+     *
+     * @param personas La lista a seguir.
+     * @return El seguimiento, que ya escucha los cambios de la lista.
+     */
+    public static Seguimiento seguir(ObservableList<Persona> personas) {
+        Seguimiento seguimiento = new Seguimiento(personas);
+        personas.addListener(seguimiento);
+        return seguimiento;
+    }
+
+    /**
+     * Copia las personas en bloques, reutilizando los de la instantánea anterior que no han cambiado.
+     *
+     * @param anterior         La instantánea anterior, o null para copiarlo todo.
+     * @param cambiados        Los bloques de la anterior que hay que volver a copiar.
+     * @param desplazadasDesde Primera posición a partir de la cual no se puede reutilizar ningún bloque.
+     */
+    private static InstantaneaAgenda copiar(List<Persona> personas, boolean conClaves, InstantaneaAgenda anterior,
+                                            BitSet cambiados, int desplazadasDesde) {
+        int n = personas.size();
+        Bloque[] bloques = new Bloque[(n + TAMANO_BLOQUE - 1) >> BITS_BLOQUE];
+        for (int b = 0; b < bloques.length; b++) {
+            int desde = b << BITS_BLOQUE;
+            int hasta = Math.min(n, desde + TAMANO_BLOQUE);
+            Bloque previo = anterior != null && b < anterior.bloques.length && hasta <= desplazadasDesde
+                    && !cambiados.get(b) ? anterior.bloques[b] : null;
+            bloques[b] = previo != null && previo.edades().length == hasta - desde
+                    ? previo : Bloque.copiar(personas, desde, hasta, conClaves);
+        }
+        return new InstantaneaAgenda(bloques, n);
+    }
+
+    /**
+     * Comprueba si la persona de una posición cumple una consulta.
+     *
+     * @param i        La posición.
+     * @param consulta La consulta.
+     * @return {@code true} si la persona cumple todas las condiciones de la consulta.
+     */
+    public boolean acepta(int i, ConsultaPersonas consulta) {
+        Bloque bloque = bloques[i >> BITS_BLOQUE];
+        int j = i & (TAMANO_BLOQUE - 1);
+        return bloque.clavesNombre() != null
+                ? consulta.acepta(bloque.clavesNombre()[j], bloque.clavesApellido()[j], bloque.edades()[j])
+                : consulta.acepta(IndiceBusqueda.normalizar(bloque.nombres()[j]), IndiceBusqueda.normalizar(bloque.apellidos()[j]), bloque.edades()[j]);
+    }
+
+    /**
+     * Devuelve el número de personas de la instantánea.
+     *
+     * @return El número de personas.
+     */
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Obtiene el nombre de la persona de una posición.
+     *
+     * @param i La posición.
+     * @return El nombre.
+     */
+    public String nombre(int i) {
+        return bloques[i >> BITS_BLOQUE].nombres()[i & (TAMANO_BLOQUE - 1)];
+    }
+
+    /**
+     * Obtiene el apellido de la persona de una posición.
+     *
+     * @param i La posición.
+     * @return El apellido.
+     */
+    public String apellido(int i) {
+        return bloques[i >> BITS_BLOQUE].apellidos()[i & (TAMANO_BLOQUE - 1)];
+    }
+
+    /**
+     * Obtiene la edad de la persona de una posición.
+     *
+     * @param i La posición.
+     * @return La edad.
+     */
+    public int edad(int i) {
+        return bloques[i >> BITS_BLOQUE].edades()[i & (TAMANO_BLOQUE - 1)];
+    }
+
+    /**
+     * Cuenta los bloques que esta instantánea comparte con otra. Sirve para comprobar que una
+     * renovación no ha copiado más de lo necesario.
+     *
+     * @param otra La otra instantánea.
+     * @return El número de posiciones de bloque en las que ambas tienen el mismo bloque.
+     */
+    int bloquesCompartidos(InstantaneaAgenda otra) {
+        int compartidos = 0;
+        for (int b = 0; b < Math.min(bloques.length, otra.bloques.length); b++) {
+            if (bloques[b] == otra.bloques[b]) {
+                compartidos++;
+            }
+        }
+        return compartidos;
+    }
+
+    /**
+     * Renueva la instantánea de una lista copiando solo los bloques que han cambiado desde la anterior.
+     * Una edición o un reemplazo del mismo tamaño solo afecta a sus bloques; una alta o una baja desplaza
+     * las personas siguientes, así que afecta a todos los bloques desde la primera posición que cambia.
+     * Añadir al final, que es lo más habitual, solo copia el último bloque y los nuevos.
+     * Se usa desde el hilo que modifica la lista.
+     */
+    public static final class Seguimiento implements ListChangeListener<Persona> {
+
+        private final ObservableList<Persona> personas;  // Lista seguida
+        private final BitSet cambiados = new BitSet();  // Bloques editados desde la última instantánea
+        private int desplazadasDesde = Integer.MAX_VALUE;  // Primera posición desplazada por altas o bajas
+        private InstantaneaAgenda ultima;  // Última instantánea entregada, o null si todavía no hay
+
+        private Seguimiento(ObservableList<Persona> personas) {
+            this.personas = personas;
+        }
+
+        @Override
+        public void onChanged(Change<? extends Persona> cambio) {
+            while (cambio.next()) {
+                if (cambio.wasPermutated() || cambio.wasUpdated()
+                        || (cambio.wasReplaced() && cambio.getRemovedSize() == cambio.getAddedSize())) {
+                    marcar(cambio.getFrom(), cambio.getTo());
+                } else {
+                    desplazadasDesde = Math.min(desplazadasDesde, cambio.getFrom());
+                }
+            }
+        }
+
+        private void marcar(int desde, int hasta) {
+            if (hasta > desde) {
+                cambiados.set(desde >> BITS_BLOQUE, ((hasta - 1) >> BITS_BLOQUE) + 1);
+            }
+        }
+
+        /**
+         * Devuelve una instantánea de la lista con sus claves de búsqueda, que comparte con la anterior los
+         * bloques que no han cambiado.
+         *
+         * @return La instantánea.
+         */
+        public InstantaneaAgenda siguiente() {
+            ultima = copiar(personas, true, ultima, cambiados, desplazadasDesde);
+            cambiados.clear();
+            desplazadasDesde = Integer.MAX_VALUE;
+            return ultima;
+        }
+
+        /**
+         * Deja de seguir los cambios de la lista.
+         */
+        public void detener() {
+            personas.removeListener(this);
+        }
+    }
+}
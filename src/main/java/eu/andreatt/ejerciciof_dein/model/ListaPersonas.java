@@ -0,0 +1,416 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Lista observable de personas de la agenda, respaldada por un array.
+ * Avisa de las ediciones de cada persona como cambios de actualización, igual que una lista con
+ * extractor, para que las vistas filtradas y ordenadas se mantengan al día. Además permite aplicar
+ * muchas altas, modificaciones y bajas como un solo {@link LoteCambios}, que genera un único
+ * cambio de lista y elimina todas las bajas en una sola pasada.
+ * <p>
+ * Las operaciones en bloque ({@code setAll}, {@code addAll}, {@code clear}, {@code removeAll})
+ * también se hacen en una pasada, sin desplazar el array una vez por persona.
+ * <p>
+ * Cada persona guarda su posición en la lista, que se renumera junto con los desplazamientos del
+ * array, así que una edición se notifica sin buscar a la persona. Si la misma instancia está en la
+ * lista más de una vez, solo se notifica una de sus posiciones.
+ */
+public final class ListaPersonas extends ObservableListBase<Persona> {
+
+    private static final Persona[] VACIO = new Persona[0];
+
+    /** Número de tramos a partir del cual una eliminación dispersa se notifica como un solo reemplazo. */
+    private static final int MAX_TRAMOS = 32;
+
+    private final Persona.OyenteEdicion oyentePersona = this::personaEditada;
+    private Persona[] elementos = VACIO;
+    private int tamano;
+    private Set<Persona> editadasEnLote;  // Personas editadas mientras se aplica un lote, o null fuera de él
+
+    /**
+     * Crea una lista vacía.
+     */
+    public ListaPersonas() {
+    }
+
+    /**
+     * Crea una lista con las personas indicadas.
+     *
+     * @param personas Las personas iniciales.
+     */
+    public ListaPersonas(Collection<? extends Persona> personas) {
+        setAll(personas);
+    }
+
+    /**
+     * Empieza un lote de cambios sobre esta lista. Los cambios no se aplican hasta {@link LoteCambios#confirmar()}.
+     *
+     * @return Un lote vacío.
+     */
+    public LoteCambios lote() {
+        return new LoteCambios(this);
+    }
+
+    @Override
+    public Persona get(int index) {
+        Objects.checkIndex(index, tamano);
+        return elementos[index];
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public void add(int index, Persona persona) {
+        Objects.checkIndex(index, tamano + 1);
+        asegurarCapacidad(tamano + 1);
+        System.arraycopy(elementos, index, elementos, index + 1, tamano - index);
+        elementos[index] = persona;
+        tamano++;
+        modCount++;
+        renumerar(index);
+        observar(persona);
+
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    @Override
+    public Persona set(int index, Persona persona) {
+        Objects.checkIndex(index, tamano);
+        Persona anterior = elementos[index];
+        elementos[index] = persona;
+        persona.posicionLista = index;
+        dejarDeObservar(anterior);
+        observar(persona);
+
+        beginChange();
+        nextSet(index, anterior);
+        endChange();
+        return anterior;
+    }
+
+    @Override
+    public Persona remove(int index) {
+        Objects.checkIndex(index, tamano);
+        Persona anterior = elementos[index];
+        System.arraycopy(elementos, index + 1, elementos, index, tamano - index - 1);
+        elementos[--tamano] = null;
+        modCount++;
+        renumerar(index);
+        dejarDeObservar(anterior);
+
+        beginChange();
+        nextRemove(index, anterior);
+        endChange();
+        return anterior;
+    }
+
+    @Override
+    protected void removeRange(int desde, int hasta) {
+        Objects.checkFromToIndex(desde, hasta, tamano);
+        if (desde == hasta) {
+            return;
+        }
+        List<Persona> quitadas = Arrays.asList(Arrays.copyOfRange(elementos, desde, hasta));
+        System.arraycopy(elementos, hasta, elementos, desde, tamano - hasta);
+        Arrays.fill(elementos, tamano - (hasta - desde), tamano, null);
+        tamano -= hasta - desde;
+        modCount++;
+        renumerar(desde);
+        quitadas.forEach(this::dejarDeObservar);
+
+        beginChange();
+        nextRemove(desde, quitadas);
+        endChange();
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, tamano);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Persona> personas) {
+        return addAll(tamano, personas);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Persona> personas) {
+        Objects.checkIndex(index, tamano + 1);
+        Object[] nuevas = personas.toArray();
+        int n = nuevas.length;
+        if (n == 0) {
+            return false;
+        }
+        asegurarCapacidad(tamano + n);
+        System.arraycopy(elementos, index, elementos, index + n, tamano - index);
+        System.arraycopy(nuevas, 0, elementos, index, n);
+        tamano += n;
+        modCount++;
+        renumerar(index);
+        for (int i = index; i < index + n; i++) {
+            observar(elementos[i]);
+        }
+
+        beginChange();
+        nextAdd(index, index + n);
+        endChange();
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Persona... personas) {
+        return addAll(Arrays.asList(personas));
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends Persona> personas) {
+        Object[] nuevas = personas.toArray();
+        if (tamano == 0 && nuevas.length == 0) {
+            return false;
+        }
+        List<Persona> anteriores = Arrays.asList(Arrays.copyOf(elementos, tamano));
+        anteriores.forEach(this::dejarDeObservar);
+        elementos = Arrays.copyOf(nuevas, nuevas.length, Persona[].class);
+        tamano = nuevas.length;
+        modCount++;
+        renumerar(0);
+        for (Persona persona : elementos) {
+            observar(persona);
+        }
+
+        beginChange();
+        nextReplace(0, tamano, anteriores);
+        endChange();
+        return true;
+    }
+
+    @Override
+    public boolean setAll(Persona... personas) {
+        return setAll(Arrays.asList(personas));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> personas) {
+        return quitarSi(personas::contains) > 0;
+    }
+
+    @Override
+    public boolean removeAll(Persona... personas) {
+        return removeAll(Arrays.asList(personas));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> personas) {
+        return quitarSi(persona -> !personas.contains(persona)) > 0;
+    }
+
+    @Override
+    public boolean retainAll(Persona... personas) {
+        return retainAll(Arrays.asList(personas));
+    }
+
+    /**
+     * Aplica un lote como un único cambio de lista: primero las bajas, en una sola pasada, después
+     * las altas al final de la lista y por último las modificaciones. Las personas modificadas se
+     * notifican como reemplazadas por sí mismas, para que las vistas filtradas y ordenadas las
+     * vuelvan a evaluar; las listas ordenadas de JavaFX no admiten bien actualizaciones mezcladas
+     * con eliminaciones en el mismo cambio.
+     *
+     * @param lote El lote a aplicar.
+     */
+    void aplicar(LoteCambios lote) {
+        Set<Persona> bajas = lote.bajas();
+        beginChange();
+        try {
+            if (!bajas.isEmpty()) {
+                quitarSi(bajas::contains);
+            }
+            List<Persona> altas = lote.altas();
+            if (!bajas.isEmpty()) {
+                altas = altas.stream().filter(persona -> !bajas.contains(persona)).toList();
+            }
+            addAll(altas);
+
+            if (!lote.modificaciones().isEmpty()) {
+                editadasEnLote = identidades();
+                lote.modificaciones().forEach(LoteCambios.Modificacion::aplicar);
+                Set<Persona> editadas = editadasEnLote;
+                editadasEnLote = null;
+                notificarReemplazos(editadas);
+            }
+        } finally {
+            editadasEnLote = null;
+            endChange();
+        }
+    }
+
+    /**
+     * Notifica como reemplazadas por sí mismas las posiciones de las personas indicadas.
+     * Si son muchas, se notifica un solo reemplazo desde la primera hasta la última.
+     */
+    private void notificarReemplazos(Set<Persona> personas) {
+        BitSet posiciones = new BitSet(tamano);
+        for (Persona persona : personas) {
+            int i = posicion(persona);
+            if (i >= 0) {
+                posiciones.set(i);
+            }
+        }
+        if (posiciones.isEmpty()) {
+            return;
+        }
+        if (posiciones.cardinality() > MAX_TRAMOS) {
+            int primera = posiciones.nextSetBit(0);
+            int fin = posiciones.length();
+            nextReplace(primera, fin, Arrays.asList(Arrays.copyOfRange(elementos, primera, fin)));
+        } else {
+            for (int i = posiciones.nextSetBit(0); i >= 0; i = posiciones.nextSetBit(i + 1)) {
+                nextSet(i, elementos[i]);
+            }
+        }
+    }
+
+    /**
+     * Crea un conjunto que compara personas por identidad y no por sus valores.
+     *
+     * @return Un conjunto vacío.
+     */
+    static Set<Persona> identidades() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Quita todas las personas que cumplen la condición compactando el array en una sola pasada.
+     * Si las personas quitadas forman pocos tramos consecutivos, cada tramo se notifica como una
+     * eliminación. Si están dispersas, el tramo que va de la primera a la última se notifica como
+     * un único reemplazo por las personas que quedan en él: las listas filtradas y ordenadas
+     * procesan cada subcambio recorriendo sus índices, y con miles de tramos sueltos el coste sería cuadrático.
+     *
+     * @return El número de personas quitadas.
+     */
+    private int quitarSi(Predicate<Object> condicion) {
+        BitSet quitar = new BitSet(tamano);
+        int tramos = 0;
+        for (int i = 0; i < tamano; i++) {
+            if (condicion.test(elementos[i])) {
+                if (i == 0 || !quitar.get(i - 1)) {
+                    tramos++;
+                }
+                quitar.set(i);
+            }
+        }
+        if (tramos == 0) {
+            return 0;
+        }
+        int primera = quitar.nextSetBit(0);
+        int ultima = quitar.length() - 1;
+        List<Persona> reemplazadas = tramos > MAX_TRAMOS
+                ? Arrays.asList(Arrays.copyOfRange(elementos, primera, ultima + 1)) : null;
+
+        beginChange();
+        int escritura = primera;
+        int i = primera;
+        while (i < tamano) {
+            if (!quitar.get(i)) {
+                Persona persona = elementos[i++];
+                persona.posicionLista = escritura;
+                elementos[escritura++] = persona;
+                continue;
+            }
+            int finTramo = quitar.nextClearBit(i);
+            for (int k = i; k < finTramo; k++) {
+                dejarDeObservar(elementos[k]);
+            }
+            if (reemplazadas == null) {
+                // Posición en la lista tal como queda tras los tramos anteriores
+                nextRemove(escritura, Arrays.asList(Arrays.copyOfRange(elementos, i, finTramo)));
+            }
+            i = Math.min(finTramo, tamano);
+        }
+        int quitadas = tamano - escritura;
+        if (reemplazadas != null) {
+            nextReplace(primera, ultima + 1 - quitadas, reemplazadas);
+        }
+        Arrays.fill(elementos, escritura, tamano, null);
+        tamano = escritura;
+        modCount++;
+        endChange();
+        return quitadas;
+    }
+
+    /**
+     * Notifica la edición de una persona como una actualización de su posición.
+     * Dentro de un lote solo se anota, y las actualizaciones se notifican juntas al final.
+     */
+    private void personaEditada(Persona persona, String propiedad, Object anterior) {
+        if (editadasEnLote != null) {
+            editadasEnLote.add(persona);
+            return;
+        }
+        int i = posicion(persona);
+        if (i >= 0) {
+            beginChange();
+            nextUpdate(i);
+            endChange();
+        }
+    }
+
+    /**
+     * Devuelve la posición de una persona usando la que tiene anotada. Solo la busca si la anotada
+     * no es válida, por ejemplo porque otra {@code ListaPersonas} la ha sobrescrito.
+     *
+     * @return La posición, o -1 si la persona no está en la lista.
+     */
+    private int posicion(Persona persona) {
+        int i = persona.posicionLista;
+        if (i >= 0 && i < tamano && elementos[i] == persona) {
+            return i;
+        }
+        for (i = 0; i < tamano; i++) {
+            if (elementos[i] == persona) {
+                persona.posicionLista = i;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Anota en cada persona su posición a partir de {@code desde}, tras desplazar el array.
+     */
+    private void renumerar(int desde) {
+        for (int i = desde; i < tamano; i++) {
+            elementos[i].posicionLista = i;
+        }
+    }
+
+    private void observar(Persona persona) {
+        persona.agregarOyente(oyentePersona);
+    }
+
+    private void dejarDeObservar(Persona persona) {
+        persona.quitarOyente(oyentePersona);
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if (capacidad > elementos.length) {
+            elementos = Arrays.copyOf(elementos, Math.max(capacidad, Math.max(10, elementos.length + (elementos.length >> 1))));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Conjunto de altas, modificaciones y bajas que se aplican a una {@link ListaPersonas} como una
+ * sola transacción. Hasta {@link #confirmar()} no se toca la lista; al confirmar, los oyentes de la
+ * lista reciben un único cambio con todas las actualizaciones, eliminaciones y adiciones.
+ * Las bajas se identifican por identidad, no por valores, así que eliminar una persona no
+ * elimina otras iguales que haya en la agenda.
+ */
+public final class LoteCambios {
+
+    /**
+     * Modificación pendiente de los valores de una persona.
+     */
+    record Modificacion(Persona persona, String nombre, String apellido, int edad) {
+
+        void aplicar() {
+            persona.setNombre(nombre);
+            persona.setApellido(apellido);
+            persona.setEdad(edad);
+        }
+    }
+
+    private final ListaPersonas lista;
+    private final List<Persona> altas = new ArrayList<>();
+    private final List<Modificacion> modificaciones = new ArrayList<>();
+    private final Set<Persona> bajas = ListaPersonas.identidades();
+    private boolean confirmado;
+
+    LoteCambios(ListaPersonas lista) {
+        this.lista = lista;
+    }
+
+    /**
+     * Añade una persona al final de la lista.
+     *
+     * @param persona La persona nueva.
+     * @return Este lote.
+     */
+    public LoteCambios agregar(Persona persona) {
+        altas.add(persona);
+        return this;
+    }
+
+    /**
+     * Cambia los valores de una persona de la lista.
+     *
+     * @param persona  La persona a modificar.
+     * @param nombre   El nombre nuevo.
+     * @param apellido El apellido nuevo.
+     * @param edad     La edad nueva.
+     * @return Este lote.
+     */
+    public LoteCambios modificar(Persona persona, String nombre, String apellido, int edad) {
+        modificaciones.add(new Modificacion(persona, nombre, apellido, edad));
+        return this;
+    }
+
+    /**
+     * Quita una persona de la lista.
+     *
+     * @param persona La persona a quitar.
+     * @return Este lote.
+     */
+    public LoteCambios eliminar(Persona persona) {
+        bajas.add(persona);
+        return this;
+    }
+
+    /**
+     * Quita varias personas de la lista.
+     *
+     * @param personas Las personas a quitar.
+     * @return Este lote.
+     */
+    public LoteCambios eliminarTodas(Collection<? extends Persona> personas) {
+        bajas.addAll(personas);
+        return this;
+    }
+
+    /**
+     * Indica si el lote no contiene ningún cambio.
+     *
+     * @return {@code true} si no hay cambios.
+     */
+    public boolean estaVacio() {
+        return altas.isEmpty() && modificaciones.isEmpty() && bajas.isEmpty();
+    }
+
+    /**
+     * Aplica todos los cambios a la lista. Un lote solo puede confirmarse una vez.
+     *
+     * @throws IllegalStateException Si el lote ya se había confirmado.
+     */
+    public void confirmar() {
+        if (confirmado) {
+            throw new IllegalStateException("El lote ya se ha confirmado");
+        }
+        confirmado = true;
+        if (!estaVacio()) {
+            lista.aplicar(this);
+        }
+    }
+
+    List<Persona> altas() {
+        return altas;
+    }
+
+    List<Modificacion> modificaciones() {
+        return modificaciones;
+    }
+
+    Set<Persona> bajas() {
+        return bajas;
+    }
+}
@@ -0,0 +1,251 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Orden de las personas por una o varias columnas, como el que se elige en la tabla pulsando
+ * en las cabeceras. Los nombres y apellidos se comparan con un {@link Collator}, de modo que
+ * "Álvaro" va junto a "Alberto" y no detrás de "Zoe".
+ * <p>
+ * Para ordenar muchas personas de una vez no se usa un comparador: cada columna se convierte en una
+ * clave {@code int} (la edad tal cual, y para los textos la posición de cada valor distinto entre
+ * las claves de colación, que solo se calculan una vez por valor) y las posiciones se ordenan por
+ * conteo, de la última columna a la primera. Cada pasada es estable y lineal, así que el coste no
+ * crece con {@code n log n} ni hace falta convertir las edades en {@code Integer}.
+ */
+public final class OrdenPersonas {
+
+    /**
+     * Columna por la que se ordena.
+     */
+    public enum Campo {
+        NOMBRE, APELLIDO, EDAD
+    }
+
+    /**
+     * Columna y sentido de uno de los criterios del orden.
+     *
+     * @param campo       La columna.
+     * @param descendente {@code true} para ordenar de mayor a menor.
+     */
+    public record Criterio(Campo campo, boolean descendente) {
+    }
+
+    /** Rango de claves a partir del cual se ordena en dos pasadas de 16 bits en lugar de una. */
+    private static final int RANGO_UNA_PASADA = 1 << 16;
+
+    private final List<Criterio> criterios;
+    private final Collator colador;
+
+    /**
+     * Crea un orden con la colación del idioma por defecto.
+     *
+     * @param criterios Los criterios, del más importante al menos importante.
+     */
+    public OrdenPersonas(List<Criterio> criterios) {
+        this(criterios, Collator.getInstance());
+    }
+
+    /**
+     * Crea un orden con la colación indicada.
+     *
+     * @param criterios Los criterios, del más importante al menos importante.
+     * @param colador   La colación de los nombres y apellidos; se usa una copia.
+     */
+    public OrdenPersonas(List<Criterio> criterios, Collator colador) {
+        this.criterios = List.copyOf(criterios);
+        this.colador = (Collator) colador.clone();
+    }
+
+    /**
+     * Devuelve los criterios del orden.
+     *
+     * @return Los criterios, del más importante al menos importante.
+     */
+    public List<Criterio> criterios() {
+        return criterios;
+    }
+
+    /**
+     * Calcula el orden de las personas de una instantánea.
+     *
+     * @param agenda La instantánea.
+     * @return Las posiciones de la instantánea en el orden resultante.
+     */
+    public int[] ordenar(InstantaneaAgenda agenda) {
+        return ordenar(agenda.tamano(), agenda::nombre, agenda::apellido, agenda::edad);
+    }
+
+    /**
+     * Calcula el orden de una lista de personas con sus valores actuales.
+     *
+     * @param personas Las personas.
+     * @return Las posiciones de la lista en el orden resultante.
+     */
+    public int[] ordenar(List<? extends Persona> personas) {
+        return ordenar(personas.size(), i -> personas.get(i).getNombre(), i -> personas.get(i).getApellido(),
+                i -> personas.get(i).getEdad());
+    }
+
+    /**
+     * Calcula el orden de {@code n} filas dadas por sus columnas. Las filas iguales según todos los
+     * criterios conservan su orden original.
+     *
+     * @param n         El número de filas.
+     * @param nombres   El nombre de cada fila.
+     * @param apellidos El apellido de cada fila.
+     * @param edades    La edad de cada fila.
+     * @return Las posiciones de las filas en el orden resultante.
+     */
+    public int[] ordenar(int n, IntFunction<String> nombres, IntFunction<String> apellidos, IntUnaryOperator edades) {
+        int[] orden = new int[n];
+        Arrays.setAll(orden, i -> i);
+        int[] claves = new int[n];
+        int[] auxiliar = new int[n];
+        // Ordenación por columnas de la menos importante a la más importante; como cada pasada es estable,
+        // al terminar las filas quedan ordenadas por la primera columna y, a igualdad, por las siguientes
+        for (int c = criterios.size() - 1; c >= 0; c--) {
+            Criterio criterio = criterios.get(c);
+            switch (criterio.campo()) {
+                case NOMBRE -> rangos(n, nombres, claves);
+                case APELLIDO -> rangos(n, apellidos, claves);
+                case EDAD -> {
+                    for (int i = 0; i < n; i++) {
+                        claves[i] = edades.applyAsInt(i);
+                    }
+                }
+            }
+            ordenarPorClave(orden, auxiliar, claves, criterio.descendente());
+        }
+        return orden;
+    }
+
+    /**
+     * Compara dos personas con sus valores actuales. Da el mismo resultado que {@link #ordenar}, salvo
+     * que dos personas iguales según todos los criterios se consideran iguales.
+     *
+     * @return Un comparador de personas.
+     */
+    public Comparator<Persona> comparador() {
+        return (a, b) -> comparar(a.getNombre(), a.getApellido(), a.getEdad(), b.getNombre(), b.getApellido(), b.getEdad());
+    }
+
+    /**
+     * Compara dos filas según los criterios.
+     *
+     * @param nombre1   El nombre de la primera fila.
+     * @param apellido1 El apellido de la primera fila.
+     * @param edad1     La edad de la primera fila.
+     * @param nombre2   El nombre de la segunda fila.
+     * @param apellido2 El apellido de la segunda fila.
+     * @param edad2     La edad de la segunda fila.
+     * @return Un número negativo, cero o positivo si la primera fila va antes, igual o después que la segunda.
+     */
+    public int comparar(String nombre1, String apellido1, int edad1, String nombre2, String apellido2, int edad2) {
+        for (Criterio criterio : criterios) {
+            int c = switch (criterio.campo()) {
+                case NOMBRE -> colador.compare(nombre1, nombre2);
+                case APELLIDO -> colador.compare(apellido1, apellido2);
+                case EDAD -> Integer.compare(edad1, edad2);
+            };
+            if (c != 0) {
+                return criterio.descendente() ? -c : c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Calcula la clave de colación de un texto, cuyos bytes sin signo se ordenan igual que el texto.
+     *
+     * @param texto El texto.
+     * @return Los bytes de la clave.
+     */
+    public byte[] clave(String texto) {
+        return colador.getCollationKey(texto).toByteArray();
+    }
+
+    /**
+     * Sustituye cada texto por su posición entre los textos distintos ordenados por colación.
+     * Los textos que la colación considera iguales reciben la misma posición.
+     */
+    private void rangos(int n, IntFunction<String> textos, int[] claves) {
+        Map<String, Integer> distintos = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Integer id = distintos.putIfAbsent(textos.apply(i), distintos.size());
+            claves[i] = id != null ? id : distintos.size() - 1;
+        }
+
+        CollationKey[] colacion = new CollationKey[distintos.size()];
+        for (Map.Entry<String, Integer> texto : distintos.entrySet()) {
+            colacion[texto.getValue()] = colador.getCollationKey(texto.getKey());
+        }
+        Integer[] porColacion = new Integer[colacion.length];
+        Arrays.setAll(porColacion, i -> i);
+        Arrays.sort(porColacion, (a, b) -> colacion[a].compareTo(colacion[b]));
+
+        int[] rango = new int[colacion.length];
+        for (int r = 0, k = 0; k < porColacion.length; k++) {
+            if (k > 0 && colacion[porColacion[k]].compareTo(colacion[porColacion[k - 1]]) != 0) {
+                r++;
+            }
+            rango[porColacion[k]] = r;
+        }
+        for (int i = 0; i < n; i++) {
+            claves[i] = rango[claves[i]];
+        }
+    }
+
+    /**
+     * Reordena de forma estable las posiciones según la clave de cada una, por conteo en una pasada
+     * si el rango de claves es pequeño o en dos pasadas de 16 bits si no lo es.
+     */
+    private static void ordenarPorClave(int[] orden, int[] auxiliar, int[] claves, boolean descendente) {
+        int n = orden.length;
+        if (n < 2) {
+            return;
+        }
+        int minimo = Integer.MAX_VALUE;
+        int maximo = Integer.MIN_VALUE;
+        for (int clave : claves) {
+            minimo = Math.min(minimo, clave);
+            maximo = Math.max(maximo, clave);
+        }
+        // Clave sin signo desde cero; en orden descendente se invierte para que la pasada siga siendo estable
+        for (int i = 0; i < n; i++) {
+            claves[i] = descendente ? maximo - claves[i] : claves[i] - minimo;
+        }
+        long rango = (long) maximo - minimo + 1;
+        if (rango <= RANGO_UNA_PASADA) {
+            pasada(orden, auxiliar, claves, 0, (int) rango);
+            System.arraycopy(auxiliar, 0, orden, 0, n);
+        } else {
+            pasada(orden, auxiliar, claves, 0, RANGO_UNA_PASADA);
+            pasada(auxiliar, orden, claves, 16, RANGO_UNA_PASADA);
+        }
+    }
+
+    /**
+     * Una pasada de ordenación por conteo de {@code origen} a {@code destino} sobre 16 bits de la clave.
+     */
+    private static void pasada(int[] origen, int[] destino, int[] claves, int desplazamiento, int cubetas) {
+        int[] cuenta = new int[cubetas + 1];
+        for (int posicion : origen) {
+            cuenta[((claves[posicion] >>> desplazamiento) & 0xFFFF) + 1]++;
+        }
+        for (int i = 0; i < cubetas; i++) {
+            cuenta[i + 1] += cuenta[i];
+        }
+        for (int posicion : origen) {
+            destino[cuenta[(claves[posicion] >>> desplazamiento) & 0xFFFF]++] = posicion;
+        }
+    }
+}
@@ -5,17 +5,56 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * La clase {@code Persona} representa una persona con las propiedades nombre, apellido y edad.
  * Utiliza propiedades observables de JavaFX para permitir la vinculación de datos.
+ * <p>
+ * Los valores se guardan en campos simples y cada propiedad solo se crea la primera vez que alguien
+ * la pide, normalmente la celda de la tabla que muestra la persona; la mayoría de las personas de una
+ * agenda grande nunca llegan a mostrarse. Las listas y los índices se enteran de las ediciones con un
+ * {@link OyenteEdicion}, que no necesita las propiedades. Los nombres y apellidos pasan por la
+ * {@link PoolCadenas#compartida() reserva de cadenas}, así que los repetidos comparten instancia.
+ * <p>
+ * Para las búsquedas, cada persona guarda también su nombre y su apellido sin tildes y en minúsculas
+ * (ver {@link IndiceBusqueda#normalizar}). Esas claves se calculan la primera vez que se piden, al
+ * indexar la persona, y se descartan cuando se edita el valor del que salen.
  */
 public class Persona {
 
-    private StringProperty nombre;
-    private StringProperty apellido;
-    private IntegerProperty edad;
+    /**
+     * Recibe las ediciones de una persona, se hagan con los métodos {@code set} o con las propiedades.
+     */
+    interface OyenteEdicion {
+
+        /**
+         * Avisa de que una persona acaba de cambiar uno de sus valores.
+         *
+         * @param persona   La persona editada, ya con el valor nuevo.
+         * @param propiedad El nombre de la propiedad que ha cambiado: "nombre", "apellido" o "edad".
+         * @param anterior  El valor anterior de la propiedad.
+         */
+        void editada(Persona persona, String propiedad, Object anterior);
+    }
+
+    private static final OyenteEdicion[] SIN_OYENTES = new OyenteEdicion[0];
+
+    private String valorNombre;  // Valor actual del nombre, también cuando existe la propiedad
+    private String valorApellido;  // Valor actual del apellido
+    private int valorEdad;  // Valor actual de la edad
+    private StringProperty nombre;  // Propiedad del nombre, o null hasta que se pide
+    private StringProperty apellido;  // Propiedad del apellido, o null hasta que se pide
+    private IntegerProperty edad;  // Propiedad de la edad, o null hasta que se pide
+    private OyenteEdicion[] oyentes = SIN_OYENTES;  // Listas e índices que siguen las ediciones
+    private String claveNombre;  // Nombre normalizado para las búsquedas, o null hasta que se pide
+    private String claveApellido;  // Apellido normalizado para las búsquedas, o null hasta que se pide
+
+    private static long relojEdiciones;  // Contador global de ediciones; las ediciones se hacen en el hilo de JavaFX
+    long selloEdicion;  // Valor del reloj en la última edición, para que los índices detecten datos cambiados
+    int idBusqueda = -1;  // Identificador asignado por IndiceBusqueda, o -1 si no está indexada
+    int posicionLista = -1;  // Última posición anotada por ListaPersonas, que la comprueba antes de usarla
 
     /**
      * Constructor que inicializa una instancia de {@code Persona} con nombre, apellido y edad.
@@ -25,17 +64,115 @@ public class Persona {
      * @param edad     La edad de la persona.
      */
     public Persona(String nombre, String apellido, int edad) {
-        this.nombre = new SimpleStringProperty(nombre);
-        this.apellido = new SimpleStringProperty(apellido);
-        this.edad = new SimpleIntegerProperty(edad);
+        this.valorNombre = PoolCadenas.compartida().canonica(nombre);
+        this.valorApellido = PoolCadenas.compartida().canonica(apellido);
+        this.valorEdad = edad;
+    }
+
+    /**
+     * Sella la persona con el siguiente valor del reloj de ediciones y avisa a sus oyentes.
+     * Se llama después de guardar el valor nuevo y antes de avisar a los oyentes de la propiedad.
+     *
+     * @param propiedad El nombre de la propiedad que ha cambiado.
+     * @param anterior  El valor anterior de la propiedad.
+     */
+    private void marcarEdicion(String propiedad, Object anterior) {
+        if ("nombre".equals(propiedad)) {
+            claveNombre = null;
+        } else if ("apellido".equals(propiedad)) {
+            claveApellido = null;
+        }
+        selloEdicion = ++relojEdiciones;
+        for (OyenteEdicion oyente : oyentes) {
+            oyente.editada(this, propiedad, anterior);
+        }
+    }
+
+    /**
+     * Empieza a avisar de las ediciones a un oyente. Un oyente añadido dos veces recibe dos avisos.
+     *
+     * @param oyente El oyente.
+     */
+    void agregarOyente(OyenteEdicion oyente) {
+        oyentes = Arrays.copyOf(oyentes, oyentes.length + 1);
+        oyentes[oyentes.length - 1] = oyente;
+    }
+
+    /**
+     * Deja de avisar de las ediciones a un oyente. Si se añadió varias veces, quita una.
+     *
+     * @param oyente El oyente.
+     */
+    void quitarOyente(OyenteEdicion oyente) {
+        for (int i = oyentes.length - 1; i >= 0; i--) {
+            if (oyentes[i] == oyente) {
+                OyenteEdicion[] quedan = oyentes.length == 1 ? SIN_OYENTES : new OyenteEdicion[oyentes.length - 1];
+                System.arraycopy(oyentes, 0, quedan, 0, i);
+                System.arraycopy(oyentes, i + 1, quedan, i, oyentes.length - i - 1);
+                oyentes = quedan;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Devuelve el valor actual del reloj de ediciones.
+     * Una persona con un sello mayor se ha editado después de leer el reloj.
+     *
+     * @return El número de ediciones hechas hasta ahora.
+     */
+    static long relojEdiciones() {
+        return relojEdiciones;
+    }
+
+    /**
+     * Obtiene el nombre sin tildes y en minúsculas, tal como lo comparan las búsquedas.
+     * Se calcula una vez y se reutiliza hasta que se edita el nombre.
+     *
+     * @return El nombre normalizado, o una cadena vacía si no hay nombre.
+     */
+    public String claveNombre() {
+        String clave = claveNombre;
+        if (clave == null) {
+            clave = PoolCadenas.compartida().canonica(IndiceBusqueda.normalizar(getNombre()));
+            claveNombre = clave;
+        }
+        return clave;
+    }
+
+    /**
+     * Obtiene el apellido sin tildes y en minúsculas, tal como lo comparan las búsquedas.
+     * Se calcula una vez y se reutiliza hasta que se edita el apellido.
+     *
+     * @return El apellido normalizado, o una cadena vacía si no hay apellido.
+     */
+    public String claveApellido() {
+        String clave = claveApellido;
+        if (clave == null) {
+            clave = PoolCadenas.compartida().canonica(IndiceBusqueda.normalizar(getApellido()));
+            claveApellido = clave;
+        }
+        return clave;
     }
 
     /**
      * Obtiene la propiedad {@code nombre} para permitir la vinculación de datos.
+     * La propiedad se crea la primera vez que se pide.
      *
      * @return La propiedad {@code nombre}.
      */
     public StringProperty nombreProperty() {
+        if (nombre == null) {
+            // La persona se registra como bean de sus propiedades para que los oyentes sepan a quién pertenecen
+            nombre = new SimpleStringProperty(this, "nombre", valorNombre) {
+                @Override
+                protected void invalidated() {
+                    String anterior = valorNombre;
+                    valorNombre = PoolCadenas.compartida().canonica(get());
+                    marcarEdicion("nombre", anterior);
+                }
+            };
+        }
         return nombre;
     }
 
@@ -45,7 +182,7 @@ public class Persona {
      * @return El valor de {@code nombre}.
      */
     public String getNombre() {
-        return nombre.get();
+        return valorNombre;
     }
 
     /**
@@ -54,15 +191,32 @@ public class Persona {
      * @param nombre El nuevo valor para {@code nombre}.
      */
     public void setNombre(String nombre) {
-        this.nombre.set(nombre);
+        if (this.nombre != null) {
+            this.nombre.set(nombre); // La propiedad guarda el valor y avisa al invalidarse
+        } else if (!Objects.equals(valorNombre, nombre)) {
+            String anterior = valorNombre;
+            valorNombre = PoolCadenas.compartida().canonica(nombre);
+            marcarEdicion("nombre", anterior);
+        }
     }
 
     /**
      * Obtiene la propiedad {@code apellido} para permitir la vinculación de datos.
+     * La propiedad se crea la primera vez que se pide.
      *
      * @return La propiedad {@code apellido}.
      */
     public StringProperty apellidoProperty() {
+        if (apellido == null) {
+            apellido = new SimpleStringProperty(this, "apellido", valorApellido) {
+                @Override
+                protected void invalidated() {
+                    String anterior = valorApellido;
+                    valorApellido = PoolCadenas.compartida().canonica(get());
+                    marcarEdicion("apellido", anterior);
+                }
+            };
+        }
         return apellido;
     }
 
@@ -72,7 +226,7 @@ public class Persona {
      * @return El valor de {@code apellido}.
      */
     public String getApellido() {
-        return apellido.get();
+        return valorApellido;
     }
 
     /**
@@ -81,15 +235,32 @@ public class Persona {
      * @param apellido El nuevo valor para {@code apellido}.
      */
     public void setApellido(String apellido) {
-        this.apellido.set(apellido);
+        if (this.apellido != null) {
+            this.apellido.set(apellido);
+        } else if (!Objects.equals(valorApellido, apellido)) {
+            String anterior = valorApellido;
+            valorApellido = PoolCadenas.compartida().canonica(apellido);
+            marcarEdicion("apellido", anterior);
+        }
     }
 
     /**
      * Obtiene la propiedad {@code edad} para permitir la vinculación de datos.
+     * La propiedad se crea la primera vez que se pide.
      *
      * @return La propiedad {@code edad}.
      */
     public IntegerProperty edadProperty() {
+        if (edad == null) {
+            edad = new SimpleIntegerProperty(this, "edad", valorEdad) {
+                @Override
+                protected void invalidated() {
+                    int anterior = valorEdad;
+                    valorEdad = get();
+                    marcarEdicion("edad", anterior);
+                }
+            };
+        }
         return edad;
     }
 
@@ -99,7 +270,7 @@ public class Persona {
      * @return El valor de {@code edad}.
      */
     public int getEdad() {
-        return edad.get();
+        return valorEdad;
     }
 
     /**
@@ -108,7 +279,13 @@ public class Persona {
      * @param edad El nuevo valor para {@code edad}.
      */
     public void setEdad(int edad) {
-        this.edad.set(edad);
+        if (this.edad != null) {
+            this.edad.set(edad);
+        } else if (valorEdad != edad) {
+            int anterior = valorEdad;
+            valorEdad = edad;
+            marcarEdicion("edad", anterior);
+        }
     }
 
     /**
@@ -137,8 +314,8 @@ public class Persona {
      */
     @Override
     public int hashCode() {
-        // Utilizar los valores de las propiedades en hashCode
-        return Objects.hash(getNombre(), getApellido(), getEdad());
+        // Utilizar los valores de las propiedades en hashCode, sin convertir la edad en Integer
+        return 31 * (31 * Objects.hashCode(getNombre()) + Objects.hashCode(getApellido())) + getEdad();
     }
 
 }
@@ -0,0 +1,68 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+/**
+ * Reserva de tamaño fijo que devuelve una copia canónica de cada cadena, para que los nombres y
+ * apellidos repetidos ("García", "María") de millones de personas compartan una sola instancia.
+ * <p>
+ * A diferencia de un diccionario o de {@code String.intern()}, la reserva no crece: cada
+ * cadena tiene una única casilla, elegida por su hash, y una cadena nueva desplaza a la que ocupaba
+ * su casilla. Los valores frecuentes vuelven a entrar enseguida y siguen compartiéndose; los raros
+ * entran y salen sin que la reserva retenga memoria por ellos.
+ * <p>
+ * Se puede usar desde varios hilos sin sincronizar: en el peor caso dos hilos se pisan una casilla y
+ * alguna cadena no se comparte, pero como las cadenas son inmutables nunca se lee una a medio publicar.
+ */
+public final class PoolCadenas {
+
+    /** Casillas de la reserva compartida por todas las personas. */
+    private static final int CASILLAS_COMPARTIDA = 1 << 16;
+
+    private static final PoolCadenas COMPARTIDA = new PoolCadenas(CASILLAS_COMPARTIDA);
+
+    private final String[] casillas;  // Cadena canónica de cada casilla, o null si está vacía
+    private final int mascara;  // Número de casillas menos uno, que es potencia de dos
+
+    /**
+     * Crea una reserva vacía.
+     *
+     * @param casillas Número máximo de cadenas retenidas; se redondea a la siguiente potencia de dos.
+     */
+    public PoolCadenas(int casillas) {
+        if (casillas < 1) {
+            throw new IllegalArgumentException("La reserva necesita al menos una casilla: " + casillas);
+        }
+        int tamano = Integer.highestOneBit(casillas);
+        this.casillas = new String[tamano < casillas ? tamano << 1 : tamano];
+        this.mascara = this.casillas.length - 1;
+    }
+
+    /**
+     * Devuelve la reserva que usan los constructores y los métodos de modificación de {@link Persona}.
+     *
+     * @return La reserva compartida.
+     */
+    public static PoolCadenas compartida() {
+        return COMPARTIDA;
+    }
+
+    /**
+     * Devuelve la copia canónica de una cadena: la que ya estaba en la reserva si es igual, o la propia
+     * cadena, que pasa a ser la canónica, si no lo es.
+     *
+     * @param cadena La cadena, que puede ser {@code null}.
+     * @return Una cadena igual a la indicada, o {@code null} si es {@code null}.
+     */
+    public String canonica(String cadena) {
+        if (cadena == null) {
+            return null;
+        }
+        int hash = cadena.hashCode();
+        int casilla = (hash ^ (hash >>> 16)) & mascara;
+        String actual = casillas[casilla];
+        if (cadena.equals(actual)) {
+            return actual;
+        }
+        casillas[casilla] = cadena;
+        return cadena;
+    }
+}
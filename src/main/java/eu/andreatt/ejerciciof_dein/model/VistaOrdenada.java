@@ -0,0 +1,361 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Vista ordenada de una lista de personas, que sustituye a {@code SortedList} en la tabla.
+ * <p>
+ * {@code SortedList} reordena con el comparador de las columnas de la tabla, que en cada comparación
+ * obtiene las propiedades de las celdas y convierte las edades en {@code Integer}. Esta vista calcula
+ * el orden con {@link OrdenPersonas}, que ordena por claves {@code int} en tiempo lineal, y solo usa el
+ * comparador para colocar por búsqueda binaria las pocas personas que cambian en una alta, una baja o
+ * una edición. Si un cambio de la lista afecta a muchas personas (una importación, un filtro nuevo),
+ * se vuelve a calcular el orden entero, que es más rápido que colocarlas una a una.
+ * <p>
+ * Sin orden, la vista muestra la lista de origen tal cual.
+ */
+public final class VistaOrdenada extends TransformationList<Persona, Persona> {
+
+    /** Personas afectadas por un cambio a partir de las cuales se recalcula el orden entero. */
+    private static final int MAX_CAMBIOS_SUELTOS = 64;
+
+    private static final Persona[] VACIO = new Persona[0];
+    private static final int[] SIN_INDICES = new int[0];
+
+    private OrdenPersonas orden;  // Orden aplicado, o null para mostrar la lista de origen tal cual
+    private Comparator<Persona> comparador;  // Comparador del orden aplicado
+    private Persona[] elementos = VACIO;  // Personas en el orden de la vista, solo si hay orden
+    private int[] indices = SIN_INDICES;  // Posición en la lista de origen de cada posición de la vista
+    private int[] posiciones = SIN_INDICES;  // Posición en la vista de cada posición de la lista de origen
+    private int tamano;  // Personas de la vista si hay orden
+
+    /**
+     * Crea una vista sin orden de la lista indicada.
+     *
+     * @param fuente La lista de origen.
+     */
+    public VistaOrdenada(ObservableList<Persona> fuente) {
+        super(fuente);
+    }
+
+    /**
+     * Devuelve el orden aplicado.
+     *
+     * @return El orden, o {@code null} si la vista muestra la lista de origen tal cual.
+     */
+    public OrdenPersonas getOrden() {
+        return orden;
+    }
+
+    /**
+     * Cambia el orden de la vista. Se notifica como una permutación, así que la tabla conserva la selección.
+     *
+     * @param nuevo El nuevo orden, o {@code null} (o un orden sin criterios) para mostrar la lista de origen tal cual.
+     */
+    public void setOrden(OrdenPersonas nuevo) {
+        OrdenPersonas anterior = orden;
+        int[] indicesAnteriores = Arrays.copyOf(indices, tamano);
+        orden = nuevo == null || nuevo.criterios().isEmpty() ? null : nuevo;
+        comparador = orden == null ? null : orden.comparador();
+        reconstruir();
+        if (anterior == null && orden == null) {
+            return;
+        }
+
+        int n = getSource().size();
+        if (n == 0) {
+            return;
+        }
+        int[] permutacion = new int[n];
+        for (int v = 0; v < n; v++) {
+            int fuente = anterior == null ? v : indicesAnteriores[v];
+            permutacion[v] = orden == null ? fuente : posiciones[fuente];
+        }
+        beginChange();
+        nextPermutation(0, n, permutacion);
+        endChange();
+    }
+
+    @Override
+    public Persona get(int index) {
+        if (orden == null) {
+            return getSource().get(index);
+        }
+        Objects.checkIndex(index, tamano);
+        return elementos[index];
+    }
+
+    @Override
+    public int size() {
+        return orden == null ? getSource().size() : tamano;
+    }
+
+    @Override
+    public int getSourceIndex(int index) {
+        if (orden == null) {
+            return Objects.checkIndex(index, getSource().size());
+        }
+        Objects.checkIndex(index, tamano);
+        return indices[index];
+    }
+
+    @Override
+    public int getViewIndex(int index) {
+        if (orden == null) {
+            return Objects.checkIndex(index, getSource().size());
+        }
+        Objects.checkIndex(index, tamano);
+        return posiciones[index];
+    }
+
+    @Override
+    protected void sourceChanged(ListChangeListener.Change<? extends Persona> cambio) {
+        if (orden == null) {
+            reenviar(cambio);
+            return;
+        }
+        if (afectadas(cambio) > MAX_CAMBIOS_SUELTOS) {
+            List<Persona> anteriores = Arrays.asList(elementos).subList(0, tamano);
+            reconstruir();
+            if (anteriores.isEmpty() && tamano == 0) {
+                return;
+            }
+            beginChange();
+            nextReplace(0, tamano, anteriores);
+            endChange();
+            return;
+        }
+
+        beginChange();
+        while (cambio.next()) {
+            if (cambio.wasPermutated()) {
+                permutar(cambio);
+            } else if (cambio.wasUpdated()) {
+                for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                    recolocar(i);
+                }
+            } else {
+                if (cambio.wasRemoved()) {
+                    quitar(cambio.getFrom(), cambio.getRemovedSize());
+                }
+                if (cambio.wasAdded()) {
+                    agregar(cambio.getFrom(), cambio.getTo());
+                }
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Sin orden, repite los cambios de la lista de origen tal cual.
+     */
+    private void reenviar(ListChangeListener.Change<? extends Persona> cambio) {
+        beginChange();
+        while (cambio.next()) {
+            int desde = cambio.getFrom();
+            int hasta = cambio.getTo();
+            if (cambio.wasPermutated()) {
+                int[] permutacion = new int[hasta - desde];
+                for (int i = desde; i < hasta; i++) {
+                    permutacion[i - desde] = cambio.getPermutation(i);
+                }
+                nextPermutation(desde, hasta, permutacion);
+            } else if (cambio.wasUpdated()) {
+                for (int i = desde; i < hasta; i++) {
+                    nextUpdate(i);
+                }
+            } else {
+                if (cambio.wasRemoved()) {
+                    nextRemove(desde, cambio.getRemoved());
+                }
+                if (cambio.wasAdded()) {
+                    nextAdd(desde, hasta);
+                }
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Cuenta las personas añadidas, quitadas o editadas en un cambio, hasta pasar del máximo.
+     */
+    private static int afectadas(ListChangeListener.Change<? extends Persona> cambio) {
+        int afectadas = 0;
+        while (afectadas <= MAX_CAMBIOS_SUELTOS && cambio.next()) {
+            if (cambio.wasUpdated()) {
+                afectadas += cambio.getTo() - cambio.getFrom();
+            } else if (!cambio.wasPermutated()) {
+                afectadas += cambio.getRemovedSize() + cambio.getAddedSize();
+            }
+        }
+        cambio.reset();
+        return afectadas;
+    }
+
+    /**
+     * Calcula el orden entero a partir de la lista de origen.
+     */
+    private void reconstruir() {
+        if (orden == null) {
+            elementos = VACIO;
+            indices = SIN_INDICES;
+            posiciones = SIN_INDICES;
+            tamano = 0;
+            return;
+        }
+        List<? extends Persona> fuente = getSource();
+        tamano = fuente.size();
+        indices = orden.ordenar(fuente);
+        elementos = new Persona[tamano];
+        for (int v = 0; v < tamano; v++) {
+            elementos[v] = fuente.get(indices[v]);
+        }
+        posiciones = new int[tamano];
+        actualizarPosiciones(0, tamano);
+    }
+
+    /**
+     * Aplica una permutación del origen. La vista no cambia de orden; solo cambian los índices de las
+     * personas permutadas, así que se recorren las posiciones del origen afectadas y no la vista entera.
+     */
+    private void permutar(ListChangeListener.Change<? extends Persona> cambio) {
+        int desde = cambio.getFrom();
+        int hasta = cambio.getTo();
+        int[] vistas = Arrays.copyOfRange(posiciones, desde, hasta);
+        for (int i = desde; i < hasta; i++) {
+            int v = vistas[i - desde];
+            int nuevo = cambio.getPermutation(i);
+            indices[v] = nuevo;
+            posiciones[nuevo] = v;
+        }
+    }
+
+    /**
+     * Quita de la vista las personas que ocupaban las posiciones {@code desde .. desde + cuantas} del origen
+     * y desplaza los índices de las siguientes. Solo se renumeran las posiciones de la vista a partir de
+     * la primera persona quitada; las anteriores conservan su sitio.
+     */
+    private void quitar(int desde, int cuantas) {
+        int tamanoAnterior = tamano;
+        boolean[] quitar = new boolean[tamano];
+        int primera = tamano;
+        for (int i = desde; i < desde + cuantas; i++) {
+            quitar[posiciones[i]] = true;
+            primera = Math.min(primera, posiciones[i]);
+        }
+        int escritura = 0;
+        for (int v = 0; v < tamano; v++) {
+            if (quitar[v]) {
+                nextRemove(escritura, elementos[v]); // Posición tras las bajas anteriores
+                continue;
+            }
+            int i = indices[v];
+            indices[escritura] = i >= desde + cuantas ? i - cuantas : i;
+            elementos[escritura++] = elementos[v];
+        }
+        Arrays.fill(elementos, escritura, tamano, null);
+        tamano = escritura;
+        // Las posiciones del origen siguientes a las quitadas retroceden; sus valores se corrigen al renumerar
+        System.arraycopy(posiciones, desde + cuantas, posiciones, desde, tamanoAnterior - desde - cuantas);
+        actualizarPosiciones(primera, tamano);
+    }
+
+    /**
+     * Coloca en la vista las personas que han entrado en las posiciones {@code desde .. hasta} del origen.
+     * Solo se renumeran las posiciones de la vista a partir de la primera persona colocada.
+     */
+    private void agregar(int desde, int hasta) {
+        int cuantas = hasta - desde;
+        for (int v = 0; v < tamano; v++) {
+            if (indices[v] >= desde) {
+                indices[v] += cuantas;
+            }
+        }
+        asegurarCapacidad(tamano + cuantas);
+        System.arraycopy(posiciones, desde, posiciones, hasta, tamano - desde); // Hueco para las nuevas
+        int primera = tamano + cuantas;
+        for (int i = desde; i < hasta; i++) {
+            Persona persona = getSource().get(i);
+            int v = buscar(persona, i);
+            System.arraycopy(elementos, v, elementos, v + 1, tamano - v);
+            System.arraycopy(indices, v, indices, v + 1, tamano - v);
+            elementos[v] = persona;
+            indices[v] = i;
+            tamano++;
+            nextAdd(v, v + 1);
+            primera = Math.min(primera, v);
+        }
+        actualizarPosiciones(primera, tamano);
+    }
+
+    /**
+     * Vuelve a colocar una persona editada. Si no cambia de sitio se notifica como actualización.
+     */
+    private void recolocar(int i) {
+        int anterior = posiciones[i];
+        Persona persona = elementos[anterior];
+        System.arraycopy(elementos, anterior + 1, elementos, anterior, tamano - anterior - 1);
+        System.arraycopy(indices, anterior + 1, indices, anterior, tamano - anterior - 1);
+        tamano--;
+        int nueva = buscar(persona, i);
+        System.arraycopy(elementos, nueva, elementos, nueva + 1, tamano - nueva);
+        System.arraycopy(indices, nueva, indices, nueva + 1, tamano - nueva);
+        elementos[nueva] = persona;
+        indices[nueva] = i;
+        tamano++;
+
+        if (nueva == anterior) {
+            nextUpdate(nueva);
+        } else {
+            nextRemove(anterior, persona);
+            nextAdd(nueva, nueva + 1);
+            actualizarPosiciones(Math.min(anterior, nueva), Math.max(anterior, nueva) + 1);
+        }
+    }
+
+    /**
+     * Busca dónde va una persona en la vista. A igualdad de valores se ordena por la posición en el
+     * origen, igual que hace {@link OrdenPersonas#ordenar}, para que el resultado no dependa del camino.
+     */
+    private int buscar(Persona persona, int indice) {
+        int bajo = 0;
+        int alto = tamano;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            int c = comparador.compare(persona, elementos[medio]);
+            if (c == 0) {
+                c = Integer.compare(indice, indices[medio]);
+            }
+            if (c > 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private void actualizarPosiciones(int desde, int hasta) {
+        for (int v = desde; v < hasta; v++) {
+            posiciones[indices[v]] = v;
+        }
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if (capacidad > elementos.length) {
+            int nueva = Math.max(capacidad, elementos.length + (elementos.length >> 1) + 1);
+            elementos = Arrays.copyOf(elementos, nueva);
+            indices = Arrays.copyOf(indices, nueva);
+        }
+        if (capacidad > posiciones.length) {
+            posiciones = Arrays.copyOf(posiciones, elementos.length);
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Formato binario compacto para guardar y restaurar la agenda completa.
+ * <p>
+ * Estructura (versión 1):
+ * <ul>
+ *     <li>Cabecera: los bytes {@code AGDB}, la versión (1 byte) y tres bytes reservados a cero.</li>
+ *     <li>Filas: nombre, apellido y edad de cada persona. Cada texto es una referencia a un diccionario
+ *     que se construye a medida que se escribe: un varint 0 seguido de la longitud (varint) y los bytes
+ *     UTF-8 de un texto nuevo, o un varint {@code n > 0} para repetir el texto {@code n - 1}. Cuando el
+ *     diccionario llega a {@link #MAX_TEXTOS_DICCIONARIO} textos se vacía justo antes de añadir el
+ *     siguiente, tanto al escribir como al leer, así que no hace falta ninguna marca. La edad es un
+ *     varint en zigzag.</li>
+ *     <li>Cola: el número de filas (8 bytes) y el CRC32 de todo lo anterior (4 bytes).</li>
+ * </ul>
+ * Como el diccionario va dentro de las filas y el número de filas al final, el archivo puede
+ * escribirse de forma continua sin conocer de antemano cuántas personas tendrá, y con el diccionario
+ * acotado la memoria del escritor no depende del número de textos distintos. La lectura también es
+ * continua, así que tampoco el tamaño del archivo está limitado por la memoria.
+ */
+public final class AgendaBinaria {
+
+    /** Bytes iniciales que identifican el formato. */
+    private static final byte[] MAGIA = {'A', 'G', 'D', 'B'};
+
+    /** Versión del formato que escribe esta clase. */
+    public static final int VERSION = 1;
+
+    /** Textos distintos que puede tener el diccionario antes de vaciarse. */
+    public static final int MAX_TEXTOS_DICCIONARIO = 1 << 16;
+
+    private static final int TAMANO_CABECERA = 8;
+    private static final int TAMANO_COLA = 12;
+
+    private AgendaBinaria() {
+    }
+
+    /**
+     * Guarda las personas en el archivo. Se escribe primero en un archivo temporal, que se fuerza al
+     * disco y después sustituye al original; por último se sincroniza la carpeta para que el cambio de
+     * nombre también sea duradero. Así una interrupción nunca deja una agenda a medias, y cuando el
+     * método termina la agenda nueva sobrevive a un corte de corriente.
+     *
+     * @param archivo  El archivo de destino.
+     * @param personas Las personas a guardar.
+     * @return La huella (CRC32) del archivo escrito, la misma que devuelve {@link #huella(Path)}.
+     * @throws IOException Si no se puede escribir el archivo.
+     */
+    public static int guardar(Path archivo, InstantaneaAgenda personas) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        Escritor escritor = new Escritor(new SalidaSincronizada(canal));
+        try (escritor) {
+            for (int i = 0; i < personas.tamano(); i++) {
+                escritor.escribir(personas.nombre(i), personas.apellido(i), personas.edad(i));
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarCarpeta(archivo);
+        return escritor.huella();
+    }
+
+    /**
+     * Fuerza al disco la entrada de la carpeta que contiene un archivo, para que un cambio de nombre
+     * recién hecho no se pierda en un corte de corriente. En los sistemas que no permiten abrir una
+     * carpeta, como Windows, no hace nada.
+     *
+     * @param archivo El archivo cuya carpeta se sincroniza.
+     * @throws IOException Si la carpeta se ha abierto pero no se puede sincronizar.
+     */
+    static void sincronizarCarpeta(Path archivo) throws IOException {
+        FileChannel carpeta;
+        try {
+            carpeta = FileChannel.open(archivo.toAbsolutePath().getParent(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // No hay forma portátil de sincronizar la carpeta en este sistema
+        }
+        try (carpeta) {
+            carpeta.force(true);
+        }
+    }
+
+    /**
+     * Obtiene la huella de un archivo: el CRC32 guardado en su cola. Identifica el contenido del
+     * archivo sin tener que leerlo entero.
+     *
+     * @param archivo El archivo.
+     * @return La huella, o 0 si el archivo no existe.
+     * @throws IOException Si no se puede leer el archivo o es demasiado corto.
+     */
+    public static int huella(Path archivo) throws IOException {
+        if (!Files.exists(archivo)) {
+            return 0;
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            if (canal.size() < TAMANO_CABECERA + TAMANO_COLA) {
+                throw new IOException("El archivo no es una agenda binaria: " + archivo);
+            }
+            ByteBuffer crc = ByteBuffer.allocate(4);
+            while (crc.hasRemaining() && canal.read(crc, canal.size() - 4 + crc.position()) > 0) {
+                // Leer los cuatro últimos bytes
+            }
+            return crc.getInt(0);
+        }
+    }
+
+    /**
+     * Carga las personas de un archivo comprobando su CRC32. Si el archivo está dañado no devuelve ninguna.
+     *
+     * @param archivo El archivo a cargar.
+     * @return Las personas, en el orden en que se guardaron.
+     * @throws IOException Si no se puede leer el archivo, no tiene el formato esperado o está dañado.
+     */
+    public static List<Persona> cargar(Path archivo) throws IOException {
+        List<Persona> personas = new ArrayList<>();
+        leer(archivo, (nombre, apellido, edad) -> personas.add(new Persona(nombre, apellido, edad)));
+        return personas;
+    }
+
+    /**
+     * Recibe las filas de un archivo binario a medida que se decodifican.
+     */
+    @FunctionalInterface
+    public interface Receptor {
+
+        /**
+         * Recibe una fila.
+         *
+         * @param nombre   El nombre de la persona.
+         * @param apellido El apellido de la persona.
+         * @param edad     La edad de la persona.
+         */
+        void recibir(String nombre, String apellido, int edad);
+    }
+
+    /**
+     * Lee un archivo de forma continua, sin cargarlo entero en memoria, y entrega sus filas al receptor
+     * a medida que se decodifican. El CRC32 se comprueba al final, así que si el archivo está dañado el
+     * receptor puede haber recibido ya algunas filas antes de la excepción.
+     *
+     * @param archivo  El archivo a leer.
+     * @param receptor El receptor de las filas.
+     * @return El número de filas leídas.
+     * @throws IOException Si no se puede leer el archivo, no tiene el formato esperado o está dañado.
+     */
+    public static long leer(Path archivo, Receptor receptor) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long finFilas = canal.size() - TAMANO_COLA;
+            if (finFilas < TAMANO_CABECERA) {
+                throw new IOException("El archivo no es una agenda binaria: " + archivo);
+            }
+            ByteBuffer cola = ByteBuffer.allocate(TAMANO_COLA);
+            while (cola.hasRemaining() && canal.read(cola, finFilas + cola.position()) > 0) {
+                // Leer el número de filas y el CRC32
+            }
+            if (cola.hasRemaining()) {
+                throw new IOException("La agenda binaria está truncada");
+            }
+            long filas = cola.getLong(0);
+
+            Lector lector = new Lector(canal, finFilas);
+            byte[] cabecera = new byte[TAMANO_CABECERA];
+            for (int i = 0; i < cabecera.length; i++) {
+                cabecera[i] = lector.byte1();
+            }
+            if (!Arrays.equals(cabecera, 0, MAGIA.length, MAGIA, 0, MAGIA.length)) {
+                throw new IOException("El archivo no es una agenda binaria: " + archivo);
+            }
+            if (cabecera[4] != VERSION) {
+                throw new IOException("Versión de agenda binaria no soportada: " + cabecera[4]);
+            }
+            try {
+                for (long i = 0; i < filas; i++) {
+                    String nombre = lector.texto();
+                    String apellido = lector.texto();
+                    int edad = lector.edad();
+                    receptor.recibir(nombre, apellido, edad);
+                }
+                if (!lector.alFinal()) {
+                    throw new IOException("La agenda binaria tiene datos sobrantes: " + archivo);
+                }
+            } catch (IOException e) {
+                // Si los datos estaban dañados, el error de formato es una consecuencia: se informa del CRC
+                if (lector.terminar(cola) != cola.getInt(8)) {
+                    throw new IOException("La agenda binaria está dañada (CRC incorrecto): " + archivo, e);
+                }
+                throw e;
+            }
+            if (lector.terminar(cola) != cola.getInt(8)) {
+                throw new IOException("La agenda binaria está dañada (CRC incorrecto): " + archivo);
+            }
+            return filas;
+        }
+    }
+
+    /**
+     * Decodificador continuo de las filas de un archivo. Lee el archivo por bloques desde el principio
+     * hasta el final de las filas y va calculando su CRC32, con posiciones de tipo {@code long} para
+     * admitir archivos de cualquier tamaño.
+     */
+    private static final class Lector {
+
+        private final FileChannel canal;
+        private final long fin;  // Posición del archivo donde terminan las filas
+        private final CRC32 crc = new CRC32();  // CRC32 de los bytes cargados hasta ahora
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private final List<String> diccionario = new ArrayList<>();
+        private long cargados;  // Bytes del archivo cargados en el buffer hasta ahora
+
+        Lector(FileChannel canal, long fin) {
+            this.canal = canal;
+            this.fin = fin;
+            buffer.limit(0);
+        }
+
+        /**
+         * Indica si se han consumido todas las filas.
+         */
+        boolean alFinal() {
+            return cargados == fin && !buffer.hasRemaining();
+        }
+
+        /**
+         * Carga en el CRC32 lo que queda de las filas sin decodificarlo y añade el número de filas de la cola.
+         *
+         * @return El CRC32 del archivo hasta el número de filas incluido.
+         */
+        int terminar(ByteBuffer cola) throws IOException {
+            buffer.position(buffer.limit());
+            while (cargados < fin) {
+                rellenar();
+                buffer.position(buffer.limit());
+            }
+            crc.update(cola.array(), 0, 8);
+            return (int) crc.getValue();
+        }
+
+        String texto() throws IOException {
+            int ref = varint();
+            if (ref > 0) {
+                if (ref > diccionario.size()) {
+                    throw new IOException("Referencia de texto no válida en la posición " + posicion());
+                }
+                return diccionario.get(ref - 1);
+            }
+            int longitud = varint();
+            if (longitud < 0 || longitud > fin - posicion()) {
+                throw new IOException("Longitud de texto no válida en la posición " + posicion());
+            }
+            String texto;
+            if (longitud <= buffer.remaining()) {
+                texto = new String(buffer.array(), buffer.position(), longitud, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + longitud);
+            } else {
+                byte[] bytes = new byte[longitud]; // El texto cruza el final del buffer
+                for (int copiados = 0; copiados < longitud; ) {
+                    if (!buffer.hasRemaining()) {
+                        rellenar();
+                    }
+                    int n = Math.min(buffer.remaining(), longitud - copiados);
+                    buffer.get(bytes, copiados, n);
+                    copiados += n;
+                }
+                texto = new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (diccionario.size() == MAX_TEXTOS_DICCIONARIO) {
+                diccionario.clear(); // El escritor vació el suyo en el mismo punto
+            }
+            diccionario.add(texto);
+            return texto;
+        }
+
+        int edad() throws IOException {
+            int zigzag = varint();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        int varint() throws IOException {
+            int valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+                byte b = byte1();
+                valor |= (b & 0x7F) << desplazamiento;
+                if (b >= 0) {
+                    return valor;
+                }
+            }
+            throw new IOException("Entero mal codificado en la posición " + posicion());
+        }
+
+        byte byte1() throws IOException {
+            if (!buffer.hasRemaining()) {
+                rellenar();
+            }
+            return buffer.get();
+        }
+
+        /**
+         * Posición en el archivo del siguiente byte por decodificar.
+         */
+        private long posicion() {
+            return cargados - buffer.remaining();
+        }
+
+        /**
+         * Carga en el buffer el siguiente bloque de las filas, que debe estar ya consumido, y lo añade al CRC32.
+         */
+        private void rellenar() throws IOException {
+            if (cargados >= fin) {
+                throw new IOException("La agenda binaria está truncada");
+            }
+            buffer.clear().limit((int) Math.min(buffer.capacity(), fin - cargados));
+            while (buffer.hasRemaining()) {
+                if (canal.read(buffer, cargados + buffer.position()) < 0) {
+                    throw new IOException("La agenda binaria está truncada");
+                }
+            }
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            cargados += buffer.limit();
+        }
+    }
+
+    /**
+     * Flujo que escribe en un canal de archivo y, al cerrarse, fuerza los datos al disco antes de cerrarlo.
+     */
+    private static final class SalidaSincronizada extends OutputStream {
+
+        private final FileChannel canal;
+
+        SalidaSincronizada(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer datos = ByteBuffer.wrap(b, off, len);
+            while (datos.hasRemaining()) {
+                canal.write(datos);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (canal) {
+                canal.force(true);
+            }
+        }
+    }
+
+    /**
+     * Escritor continuo de agendas binarias. Las filas se escriben según llegan y el número de filas
+     * y el CRC32 se añaden al cerrar, así que sirve también para volcados que no caben en memoria:
+     * el diccionario nunca pasa de {@link #MAX_TEXTOS_DICCIONARIO} textos.
+     */
+    public static final class Escritor implements Closeable {
+
+        private final OutputStream salida;
+        private final CRC32 crc = new CRC32();
+        private final Map<String, Integer> diccionario = new HashMap<>();  // Identificador de cada texto escrito desde el último vaciado
+        private final byte[] buffer = new byte[1 << 16];
+        private int usados;
+        private long filas;
+        private int huella;  // CRC32 final, disponible tras cerrar
+
+        /**
+         * Crea el escritor y escribe la cabecera.
+         *
+         * @param salida El flujo donde se escribe la agenda; se cierra al cerrar el escritor.
+         * @throws IOException Si no se puede escribir la cabecera.
+         */
+        public Escritor(OutputStream salida) throws IOException {
+            this.salida = new BufferedOutputStream(salida, 1 << 16);
+            for (byte b : MAGIA) {
+                byte1(b);
+            }
+            byte1(VERSION);
+            byte1(0);
+            byte1(0);
+            byte1(0);
+        }
+
+        /**
+         * Escribe una fila.
+         *
+         * @param nombre   El nombre de la persona ({@code null} se guarda como texto vacío).
+         * @param apellido El apellido de la persona ({@code null} se guarda como texto vacío).
+         * @param edad     La edad de la persona.
+         * @throws IOException Si no se puede escribir.
+         */
+        public void escribir(String nombre, String apellido, int edad) throws IOException {
+            texto(nombre);
+            texto(apellido);
+            varint((edad << 1) ^ (edad >> 31));
+            filas++;
+        }
+
+        /**
+         * Devuelve el número de filas escritas hasta ahora.
+         *
+         * @return El número de filas.
+         */
+        public long filas() {
+            return filas;
+        }
+
+        /**
+         * Devuelve la huella (CRC32) del archivo escrito.
+         *
+         * @return La huella, o 0 si el escritor aún no se ha cerrado.
+         */
+        public int huella() {
+            return huella;
+        }
+
+        /**
+         * Escribe la cola con el número de filas y el CRC32, y cierra el flujo.
+         *
+         * @throws IOException Si no se puede escribir.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                for (int i = 56; i >= 0; i -= 8) {
+                    byte1((int) (filas >>> i));
+                }
+                volcar();
+                int valor = (int) crc.getValue();
+                salida.write(new byte[]{(byte) (valor >>> 24), (byte) (valor >>> 16), (byte) (valor >>> 8), (byte) valor});
+                huella = valor;
+            } finally {
+                salida.close();
+            }
+        }
+
+        private void texto(String texto) throws IOException {
+            String valor = texto == null ? "" : texto;
+            Integer id = diccionario.get(valor);
+            if (id != null) {
+                varint(id + 1);
+                return;
+            }
+            if (diccionario.size() == MAX_TEXTOS_DICCIONARIO) {
+                diccionario.clear(); // Acota la memoria; el lector lo vacía en el mismo punto
+            }
+            diccionario.put(valor, diccionario.size());
+            byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+            varint(0);
+            varint(bytes.length);
+            if (usados + bytes.length > buffer.length) {
+                volcar();
+            }
+            if (bytes.length > buffer.length) {
+                crc.update(bytes);
+                salida.write(bytes);
+            } else {
+                System.arraycopy(bytes, 0, buffer, usados, bytes.length);
+                usados += bytes.length;
+            }
+        }
+
+        private void varint(int valor) throws IOException {
+            if (usados + 5 > buffer.length) {
+                volcar();
+            }
+            while ((valor & ~0x7F) != 0) {
+                buffer[usados++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            buffer[usados++] = (byte) valor;
+        }
+
+        private void byte1(int valor) throws IOException {
+            if (usados == buffer.length) {
+                volcar();
+            }
+            buffer[usados++] = (byte) valor;
+        }
+
+        /**
+         * Pasa el buffer al flujo de salida actualizando el CRC32.
+         */
+        private void volcar() throws IOException {
+            crc.update(buffer, 0, usados);
+            salida.write(buffer, 0, usados);
+            usados = 0;
+        }
+    }
+}
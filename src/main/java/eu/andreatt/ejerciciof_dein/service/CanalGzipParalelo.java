@@ -0,0 +1,195 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Canal que comprime en gzip lo que se escribe en él, repartiendo la compresión entre varios hilos.
+ * <p>
+ * Los datos se cortan en bloques de {@link #TAMANO_BLOQUE} bytes y cada bloque se comprime por separado
+ * como un miembro gzip completo, con su cabecera, su CRC y su tamaño. Los miembros se escriben en el canal
+ * de destino en el orden de los bloques, así que el resultado es un gzip estándar de varios miembros
+ * concatenados que {@code gunzip} o {@link java.util.zip.GZIPInputStream} leen como un solo archivo.
+ * Cada bloque pierde el diccionario del anterior, lo que con bloques de este tamaño apenas se nota en la
+ * compresión. Como mucho hay dos bloques por hilo esperando, así que la memoria no depende del tamaño total.
+ * <p>
+ * El canal solo se escribe desde un hilo. Al cerrarse espera a los bloques pendientes y cierra el destino.
+ */
+public final class CanalGzipParalelo implements WritableByteChannel {
+
+    /** Bytes sin comprimir de cada bloque. */
+    public static final int TAMANO_BLOQUE = 1 << 20;
+
+    /** Cabecera de cada miembro: sin nombre ni fecha, método deflate y sistema desconocido. */
+    private static final byte[] CABECERA = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final WritableByteChannel destino;  // Canal donde se escriben los miembros comprimidos
+    private final ExecutorService hilos;  // Hilos que comprimen los bloques
+    private final int maxPendientes;  // Bloques que pueden estar comprimiéndose a la vez
+    private final ArrayDeque<Future<ByteBuffer>> pendientes = new ArrayDeque<>();  // En el orden del archivo
+    private byte[] bloque = new byte[TAMANO_BLOQUE];  // Bloque que se está llenando
+    private int ocupado;  // Bytes ocupados del bloque
+    private long bloquesEnviados;
+    private long bytesComprimidos;
+    private boolean abierto = true;
+
+    /**
+     * Crea un canal que comprime con tantos hilos como procesadores.
+     *
+     * @param destino El canal donde se escribe el gzip; se cierra al cerrar este.
+     */
+    public CanalGzipParalelo(WritableByteChannel destino) {
+        this(destino, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crea un canal que comprime con el número de hilos indicado.
+     *
+     * @param destino El canal donde se escribe el gzip; se cierra al cerrar este.
+     * @param hilos   El número de hilos de compresión.
+     */
+    public CanalGzipParalelo(WritableByteChannel destino, int hilos) {
+        this.destino = destino;
+        int n = Math.max(1, hilos);
+        this.maxPendientes = 2 * n;
+        this.hilos = Executors.newFixedThreadPool(n, tarea -> {
+            Thread hilo = new Thread(tarea, "gzip-bloque");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Devuelve los bytes comprimidos escritos en el destino hasta ahora.
+     *
+     * @return El número de bytes comprimidos.
+     */
+    public long bytesComprimidos() {
+        return bytesComprimidos;
+    }
+
+    @Override
+    public int write(ByteBuffer origen) throws IOException {
+        if (!abierto) {
+            throw new ClosedChannelException();
+        }
+        int escritos = origen.remaining();
+        while (origen.hasRemaining()) {
+            int n = Math.min(origen.remaining(), bloque.length - ocupado);
+            origen.get(bloque, ocupado, n);
+            ocupado += n;
+            if (ocupado == bloque.length) {
+                enviarBloque();
+            }
+        }
+        return escritos;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return abierto;
+    }
+
+    /**
+     * Comprime lo que quede pendiente, lo escribe y cierra el destino. Un canal en el que no se ha
+     * escrito nada produce un miembro vacío, para que el archivo siga siendo un gzip válido.
+     *
+     * @throws IOException Si no se puede escribir en el destino o falla la compresión.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!abierto) {
+            return;
+        }
+        abierto = false;
+        try (destino) {
+            if (ocupado > 0 || bloquesEnviados == 0) {
+                enviarBloque();
+            }
+            while (!pendientes.isEmpty()) {
+                escribirSiguiente();
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    /**
+     * Manda a comprimir el bloque actual y empieza otro. Si ya hay demasiados bloques esperando,
+     * antes escribe el más antiguo.
+     */
+    private void enviarBloque() throws IOException {
+        byte[] datos = bloque;
+        int n = ocupado;
+        bloque = new byte[TAMANO_BLOQUE];
+        ocupado = 0;
+        bloquesEnviados++;
+        pendientes.add(hilos.submit(() -> comprimir(datos, n)));
+        while (pendientes.size() >= maxPendientes) {
+            escribirSiguiente();
+        }
+    }
+
+    /**
+     * Espera al bloque más antiguo y escribe su miembro en el destino.
+     */
+    private void escribirSiguiente() throws IOException {
+        ByteBuffer miembro;
+        try {
+            miembro = pendientes.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compresión interrumpida");
+        } catch (ExecutionException e) {
+            throw new IOException("Error al comprimir un bloque", e.getCause());
+        }
+        while (miembro.hasRemaining()) {
+            bytesComprimidos += destino.write(miembro);
+        }
+    }
+
+    /**
+     * Comprime un bloque como un miembro gzip completo.
+     *
+     * @param datos Los datos del bloque.
+     * @param n     Los bytes ocupados.
+     * @return El miembro: cabecera, datos comprimidos, CRC-32 y tamaño sin comprimir.
+     */
+    private static ByteBuffer comprimir(byte[] datos, int n) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(datos, 0, n);
+            deflater.finish();
+            byte[] salida = new byte[CABECERA.length + n + (n >> 8) + 64];
+            System.arraycopy(CABECERA, 0, salida, 0, CABECERA.length);
+            int escritos = CABECERA.length;
+            while (!deflater.finished()) {
+                if (escritos == salida.length - 8) {
+                    salida = Arrays.copyOf(salida, salida.length * 2);
+                }
+                escritos += deflater.deflate(salida, escritos, salida.length - 8 - escritos);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(datos, 0, n);
+            ByteBuffer miembro = ByteBuffer.wrap(salida, 0, escritos + 8).order(ByteOrder.LITTLE_ENDIAN);
+            miembro.position(escritos);
+            miembro.putInt((int) crc.getValue());
+            miembro.putInt(n);
+            return miembro.flip();
+        } finally {
+            deflater.end();
+        }
+    }
+}
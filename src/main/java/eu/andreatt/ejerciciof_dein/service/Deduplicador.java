@@ -0,0 +1,451 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.ClavePersona;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * La clase {@code Deduplicador} descarta las filas que repiten nombre, apellido y edad de una fila
+ * anterior, que es el mismo criterio que usa la ventana modal para rechazar duplicados.
+ * <p>
+ * Mientras las personas distintas caben en el presupuesto de memoria, se recuerdan en una tabla hash
+ * y cada fila nueva se entrega al momento. Cuando el presupuesto se agota, la tabla se congela y las
+ * filas que no están en ella se reparten por el hash de su clave en archivos temporales: dos filas
+ * iguales acaban siempre en la misma partición, así que cada partición se puede depurar por separado.
+ * Al {@linkplain #terminar() terminar}, las filas supervivientes se entregan en el orden del archivo
+ * original. Si una partición tampoco cabe, se vuelve a repartir con otro hash.
+ * <p>
+ * El coste por fila es constante en memoria y, al desbordar, cada fila se escribe y se lee unas pocas
+ * veces de forma secuencial, por lo que la velocidad sigue siendo predecible aunque el archivo crezca.
+ */
+public final class Deduplicador implements PersonaCsv.ReceptorFila, Closeable {
+
+    /** Número de particiones en que se reparten las filas al desbordar. */
+    static final int PARTICIONES = 64;
+
+    /** Niveles de reparto a partir de los cuales una partición se depura en memoria aunque no quepa. */
+    private static final int MAX_NIVELES = 4;
+
+    /** Bytes aproximados que ocupa cada clave en la tabla, sin contar los caracteres. */
+    private static final int BYTES_POR_CLAVE = 144;
+
+    /** Presupuesto mínimo, para que una partición no se reparta en otras 64 por unas pocas claves. */
+    private static final long PRESUPUESTO_MINIMO = 1L << 20;
+
+    /** Búfer de cada archivo temporal abierto a la vez. */
+    private static final int BUFER = 1 << 13;
+
+    private final PersonaCsv.ReceptorFila salida;  // Receptor de las filas que no son duplicadas
+    private final long presupuesto;  // Memoria máxima estimada para las claves, en bytes
+    private final Path directorio;  // Directorio donde se crean los archivos temporales
+    private final Set<ClavePersona> vistas = new HashSet<>();
+    private long memoria;  // Memoria estimada de las claves vistas
+    private long filas;  // Filas recibidas, que sirven de número de orden al desbordar
+    private long duplicadas;
+    private Path temporal;  // Directorio de los archivos temporales, o null si no se ha desbordado
+    private DataOutputStream[] particiones;
+    private boolean terminado;
+
+    /**
+     * Crea un deduplicador que usa como mucho una octava parte de la memoria máxima de la JVM
+     * y el directorio temporal del sistema.
+     *
+     * @param salida El receptor de las filas que no son duplicadas.
+     */
+    public Deduplicador(PersonaCsv.ReceptorFila salida) {
+        this(salida, Runtime.getRuntime().maxMemory() / 8, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Crea un deduplicador.
+     *
+     * @param salida      El receptor de las filas que no son duplicadas.
+     * @param presupuesto La memoria aproximada, en bytes, que pueden ocupar las claves antes de desbordar a disco.
+     *                    Por debajo de 1 MiB se usa 1 MiB.
+     * @param directorio  El directorio donde crear los archivos temporales.
+     */
+    public Deduplicador(PersonaCsv.ReceptorFila salida, long presupuesto, Path directorio) {
+        this.salida = salida;
+        this.presupuesto = Math.max(presupuesto, PRESUPUESTO_MINIMO);
+        this.directorio = directorio;
+    }
+
+    /**
+     * Recibe una fila y, si es la primera vez que aparece y todavía no se ha desbordado, la entrega a la salida.
+     *
+     * @param nombre   El nombre.
+     * @param apellido El apellido.
+     * @param edad     La edad.
+     * @throws IOException Si la salida falla o no se puede escribir en los archivos temporales.
+     */
+    @Override
+    public void recibir(String nombre, String apellido, int edad) throws IOException {
+        if (admitir(nombre, apellido, edad)) {
+            salida.recibir(nombre, apellido, edad);
+        }
+    }
+
+    /**
+     * Decide qué hacer con una fila sin entregarla a la salida. Sirve cuando quien llama ya tiene
+     * la persona creada y solo necesita saber si conservarla.
+     *
+     * @param nombre   El nombre.
+     * @param apellido El apellido.
+     * @param edad     La edad.
+     * @return {@code true} si la fila es nueva y debe conservarse ya; {@code false} si es duplicada o
+     *         se ha guardado en disco para entregarla a la salida al {@linkplain #terminar() terminar}.
+     * @throws IOException Si no se puede escribir en los archivos temporales.
+     */
+    public boolean admitir(String nombre, String apellido, int edad) throws IOException {
+        if (terminado) {
+            throw new IllegalStateException("El deduplicador ya ha terminado");
+        }
+        long orden = filas++;
+        ClavePersona clave = new ClavePersona(nombre, apellido, edad);
+        if (particiones == null) {
+            if (!vistas.add(clave)) {
+                duplicadas++;
+                return false;
+            }
+            memoria += BYTES_POR_CLAVE + nombre.length() + apellido.length();
+            if (memoria > presupuesto) {
+                desbordar();
+            }
+            return true;
+        }
+        if (vistas.contains(clave)) {
+            duplicadas++;
+        } else {
+            escribir(particiones[particion(clave, 0)], orden, clave);
+        }
+        return false;
+    }
+
+    /**
+     * Depura las particiones guardadas en disco y entrega sus filas supervivientes a la salida,
+     * en el orden en que se recibieron. Si no se ha desbordado no hace nada.
+     *
+     * @throws IOException Si no se pueden leer o escribir los archivos temporales, o la salida falla.
+     */
+    public void terminar() throws IOException {
+        if (terminado) {
+            return;
+        }
+        terminado = true;
+        if (particiones == null) {
+            return;
+        }
+        Path[] entradas = cerrarParticiones(particiones);
+        particiones = null;
+        vistas.clear(); // La memoria de la tabla congelada se necesita para depurar las particiones
+
+        List<Path> supervivientes = new ArrayList<>(PARTICIONES);
+        for (Path entrada : entradas) {
+            supervivientes.add(depurar(entrada, 1));
+        }
+        mezclar(supervivientes, (orden, clave) -> salida.recibir(clave.nombre(), clave.apellido(), clave.edad()));
+    }
+
+    /**
+     * Número de filas descartadas por duplicadas hasta ahora. Si se ha desbordado, el total
+     * solo se conoce después de {@link #terminar()}.
+     *
+     * @return El número de duplicadas.
+     */
+    public long duplicadas() {
+        return duplicadas;
+    }
+
+    /**
+     * Indica si las personas distintas no han cabido en memoria y se ha tenido que usar el disco.
+     *
+     * @return {@code true} si se ha desbordado.
+     */
+    public boolean desbordado() {
+        return temporal != null;
+    }
+
+    /**
+     * Borra los archivos temporales. Si se cierra antes de terminar, las filas guardadas en disco se pierden.
+     *
+     * @throws IOException Si no se pueden borrar los archivos temporales.
+     */
+    @Override
+    public void close() throws IOException {
+        terminado = true;
+        if (particiones != null) {
+            for (DataOutputStream particion : particiones) {
+                particion.close();
+            }
+            particiones = null;
+        }
+        if (temporal != null) {
+            try (Stream<Path> archivos = Files.list(temporal)) {
+                for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                    Files.deleteIfExists(archivo);
+                }
+            }
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Congela la tabla de claves vistas y abre las particiones donde irán las filas siguientes.
+     */
+    private void desbordar() throws IOException {
+        temporal = Files.createTempDirectory(directorio, "duplicados-");
+        particiones = abrirParticiones(temporal);
+    }
+
+    /**
+     * Depura una partición y devuelve el archivo con sus filas supervivientes, en orden.
+     * Si las claves distintas de la partición no caben en el presupuesto, se reparte de nuevo
+     * con el hash del siguiente nivel y se depura cada trozo.
+     */
+    private Path depurar(Path entrada, int nivel) throws IOException {
+        Path destino = Files.createTempFile(temporal, "s", ".tmp");
+        if (depurarEnMemoria(entrada, destino, nivel)) {
+            Files.delete(entrada);
+            return destino;
+        }
+
+        // No cabe: se descarta el trabajo hecho y se reparte la partición entera con otro hash
+        DataOutputStream[] trozos = abrirParticiones(temporal);
+        Path[] entradas;
+        try (DataInputStream in = abrirLectura(entrada)) {
+            long orden;
+            while ((orden = leerOrden(in)) >= 0) {
+                ClavePersona clave = leerClave(in);
+                escribir(trozos[particion(clave, nivel)], orden, clave);
+            }
+        } finally {
+            entradas = cerrarParticiones(trozos);
+        }
+        Files.delete(entrada);
+
+        List<Path> supervivientes = new ArrayList<>(PARTICIONES);
+        for (Path trozo : entradas) {
+            supervivientes.add(depurar(trozo, nivel + 1));
+        }
+        try (DataOutputStream out = abrirEscritura(destino)) {
+            mezclar(supervivientes, (orden, clave) -> escribir(out, orden, clave));
+        }
+        return destino;
+    }
+
+    /**
+     * Copia al destino la primera aparición de cada clave de la partición. Devuelve {@code false}
+     * si las claves distintas superan el presupuesto, salvo en el último nivel, donde se depura igualmente.
+     */
+    private boolean depurarEnMemoria(Path entrada, Path destino, int nivel) throws IOException {
+        Set<ClavePersona> claves = new HashSet<>();
+        long memoriaParticion = 0;
+        long descartadas = 0;
+
+        try (DataInputStream in = abrirLectura(entrada);
+             DataOutputStream out = abrirEscritura(destino)) {
+            long orden;
+            while ((orden = leerOrden(in)) >= 0) {
+                ClavePersona clave = leerClave(in);
+                if (!claves.add(clave)) {
+                    descartadas++;
+                    continue;
+                }
+                escribir(out, orden, clave);
+                memoriaParticion += BYTES_POR_CLAVE + clave.nombre().length() + clave.apellido().length();
+                if (memoriaParticion > presupuesto && nivel < MAX_NIVELES) {
+                    return false;
+                }
+            }
+        }
+        duplicadas += descartadas;
+        return true;
+    }
+
+    /**
+     * Mezcla k archivos ordenados por número de orden con una cola de prioridad y borra cada archivo al agotarlo.
+     */
+    private static void mezclar(List<Path> archivos, ReceptorOrdenado receptor) throws IOException {
+        PriorityQueue<Cabeza> cola = new PriorityQueue<>(Math.max(1, archivos.size()), Comparator.comparingLong(Cabeza::orden));
+        try {
+            for (Path archivo : archivos) {
+                Cabeza cabeza = new Cabeza(archivo, abrirLectura(archivo));
+                if (cabeza.avanzar()) {
+                    cola.add(cabeza);
+                } else {
+                    cabeza.cerrar();
+                }
+            }
+            Cabeza cabeza;
+            while ((cabeza = cola.poll()) != null) {
+                receptor.recibir(cabeza.orden, cabeza.clave);
+                if (cabeza.avanzar()) {
+                    cola.add(cabeza);
+                } else {
+                    cabeza.cerrar();
+                }
+            }
+        } finally {
+            for (Cabeza abierta : cola) {
+                abierta.in.close();
+            }
+        }
+    }
+
+    /**
+     * Receptor de filas con su número de orden.
+     */
+    @FunctionalInterface
+    private interface ReceptorOrdenado {
+        void recibir(long orden, ClavePersona clave) throws IOException;
+    }
+
+    /**
+     * Archivo ordenado que se está mezclando, con la fila que le toca entregar.
+     */
+    private static final class Cabeza {
+
+        private final Path archivo;
+        private final DataInputStream in;
+        private long orden;
+        private ClavePersona clave;
+
+        Cabeza(Path archivo, DataInputStream in) {
+            this.archivo = archivo;
+            this.in = in;
+        }
+
+        long orden() {
+            return orden;
+        }
+
+        boolean avanzar() throws IOException {
+            orden = leerOrden(in);
+            if (orden < 0) {
+                return false;
+            }
+            clave = leerClave(in);
+            return true;
+        }
+
+        void cerrar() throws IOException {
+            in.close();
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    /**
+     * Elige la partición de una clave. Cada nivel mezcla el hash con una constante distinta, para que
+     * las claves de una partición que no cabe se repartan de otra forma en el nivel siguiente.
+     */
+    private static int particion(ClavePersona clave, int nivel) {
+        long h = clave.hashCode() * 0x9E3779B97F4A7C15L + nivel * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return (int) ((h & Long.MAX_VALUE) % PARTICIONES);
+    }
+
+    private static DataOutputStream[] abrirParticiones(Path directorio) throws IOException {
+        DataOutputStream[] salidas = new DataOutputStream[PARTICIONES];
+        try {
+            for (int i = 0; i < PARTICIONES; i++) {
+                salidas[i] = abrirEscritura(Files.createTempFile(directorio, "p", ".tmp"));
+            }
+        } catch (IOException e) {
+            cerrarParticiones(salidas);
+            throw e;
+        }
+        return salidas;
+    }
+
+    /**
+     * Cierra las particiones abiertas y devuelve sus archivos, en el mismo orden.
+     */
+    private static Path[] cerrarParticiones(DataOutputStream[] salidas) throws IOException {
+        Path[] archivos = new Path[salidas.length];
+        for (int i = 0; i < salidas.length; i++) {
+            if (salidas[i] != null) {
+                salidas[i].close();
+                archivos[i] = ((ArchivoSalida) salidas[i]).archivo;
+            }
+        }
+        return archivos;
+    }
+
+    private static DataOutputStream abrirEscritura(Path archivo) throws IOException {
+        return new ArchivoSalida(archivo);
+    }
+
+    private static DataInputStream abrirLectura(Path archivo) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), BUFER));
+    }
+
+    /**
+     * Flujo de escritura de un archivo temporal que recuerda su ruta.
+     */
+    private static final class ArchivoSalida extends DataOutputStream {
+
+        private final Path archivo;
+
+        ArchivoSalida(Path archivo) throws IOException {
+            super(new BufferedOutputStream(Files.newOutputStream(archivo), BUFER));
+            this.archivo = archivo;
+        }
+    }
+
+    /**
+     * Escribe una fila: número de orden, nombre y apellido en UTF-8 precedidos de su longitud, y edad.
+     */
+    private static void escribir(DataOutputStream out, long orden, ClavePersona clave) throws IOException {
+        out.writeLong(orden);
+        escribirCadena(out, clave.nombre());
+        escribirCadena(out, clave.apellido());
+        out.writeInt(clave.edad());
+    }
+
+    private static void escribirCadena(DataOutputStream out, String cadena) throws IOException {
+        byte[] bytes = cadena.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Lee el número de orden de la siguiente fila, o devuelve -1 al final del archivo.
+     */
+    private static long leerOrden(DataInputStream in) throws IOException {
+        try {
+            return in.readLong();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    private static ClavePersona leerClave(DataInputStream in) throws IOException {
+        String nombre = leerCadena(in);
+        String apellido = leerCadena(in);
+        return new ClavePersona(nombre, apellido, in.readInt());
+    }
+
+    private static String leerCadena(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,497 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.ClavePersona;
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Diario de cambios de la agenda (write-ahead log) que permite recuperarla tras un cierre inesperado.
+ * Cada alta, baja o modificación se añade al final del diario como un registro compacto, de modo que
+ * el coste de guardar un cambio depende del cambio y no del tamaño de la agenda. Al arrancar se carga
+ * la última {@link AgendaBinaria} y se le aplican los registros del diario.
+ * <p>
+ * Los registros se escriben en un hilo propio que agrupa todos los pendientes y hace un solo
+ * {@code force} por grupo. Cada cierto número de registros, o cuando se pide expresamente, el diario
+ * se compacta: se guarda una agenda binaria con el estado completo y se empieza un diario vacío.
+ * <p>
+ * Estructura del diario: la cabecera ({@code AGDJ}, versión, tres bytes reservados y la huella de la
+ * agenda binaria a la que se aplican los registros), seguida de registros con su longitud (varint),
+ * el tipo, los datos y el CRC32 del tipo y los datos. Un diario cuya huella no coincide con la de la
+ * agenda binaria es anterior a ella y se ignora; un registro incompleto o dañado marca el final del diario.
+ */
+public final class DiarioCambios implements Closeable {
+
+    /** Número de registros a partir del cual conviene compactar el diario. */
+    public static final int UMBRAL_COMPACTACION = 50_000;
+
+    private static final byte[] MAGIA = {'A', 'G', 'D', 'J'};
+    private static final int VERSION = 1;
+    private static final int TAMANO_CABECERA = 12;
+
+    private static final byte ALTA = 1;
+    private static final byte BAJA = 2;
+    private static final byte MODIFICACION = 3;
+
+    private static final Object FIN = new Object();  // Orden de terminar para el hilo escritor
+
+    private final Path archivoAgenda;  // Agenda binaria en la que se compacta el diario
+    private final Path archivoDiario;  // Diario de registros
+    private final List<Persona> recuperadas;  // Estado recuperado al abrir
+    private final BlockingQueue<Object> cola = new LinkedBlockingQueue<>();  // Registros y compactaciones pendientes
+    private final Thread escritor;
+    private FileChannel canal;  // Solo lo usa el hilo escritor
+    private int registrosDesdeCompactacion;
+    private volatile IOException error;  // Primer error del hilo escritor; a partir de él no se escribe más
+
+    private DiarioCambios(Path archivoAgenda, Path archivoDiario, List<Persona> recuperadas, FileChannel canal) {
+        this.archivoAgenda = archivoAgenda;
+        this.archivoDiario = archivoDiario;
+        this.recuperadas = recuperadas;
+        this.canal = canal;
+        this.escritor = new Thread(this::escribirEnBucle, "diario-cambios");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Recupera la agenda y abre el diario para seguir registrando cambios.
+     * Carga la agenda binaria (si existe), le aplica los registros válidos del diario y, si había
+     * alguno, compacta el resultado en una agenda binaria nueva. Siempre empieza un diario vacío.
+     *
+     * @param archivoAgenda La agenda binaria.
+     * @param archivoDiario El diario de cambios.
+     * @return El diario abierto, con las personas recuperadas en {@link #personasRecuperadas()}.
+     * @throws IOException Si no se puede leer la agenda o escribir el diario.
+     */
+    public static DiarioCambios abrir(Path archivoAgenda, Path archivoDiario) throws IOException {
+        Files.createDirectories(archivoDiario.toAbsolutePath().getParent());
+        List<Persona> personas = Files.exists(archivoAgenda) ? AgendaBinaria.cargar(archivoAgenda) : new ArrayList<>();
+        int huella = AgendaBinaria.huella(archivoAgenda);
+
+        if (Files.exists(archivoDiario)) {
+            byte[] datos = Files.readAllBytes(archivoDiario);
+            if (datos.length >= TAMANO_CABECERA && Arrays.equals(datos, 0, MAGIA.length, MAGIA, 0, MAGIA.length)
+                    && datos[4] == VERSION && leerInt(datos, 8) == huella) {
+                Reproductor reproductor = new Reproductor(personas);
+                if (reproductor.reproducir(datos) > 0) {
+                    personas = reproductor.resultado();
+                    huella = AgendaBinaria.guardar(archivoAgenda, InstantaneaAgenda.de(personas));
+                }
+            }
+        }
+        return new DiarioCambios(archivoAgenda, archivoDiario, personas, nuevoDiario(archivoDiario, huella));
+    }
+
+    /**
+     * Devuelve las personas recuperadas al abrir el diario.
+     *
+     * @return Las personas de la agenda con los cambios del diario aplicados.
+     */
+    public List<Persona> personasRecuperadas() {
+        return recuperadas;
+    }
+
+    /**
+     * Registra el alta de una persona.
+     *
+     * @param persona La persona añadida.
+     */
+    public void registrarAlta(Persona persona) {
+        registrar(ALTA, ClavePersona.de(persona), null);
+    }
+
+    /**
+     * Registra la baja de una persona.
+     *
+     * @param persona La persona eliminada.
+     */
+    public void registrarBaja(Persona persona) {
+        registrar(BAJA, ClavePersona.de(persona), null);
+    }
+
+    /**
+     * Registra la modificación de una persona.
+     *
+     * @param anterior Los valores de la persona antes de modificarla.
+     * @param persona  La persona ya modificada.
+     */
+    public void registrarModificacion(ClavePersona anterior, Persona persona) {
+        registrar(MODIFICACION, anterior, ClavePersona.de(persona));
+    }
+
+    /**
+     * Indica si se han registrado suficientes cambios como para que convenga compactar.
+     *
+     * @return {@code true} si se ha superado {@link #UMBRAL_COMPACTACION}.
+     */
+    public boolean convieneCompactar() {
+        return registrosDesdeCompactacion >= UMBRAL_COMPACTACION;
+    }
+
+    /**
+     * Pide compactar el diario en una agenda binaria con el estado indicado. La compactación se hace
+     * en el hilo escritor después de los registros ya pedidos, que deben estar reflejados en el estado.
+     * Si el hilo escritor ha dejado de funcionar no se pide nada, porque nadie sacaría el estado de la cola.
+     *
+     * @param estado El estado completo de la agenda.
+     */
+    public void compactar(InstantaneaAgenda estado) {
+        if (error != null || !escritor.isAlive()) {
+            return;
+        }
+        registrosDesdeCompactacion = 0;
+        cola.add(estado);
+    }
+
+    /**
+     * Compacta el diario con el estado final de la agenda y espera a que el hilo escritor termine.
+     *
+     * @param estado El estado final de la agenda.
+     * @throws IOException Si el hilo escritor ha fallado en algún momento.
+     */
+    public void cerrar(InstantaneaAgenda estado) throws IOException {
+        compactar(estado);
+        close();
+    }
+
+    /**
+     * Escribe los registros pendientes y termina el hilo escritor.
+     *
+     * @throws IOException Si el hilo escritor ha fallado en algún momento.
+     */
+    @Override
+    public void close() throws IOException {
+        cola.add(FIN);
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Devuelve el primer error de escritura, si lo ha habido. Tras un error el diario descarta los
+     * registros y compactaciones siguientes, así que quien lo usa debe consultarlo para avisar de que
+     * los cambios ya no se guardan.
+     *
+     * @return El error, o {@code null} si el diario funciona correctamente.
+     */
+    public IOException error() {
+        return error;
+    }
+
+    /**
+     * Codifica un registro y lo deja en la cola del hilo escritor.
+     */
+    private void registrar(byte tipo, ClavePersona clave, ClavePersona nueva) {
+        if (error != null) {
+            return;
+        }
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream(64);
+        cuerpo.write(tipo);
+        escribirClave(cuerpo, clave);
+        if (nueva != null) {
+            escribirClave(cuerpo, nueva);
+        }
+        byte[] datos = cuerpo.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+
+        ByteArrayOutputStream registro = new ByteArrayOutputStream(datos.length + 9);
+        escribirVarint(registro, datos.length);
+        registro.writeBytes(datos);
+        escribirInt(registro, (int) crc.getValue());
+        cola.add(registro.toByteArray());
+        registrosDesdeCompactacion++;
+    }
+
+    /**
+     * Bucle del hilo escritor: toma todo lo pendiente, lo escribe y hace un solo {@code force} por grupo.
+     */
+    private void escribirEnBucle() {
+        List<Object> lote = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        try {
+            while (true) {
+                lote.add(cola.take());
+                cola.drainTo(lote);
+                boolean pendiente = false;
+                for (Object elemento : lote) {
+                    if (elemento instanceof byte[] registro) {
+                        if (buffer.remaining() < registro.length) {
+                            volcar(buffer);
+                        }
+                        if (registro.length > buffer.capacity()) {
+                            escribirTodo(ByteBuffer.wrap(registro));
+                        } else {
+                            buffer.put(registro);
+                        }
+                        pendiente = true;
+                    } else {
+                        volcar(buffer);
+                        if (pendiente) {
+                            canal.force(false);
+                            pendiente = false;
+                        }
+                        if (elemento == FIN) {
+                            canal.close();
+                            return;
+                        }
+                        compactarAhora((InstantaneaAgenda) elemento);
+                    }
+                }
+                volcar(buffer);
+                if (pendiente) {
+                    canal.force(false); // Un único fsync para todo el grupo
+                }
+                lote.clear();
+            }
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("El hilo del diario se ha interrumpido");
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            error = e; // Quien registra los cambios lo consulta con error()
+        }
+        cola.clear(); // Lo pendiente ya no se escribirá; no se retiene en memoria
+    }
+
+    /**
+     * Guarda el estado en la agenda binaria y empieza un diario vacío apuntando a ella.
+     * {@link AgendaBinaria#guardar} solo vuelve cuando la agenda y su carpeta están en disco, así que
+     * el diario antiguo no se sustituye hasta que la agenda nueva es duradera; si falla, el diario
+     * antiguo sigue intacto. Si el proceso se interrumpe entre los dos pasos, el diario antiguo no
+     * coincide con la huella de la agenda nueva y se ignora al recuperar, que es lo correcto porque
+     * la agenda ya lo incluye.
+     */
+    private void compactarAhora(InstantaneaAgenda estado) throws IOException {
+        int huella = AgendaBinaria.guardar(archivoAgenda, estado); // Duradera antes de tocar el diario
+        canal.close();
+        canal = nuevoDiario(archivoDiario, huella);
+    }
+
+    private void volcar(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        escribirTodo(buffer);
+        buffer.clear();
+    }
+
+    private void escribirTodo(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    /**
+     * Crea un diario vacío para la huella indicada, sustituyendo de forma atómica al anterior,
+     * y lo deja abierto para añadir registros. La carpeta se sincroniza después del cambio de nombre
+     * para que los registros siguientes no acaben en un diario que desaparece tras un corte.
+     */
+    private static FileChannel nuevoDiario(Path archivoDiario, int huella) throws IOException {
+        Path temporal = archivoDiario.resolveSibling(archivoDiario.getFileName() + ".tmp");
+        ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA);
+        cabecera.put(MAGIA).put((byte) VERSION).put(new byte[3]).putInt(huella).flip();
+        try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (cabecera.hasRemaining()) {
+                nuevo.write(cabecera);
+            }
+            nuevo.force(true);
+        }
+        Files.move(temporal, archivoDiario, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        AgendaBinaria.sincronizarCarpeta(archivoDiario);
+        return FileChannel.open(archivoDiario, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void escribirClave(ByteArrayOutputStream salida, ClavePersona clave) {
+        escribirTexto(salida, clave.nombre());
+        escribirTexto(salida, clave.apellido());
+        escribirVarint(salida, (clave.edad() << 1) ^ (clave.edad() >> 31));
+    }
+
+    private static void escribirTexto(ByteArrayOutputStream salida, String texto) {
+        byte[] bytes = (texto == null ? "" : texto).getBytes(StandardCharsets.UTF_8);
+        escribirVarint(salida, bytes.length);
+        salida.writeBytes(bytes);
+    }
+
+    private static void escribirVarint(ByteArrayOutputStream salida, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            salida.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        salida.write(valor);
+    }
+
+    private static void escribirInt(ByteArrayOutputStream salida, int valor) {
+        salida.write(valor >>> 24);
+        salida.write(valor >>> 16);
+        salida.write(valor >>> 8);
+        salida.write(valor);
+    }
+
+    private static int leerInt(byte[] datos, int pos) {
+        return (datos[pos] & 0xFF) << 24 | (datos[pos + 1] & 0xFF) << 16 | (datos[pos + 2] & 0xFF) << 8 | (datos[pos + 3] & 0xFF);
+    }
+
+    /**
+     * Aplica los registros de un diario a una lista de personas. Las personas se localizan por sus
+     * valores mediante un índice hash, de modo que cada registro cuesta un tiempo constante.
+     */
+    private static final class Reproductor {
+
+        private final List<Persona> personas;  // Las bajas se marcan con null y se quitan al final
+        private final Map<ClavePersona, ArrayDeque<Integer>> posiciones = new HashMap<>();
+        private byte[] datos;
+        private int pos;
+        private int fin;
+
+        Reproductor(List<Persona> base) {
+            this.personas = new ArrayList<>(base);
+            for (int i = 0; i < personas.size(); i++) {
+                posiciones.computeIfAbsent(ClavePersona.de(personas.get(i)), c -> new ArrayDeque<>()).add(i);
+            }
+        }
+
+        /**
+         * Aplica los registros válidos del diario y se detiene en el primero incompleto o dañado.
+         *
+         * @return El número de registros aplicados.
+         */
+        int reproducir(byte[] diario) {
+            this.datos = diario;
+            this.fin = diario.length;
+            int aplicados = 0;
+            int siguiente = TAMANO_CABECERA;
+            try {
+                while (siguiente < fin) {
+                    pos = siguiente;
+                    int longitud = varint();
+                    int inicio = pos;
+                    if (longitud <= 0 || longitud > fin - inicio - 4) {
+                        break; // Registro incompleto: el cierre se produjo mientras se escribía
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(datos, inicio, longitud);
+                    if ((int) crc.getValue() != leerInt(datos, inicio + longitud)) {
+                        break; // Registro dañado
+                    }
+                    fin = inicio + longitud;
+                    aplicar();
+                    fin = datos.length;
+                    siguiente = inicio + longitud + 4;
+                    aplicados++;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // Datos del registro mal formados pese al CRC: se considera el final del diario
+            }
+            return aplicados;
+        }
+
+        List<Persona> resultado() {
+            List<Persona> resultado = new ArrayList<>(personas.size());
+            for (Persona persona : personas) {
+                if (persona != null) {
+                    resultado.add(persona);
+                }
+            }
+            return resultado;
+        }
+
+        private void aplicar() {
+            byte tipo = datos[pos++];
+            ClavePersona clave = clave();
+            switch (tipo) {
+                case ALTA -> {
+                    posiciones.computeIfAbsent(clave, c -> new ArrayDeque<>()).add(personas.size());
+                    personas.add(new Persona(clave.nombre(), clave.apellido(), clave.edad()));
+                }
+                case BAJA -> {
+                    Integer posicion = sacar(clave);
+                    if (posicion != null) {
+                        personas.set(posicion, null);
+                    }
+                }
+                case MODIFICACION -> {
+                    ClavePersona nueva = clave();
+                    Integer posicion = sacar(clave);
+                    if (posicion != null) {
+                        Persona persona = personas.get(posicion);
+                        persona.setNombre(nueva.nombre());
+                        persona.setApellido(nueva.apellido());
+                        persona.setEdad(nueva.edad());
+                        posiciones.computeIfAbsent(nueva, c -> new ArrayDeque<>()).add(posicion);
+                    }
+                }
+                default -> throw new IndexOutOfBoundsException("Tipo de registro desconocido: " + tipo);
+            }
+        }
+
+        private Integer sacar(ClavePersona clave) {
+            ArrayDeque<Integer> cola = posiciones.get(clave);
+            if (cola == null) {
+                return null; // El registro no se puede aplicar: se ignora
+            }
+            Integer posicion = cola.poll();
+            if (cola.isEmpty()) {
+                posiciones.remove(clave);
+            }
+            return posicion;
+        }
+
+        private ClavePersona clave() {
+            String nombre = texto();
+            String apellido = texto();
+            int zigzag = varint();
+            return new ClavePersona(nombre, apellido, (zigzag >>> 1) ^ -(zigzag & 1));
+        }
+
+        private String texto() {
+            int longitud = varint();
+            if (longitud < 0 || longitud > fin - pos) {
+                throw new IndexOutOfBoundsException("Texto fuera del registro");
+            }
+            String texto = new String(datos, pos, longitud, StandardCharsets.UTF_8);
+            pos += longitud;
+            return texto;
+        }
+
+        private int varint() {
+            int valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+                if (pos >= fin) {
+                    throw new IndexOutOfBoundsException("Entero fuera del registro");
+                }
+                byte b = datos[pos++];
+                valor |= (b & 0x7F) << desplazamiento;
+                if (b >= 0) {
+                    return valor;
+                }
+            }
+            throw new IndexOutOfBoundsException("Entero mal codificado");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * La clase {@code EscritorCsv} escribe filas de personas en formato CSV codificado en UTF-8.
+ * Las filas se componen en un buffer de caracteres reutilizable, se codifican directamente en un
+ * {@code ByteBuffer} y se vuelcan al canal en bloques grandes, sin crear una cadena por fila.
+ * Al cerrarse vuelca lo pendiente y cierra el canal.
+ */
+public final class EscritorCsv implements Closeable {
+
+    /** Tamaño del buffer de bytes que se vuelca al canal de una sola vez. */
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    /** Capacidad inicial del buffer de caracteres donde se componen las filas. */
+    private static final int TAMANO_CARACTERES = 1 << 16;
+
+    private final WritableByteChannel canal;  // Canal de destino
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+    private CharBuffer caracteres = CharBuffer.allocate(TAMANO_CARACTERES);
+    private final char[] digitos = new char[11];  // Espacio para escribir una edad sin crear cadenas
+    private long bytesEscritos;
+
+    /**
+     * Crea un escritor sobre un canal abierto.
+     *
+     * @param canal El canal donde se escriben las filas; el escritor lo cierra al cerrarse.
+     */
+    public EscritorCsv(WritableByteChannel canal) {
+        this.canal = canal;
+    }
+
+    /**
+     * Escribe la línea de encabezado.
+     *
+     * @throws IOException Si no se puede escribir en el canal.
+     */
+    public void escribirEncabezado() throws IOException {
+        asegurarEspacio(PersonaCsv.ENCABEZADO.length() + 1);
+        caracteres.put(PersonaCsv.ENCABEZADO).put('\n');
+    }
+
+    /**
+     * Escribe una fila {@code nombre,apellido,edad}.
+     *
+     * @param nombre   El nombre.
+     * @param apellido El apellido.
+     * @param edad     La edad.
+     * @throws IOException Si no se puede escribir en el canal.
+     */
+    public void escribirFila(String nombre, String apellido, int edad) throws IOException {
+        asegurarEspacio(nombre.length() + apellido.length() + digitos.length + 3);
+        caracteres.put(nombre).put(',').put(apellido).put(',');
+        escribirEntero(edad);
+        caracteres.put('\n');
+    }
+
+    /**
+     * Devuelve los bytes volcados al canal hasta ahora.
+     *
+     * @return El número de bytes escritos.
+     */
+    public long bytesEscritos() {
+        return bytesEscritos;
+    }
+
+    /**
+     * Codifica y vuelca los caracteres pendientes y cierra el canal.
+     *
+     * @throws IOException Si no se puede escribir en el canal.
+     */
+    @Override
+    public void close() throws IOException {
+        try (canal) {
+            volcarCaracteres(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                volcarBytes();
+            }
+            volcarBytes();
+        }
+    }
+
+    /**
+     * Vuelca el buffer de caracteres si no quedan {@code necesarios} libres, ampliándolo si aun así no caben.
+     */
+    private void asegurarEspacio(int necesarios) throws IOException {
+        if (caracteres.remaining() < necesarios) {
+            volcarCaracteres(false);
+            if (caracteres.remaining() < necesarios) {
+                // Fila más larga que el buffer: se amplía conservando lo pendiente
+                CharBuffer mayor = CharBuffer.allocate(caracteres.position() + necesarios);
+                caracteres.flip();
+                caracteres = mayor.put(caracteres);
+            }
+        }
+    }
+
+    /**
+     * Escribe un entero en el buffer de caracteres sin crear objetos intermedios.
+     */
+    private void escribirEntero(int valor) {
+        if (valor == Integer.MIN_VALUE) {
+            caracteres.put(Integer.toString(valor));
+            return;
+        }
+        if (valor < 0) {
+            caracteres.put('-');
+            valor = -valor;
+        }
+        int pos = digitos.length;
+        do {
+            digitos[--pos] = (char) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor != 0);
+        caracteres.put(digitos, pos, digitos.length - pos);
+    }
+
+    /**
+     * Codifica en UTF-8 los caracteres pendientes, volcando el buffer de bytes cada vez que se llena.
+     *
+     * @param fin {@code true} si no se van a escribir más caracteres.
+     */
+    private void volcarCaracteres(boolean fin) throws IOException {
+        caracteres.flip();
+        while (true) {
+            CoderResult resultado = encoder.encode(caracteres, bytes, fin);
+            if (resultado.isOverflow()) {
+                volcarBytes();
+            } else if (resultado.isUnderflow()) {
+                break;
+            } else {
+                resultado.throwException();
+            }
+        }
+        caracteres.compact();
+    }
+
+    /**
+     * Escribe en el canal el contenido del buffer de bytes y lo deja vacío para reutilizarlo.
+     */
+    private void volcarBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            bytesEscritos += canal.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.metricas.EventoExportacion;
+import eu.andreatt.ejerciciof_dein.metricas.Metricas;
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import javafx.concurrent.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Tarea en segundo plano que exporta personas a un archivo CSV codificado en UTF-8.
+ * Al crearse copia los valores de las personas, de modo que el archivo refleja la tabla
+ * en el momento de la exportación aunque después se modifique. Las filas se escriben con
+ * un {@link EscritorCsv} sobre un {@code FileChannel}; si el archivo termina en {@code .gz}, pasan antes por un
+ * {@link CanalGzipParalelo} que comprime bloques independientes en varios hilos. La tarea devuelve el número
+ * de bytes escritos antes de comprimir.
+ */
+public class ExportarCsvTask extends Task<Long> {
+
+    /** Cada cuántas filas se comprueba la cancelación y se actualiza el progreso. */
+    private static final int INTERVALO_PROGRESO = 4_096;
+
+    private final File archivo;  // Archivo CSV de destino
+    private final InstantaneaAgenda filas;  // Copia de los valores en el orden de la tabla
+    private int filasEscritas;  // Filas escritas según la última actualización del estado
+
+    /**
+     * Crea la tarea de exportación copiando los valores actuales de las personas.
+     * Debe llamarse desde el hilo de JavaFX para que la copia sea coherente.
+     *
+     * @param archivo  El archivo CSV de destino.
+     * @param personas Las personas a exportar, en el orden en que se escribirán.
+     */
+    public ExportarCsvTask(File archivo, List<Persona> personas) {
+        this.archivo = archivo;
+        this.filas = InstantaneaAgenda.de(personas);
+    }
+
+    /**
+     * Escribe el encabezado y todas las filas en el archivo.
+     * Si la tarea se cancela, el archivo incompleto se borra.
+     *
+     * @return El número de bytes escritos.
+     * @throws IOException Si no se puede escribir el archivo.
+     */
+    @Override
+    protected Long call() throws IOException {
+        long inicio = System.nanoTime();
+        int total = filas.tamano();
+        EventoExportacion evento = new EventoExportacion();
+        evento.iniciar();
+
+        WritableByteChannel canal = PersonaCsv.comprimir(archivo.toPath(), FileChannel.open(archivo.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        EscritorCsv escritor = new EscritorCsv(canal);
+        try (escritor) {
+            escritor.escribirEncabezado();
+            for (int i = 0; i < total; i++) {
+                if (i % INTERVALO_PROGRESO == 0) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    actualizarEstado(i, total, escritor.bytesEscritos(), inicio);
+                }
+                escritor.escribirFila(filas.nombre(i), filas.apellido(i), filas.edad(i));
+            }
+        }
+
+        if (isCancelled()) {
+            Metricas.registrarExportacion(evento, archivo.getName(), filasEscritas, escritor.bytesEscritos(), true);
+            Files.deleteIfExists(archivo.toPath()); // No se deja un archivo a medias
+            updateMessage("Exportación cancelada");
+            return escritor.bytesEscritos();
+        }
+        actualizarEstado(total, total, escritor.bytesEscritos(), inicio);
+        if (canal instanceof CanalGzipParalelo gzip) {
+            updateMessage(String.format("%,d filas exportadas, %,.1f MB comprimidos a %,.1f MB",
+                    total, escritor.bytesEscritos() / 1e6, gzip.bytesComprimidos() / 1e6));
+        }
+        Metricas.registrarExportacion(evento, archivo.getName(), total, escritor.bytesEscritos(), false);
+        return escritor.bytesEscritos();
+    }
+
+    /**
+     * Actualiza el progreso y el mensaje con las filas y la velocidad de escritura en bytes por segundo.
+     */
+    private void actualizarEstado(int escritas, int total, long bytesEscritos, long inicio) {
+        filasEscritas = escritas;
+        double segundos = Math.max(1e-9, (System.nanoTime() - inicio) / 1e9);
+        updateProgress(escritas, Math.max(1, total));
+        updateMessage(String.format("%,d filas exportadas, %,.1f MB/s", escritas, bytesEscritos / segundos / 1e6));
+    }
+}
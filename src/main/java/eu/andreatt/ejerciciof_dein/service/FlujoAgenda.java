@@ -0,0 +1,215 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.IndiceBusqueda;
+import eu.andreatt.ejerciciof_dein.model.OrdenPersonas;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * La clase {@code FlujoAgenda} procesa un CSV de personas fila a fila, sin cargarlo entero:
+ * lo analiza, descarta opcionalmente los duplicados y las filas que no pasan el filtro, lo ordena si
+ * se pide y escribe el resultado en CSV o en formato binario. No usa JavaFX, así que puede ejecutarse sin pantalla.
+ * <p>
+ * La memoria no depende del tamaño del archivo: la eliminación de duplicados usa un
+ * {@link Deduplicador}, que pasa a disco cuando las personas distintas no caben en memoria.
+ */
+public final class FlujoAgenda {
+
+    /**
+     * Formato del archivo de salida.
+     */
+    public enum Formato {
+        /** CSV con encabezado, como el que exporta la aplicación. */
+        CSV,
+        /** Agenda binaria de {@link AgendaBinaria}. */
+        BINARIO;
+
+        /**
+         * Deduce el formato de la extensión del archivo: {@code .bin} es binario y lo demás, CSV.
+         *
+         * @param archivo El archivo de salida.
+         * @return El formato.
+         */
+        public static Formato de(Path archivo) {
+            return archivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".bin") ? BINARIO : CSV;
+        }
+    }
+
+    /**
+     * Recuento de filas de una ejecución.
+     *
+     * @param leidas     Filas leídas del archivo de entrada.
+     * @param duplicadas Filas descartadas por repetir una persona ya vista.
+     * @param filtradas  Filas descartadas por no pasar el filtro.
+     * @param escritas   Filas escritas en la salida.
+     * @param nanos      Duración de la ejecución.
+     */
+    public record Resumen(long leidas, long duplicadas, long filtradas, long escritas, long nanos) {
+    }
+
+    private boolean sinDuplicados;
+    private String texto;  // Texto que debe contener el nombre o el apellido, en minúsculas, o null
+    private int edadMinima = Integer.MIN_VALUE;
+    private int edadMaxima = Integer.MAX_VALUE;
+    private OrdenPersonas orden;  // Orden de la salida, o null para conservar el de la entrada
+
+    /**
+     * Activa la eliminación de duplicados: solo se conserva la primera aparición de cada
+     * nombre, apellido y edad, igual que la comprobación de la ventana modal.
+     *
+     * @return Este flujo.
+     */
+    public FlujoAgenda sinDuplicados() {
+        this.sinDuplicados = true;
+        return this;
+    }
+
+    /**
+     * Conserva solo las personas cuyo nombre o apellido contiene el texto, sin distinguir tildes ni mayúsculas.
+     *
+     * @param texto El texto a buscar.
+     * @return Este flujo.
+     */
+    public FlujoAgenda filtrarTexto(String texto) {
+        this.texto = texto == null || texto.isEmpty() ? null : IndiceBusqueda.normalizar(texto);
+        return this;
+    }
+
+    /**
+     * Conserva solo las personas con una edad dentro del intervalo, ambos extremos incluidos.
+     *
+     * @param minima La edad mínima.
+     * @param maxima La edad máxima.
+     * @return Este flujo.
+     */
+    public FlujoAgenda edadEntre(int minima, int maxima) {
+        this.edadMinima = minima;
+        this.edadMaxima = maxima;
+        return this;
+    }
+
+    /**
+     * Ordena la salida. Si las filas no caben en memoria se ordenan por tramos en disco con {@link OrdenacionExterna}.
+     *
+     * @param orden El orden de la salida, o {@code null} para conservar el orden de la entrada.
+     * @return Este flujo.
+     */
+    public FlujoAgenda ordenarPor(OrdenPersonas orden) {
+        this.orden = orden == null || orden.criterios().isEmpty() ? null : orden;
+        return this;
+    }
+
+    /**
+     * Procesa el archivo de entrada y escribe el resultado. Si falla, el archivo de salida se borra.
+     *
+     * @param entrada El CSV de entrada.
+     * @param salida  El archivo de salida.
+     * @param formato El formato de salida.
+     * @return El recuento de filas.
+     * @throws IOException Si no se puede leer la entrada, alguna línea está mal formada o no se puede escribir la salida.
+     */
+    public Resumen ejecutar(Path entrada, Path salida, Formato formato) throws IOException {
+        long inicio = System.nanoTime();
+        long[] cuentas = new long[2];  // Filtradas y escritas
+        long leidas;
+        long duplicadas = 0;
+
+        // Cada etapa entrega sus filas a la siguiente: filtro, duplicados, ordenación y escritura
+        try (Salida destino = abrir(salida, formato);
+             OrdenacionExterna ordenacion = orden != null ? new OrdenacionExterna(orden, contar(destino, cuentas)) : null;
+             Deduplicador deduplicador = sinDuplicados
+                     ? new Deduplicador(ordenacion != null ? ordenacion : contar(destino, cuentas)) : null;
+             InputStream bytes = Files.newInputStream(entrada);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     PersonaCsv.descomprimir(entrada, bytes), StandardCharsets.UTF_8), 1 << 16)) {
+            PersonaCsv.ReceptorFila siguiente = deduplicador != null ? deduplicador
+                    : ordenacion != null ? ordenacion : contar(destino, cuentas);
+            leidas = PersonaCsv.leer(reader, (nombre, apellido, edad) -> {
+                if (cumpleFiltro(nombre, apellido, edad)) {
+                    siguiente.recibir(nombre, apellido, edad);
+                } else {
+                    cuentas[0]++;
+                }
+            });
+            if (deduplicador != null) {
+                deduplicador.terminar();
+                duplicadas = deduplicador.duplicadas();
+            }
+            if (ordenacion != null) {
+                ordenacion.terminar();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(salida); // No se deja una salida a medias
+            throw e;
+        }
+        return new Resumen(leidas, duplicadas, cuentas[0], cuentas[1], System.nanoTime() - inicio);
+    }
+
+    /**
+     * Escribe las filas en la salida contando las escritas.
+     */
+    private static PersonaCsv.ReceptorFila contar(Salida destino, long[] cuentas) {
+        return (nombre, apellido, edad) -> {
+            destino.recibir(nombre, apellido, edad);
+            cuentas[1]++;
+        };
+    }
+
+    /**
+     * Comprueba el filtro antes que los duplicados, para no recordar personas que se van a descartar.
+     */
+    private boolean cumpleFiltro(String nombre, String apellido, int edad) {
+        if (edad < edadMinima || edad > edadMaxima) {
+            return false;
+        }
+        return texto == null || IndiceBusqueda.normalizar(nombre).contains(texto)
+                || IndiceBusqueda.normalizar(apellido).contains(texto);
+    }
+
+    /**
+     * Destino de las filas que se puede cerrar.
+     */
+    private interface Salida extends PersonaCsv.ReceptorFila, Closeable {
+    }
+
+    private static Salida abrir(Path archivo, Formato formato) throws IOException {
+        if (formato == Formato.BINARIO) {
+            AgendaBinaria.Escritor escritor = new AgendaBinaria.Escritor(Files.newOutputStream(archivo));
+            return new Salida() {
+                @Override
+                public void recibir(String nombre, String apellido, int edad) throws IOException {
+                    escritor.escribir(nombre, apellido, edad);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    escritor.close();
+                }
+            };
+        }
+        EscritorCsv escritor = new EscritorCsv(PersonaCsv.comprimir(archivo, FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+        escritor.escribirEncabezado();
+        return new Salida() {
+            @Override
+            public void recibir(String nombre, String apellido, int edad) throws IOException {
+                escritor.escribirFila(nombre, apellido, edad);
+            }
+
+            @Override
+            public void close() throws IOException {
+                escritor.close();
+            }
+        };
+    }
+}
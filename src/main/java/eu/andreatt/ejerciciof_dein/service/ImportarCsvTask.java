@@ -0,0 +1,322 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.metricas.EventoImportacion;
+import eu.andreatt.ejerciciof_dein.metricas.Metricas;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tarea en segundo plano que importa personas desde un archivo CSV.
+ * El archivo se lee y se analiza fuera del hilo de JavaFX, y las personas se publican
+ * en la lista destino en lotes grandes para que la tabla reciba pocos eventos de cambio.
+ * Los archivos grandes se analizan en paralelo con {@link LectorCsvParalelo}. Los archivos {@code .gz} se
+ * descomprimen a medida que se leen, línea a línea, y el progreso se mide en bytes comprimidos.
+ * Las filas que repiten nombre, apellido y edad de otra anterior se descartan con un {@link Deduplicador},
+ * igual que la ventana modal rechaza los duplicados.
+ * La tarea devuelve el número de filas importadas. Si se cancela o falla, la lista recupera el contenido
+ * que tenía antes de la importación, así que nunca se queda con un archivo leído a medias.
+ */
+public class ImportarCsvTask extends Task<Integer> {
+
+    /** Número de personas que se acumulan antes de publicarlas en la lista. */
+    public static final int TAMANO_LOTE = 50_000;
+
+    /** Tamaño a partir del cual el archivo se proyecta en memoria y se analiza en paralelo. */
+    public static final long UMBRAL_PARALELO = 64L << 20;
+
+    /** Cada cuántas filas se actualiza el progreso y el mensaje de la tarea. */
+    static final int INTERVALO_PROGRESO = 4_096;
+
+    private final File archivo;  // Archivo CSV a importar
+    private final ObservableList<Persona> destino;  // Lista donde se publican las personas
+    private List<Persona> anteriores;  // Contenido de la lista antes del primer lote, hasta que la importación termina
+    private int filasLeidas;  // Filas importadas según la última actualización del estado
+    private int filasPublicadas;  // Filas entregadas a la lista destino
+    private long bytesLeidos;  // Bytes leídos según la última actualización del estado
+
+    /**
+     * Crea la tarea de importación.
+     *
+     * @param archivo El archivo CSV a importar.
+     * @param destino La lista que se reemplazará con las personas del archivo.
+     */
+    public ImportarCsvTask(File archivo, ObservableList<Persona> destino) {
+        this.archivo = archivo;
+        this.destino = destino;
+    }
+
+    /**
+     * Importa el archivo y registra la importación en las métricas, aunque se cancele o falle.
+     *
+     * @return El número de filas importadas.
+     * @throws IOException Si no se puede leer el archivo o alguna línea está mal formada.
+     */
+    @Override
+    protected Integer call() throws IOException {
+        EventoImportacion evento = new EventoImportacion();
+        evento.iniciar();
+        try {
+            return archivo.length() >= UMBRAL_PARALELO && !PersonaCsv.comprimido(archivo.toPath())
+                    ? importarEnParalelo() : importarLineaALinea();
+        } catch (InterruptedIOException e) {
+            // Cancelada mientras se publicaban las filas que el deduplicador había guardado en disco
+            return cancelada();
+        } finally {
+            Metricas.registrarImportacion(evento, archivo.getName(), filasLeidas, bytesLeidos, isCancelled());
+        }
+    }
+
+    /**
+     * Lee el archivo línea por línea (omitiendo el encabezado) y publica las personas por lotes.
+     * El primer lote reemplaza el contenido de la lista y los siguientes se añaden al final.
+     *
+     * @return El número de filas importadas.
+     * @throws IOException Si no se puede leer el archivo o alguna línea está mal formada.
+     */
+    private int importarLineaALinea() throws IOException {
+        long tamano = Math.max(1, archivo.length());
+        long inicio = System.nanoTime();
+        Publicador publicador = new Publicador();
+        int leidas = 0;
+        long duplicadas;
+
+        try (Deduplicador deduplicador = new Deduplicador(publicador);
+             ContadorEntrada contador = new ContadorEntrada(new FileInputStream(archivo));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     PersonaCsv.descomprimir(archivo.toPath(), contador), StandardCharsets.UTF_8), 1 << 16)) {
+            long numLinea = 1;
+            String linea = reader.readLine(); // Saltar la primera línea que contiene el encabezado
+
+            while (linea != null && (linea = reader.readLine()) != null) {
+                numLinea++;
+                if (linea.isEmpty()) {
+                    continue; // Las líneas vacías no describen a ninguna persona
+                }
+                PersonaCsv.parsear(linea, numLinea, deduplicador);
+                leidas++;
+
+                if (leidas % INTERVALO_PROGRESO == 0) {
+                    if (isCancelled()) {
+                        return cancelada();
+                    }
+                    actualizarEstado(publicador.filas, deduplicador.duplicadas(), contador.leidos, tamano, inicio);
+                }
+            }
+            // Si las personas distintas no cabían en memoria, las que esperaban en disco se publican ahora
+            deduplicador.terminar();
+            duplicadas = deduplicador.duplicadas();
+        }
+
+        // El último lote se publica siempre para que un archivo vacío también limpie la tabla
+        publicador.publicarLote();
+        actualizarEstado(publicador.filas, duplicadas, tamano, tamano, inicio);
+        return publicador.filas;
+    }
+
+    /**
+     * Importa el archivo analizando sus trozos en paralelo. Cada trozo se publica como un lote,
+     * en el orden del archivo, en cuanto él y los anteriores están analizados.
+     *
+     * @return El número de filas importadas.
+     * @throws IOException Si no se puede leer el archivo o alguna línea está mal formada.
+     */
+    private int importarEnParalelo() throws IOException {
+        long tamano = Math.max(1, archivo.length());
+        long inicio = System.nanoTime();
+        Publicador publicador = new Publicador();
+        long duplicadas;
+
+        try (Deduplicador deduplicador = new Deduplicador(publicador)) {
+            new LectorCsvParalelo().leer(archivo.toPath(), (personas, bytesHasta) -> {
+                if (isCancelled()) {
+                    return false;
+                }
+                List<Persona> nuevas = new ArrayList<>(personas.size());
+                for (Persona persona : personas) {
+                    if (deduplicador.admitir(persona.getNombre(), persona.getApellido(), persona.getEdad())) {
+                        nuevas.add(persona); // Se conserva la persona ya creada por el lector
+                    }
+                }
+                publicador.publicar(nuevas);
+                actualizarEstado(publicador.filas, deduplicador.duplicadas(), bytesHasta, tamano, inicio);
+                return true;
+            });
+            if (isCancelled()) {
+                return cancelada();
+            }
+            deduplicador.terminar();
+            duplicadas = deduplicador.duplicadas();
+        }
+
+        publicador.publicarLote(); // Si el archivo no tenía filas, se limpia la tabla igualmente
+        actualizarEstado(publicador.filas, duplicadas, tamano, tamano, inicio);
+        return publicador.filas;
+    }
+
+    /**
+     * Anuncia la cancelación con las filas que habían llegado a la lista, sin contar las que esperaban
+     * su lote, y las deja como filas importadas para las métricas.
+     *
+     * @return El número de filas publicadas.
+     */
+    private int cancelada() {
+        filasLeidas = filasPublicadas;
+        updateMessage(String.format("Importación cancelada tras %,d filas; se conserva la agenda anterior", filasPublicadas));
+        return filasPublicadas;
+    }
+
+    @Override
+    protected void succeeded() {
+        anteriores = null;
+    }
+
+    @Override
+    protected void cancelled() {
+        restaurar();
+    }
+
+    @Override
+    protected void failed() {
+        restaurar();
+    }
+
+    /**
+     * Devuelve a la lista el contenido que tenía antes de la importación. Se llama en el hilo de JavaFX
+     * después de los lotes ya publicados: al fallar, porque se encolaron antes que el fallo, y al cancelar,
+     * porque los lotes que llegan después de la cancelación se descartan.
+     */
+    private void restaurar() {
+        if (anteriores != null) {
+            destino.setAll(anteriores);
+            anteriores = null;
+        }
+    }
+
+    /**
+     * Acumula las personas que salen del deduplicador y las publica en lotes de {@link #TAMANO_LOTE}.
+     * El primer lote reemplaza el contenido de la lista y los siguientes se añaden al final.
+     */
+    private final class Publicador implements PersonaCsv.ReceptorFila {
+
+        private List<Persona> lote = new ArrayList<>(TAMANO_LOTE);
+        private boolean primerLote = true;
+        private int filas;  // Personas publicadas o pendientes de publicar
+
+        @Override
+        public void recibir(String nombre, String apellido, int edad) throws IOException {
+            lote.add(new Persona(nombre, apellido, edad));
+            filas++;
+            if (lote.size() == TAMANO_LOTE) {
+                if (isCancelled()) {
+                    throw new InterruptedIOException("Importación cancelada");
+                }
+                publicarLote();
+            }
+        }
+
+        /**
+         * Publica un trozo ya formado, junto con lo que hubiera pendiente.
+         */
+        void publicar(List<Persona> personas) {
+            if (lote.isEmpty()) {
+                ImportarCsvTask.this.publicar(personas, primerLote);
+                primerLote = false;
+                filas += personas.size();
+            } else {
+                lote.addAll(personas);
+                filas += personas.size();
+                publicarLote();
+            }
+        }
+
+        /**
+         * Publica el lote pendiente. En el primer lote se publica aunque esté vacío, para limpiar la tabla.
+         */
+        void publicarLote() {
+            if (lote.isEmpty() && !primerLote) {
+                return;
+            }
+            ImportarCsvTask.this.publicar(lote, primerLote);
+            primerLote = false;
+            lote = new ArrayList<>(TAMANO_LOTE);
+        }
+    }
+
+    /**
+     * Publica un lote de personas en la lista destino desde el hilo de JavaFX.
+     *
+     * @param lote      Las personas a publicar.
+     * @param reemplazar {@code true} si el lote debe sustituir el contenido actual de la lista.
+     */
+    private void publicar(List<Persona> lote, boolean reemplazar) {
+        filasPublicadas = reemplazar ? lote.size() : filasPublicadas + lote.size();
+        Platform.runLater(() -> {
+            if (isCancelled()) {
+                return; // La lista ya ha recuperado su contenido anterior
+            }
+            if (reemplazar) {
+                anteriores = new ArrayList<>(destino);
+                destino.setAll(lote); // Un único evento de cambio en lugar de clear + add
+            } else {
+                destino.addAll(lote);
+            }
+        });
+    }
+
+    /**
+     * Actualiza el progreso y el mensaje con las filas importadas y la velocidad en filas por segundo.
+     */
+    private void actualizarEstado(int filas, long duplicadas, long leidos, long tamano, long inicio) {
+        filasLeidas = filas;
+        bytesLeidos = Math.min(leidos, tamano);
+        double segundos = Math.max(1e-9, (System.nanoTime() - inicio) / 1e9);
+        updateProgress(Math.min(leidos, tamano), tamano);
+        updateMessage(String.format("%,d filas importadas, %,d duplicadas descartadas (%,.0f filas/s)",
+                filas, duplicadas, (filas + duplicadas) / segundos));
+    }
+
+    /**
+     * Flujo de entrada que cuenta los bytes leídos del archivo para calcular el progreso.
+     * También lo usa {@link ImportarVariosCsvTask} para el progreso de cada archivo.
+     */
+    static final class ContadorEntrada extends FilterInputStream {
+
+        long leidos;  // Bytes leídos hasta el momento
+
+        ContadorEntrada(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                leidos++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                leidos += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.metricas.EventoImportacion;
+import eu.andreatt.ejerciciof_dein.metricas.Metricas;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Tarea en segundo plano que importa varios archivos CSV a la vez, por ejemplo uno por oficina,
+ * y añade sus personas a las que ya hay en la lista.
+ * <p>
+ * Cada archivo se lee y se analiza en su propio hilo virtual, así que la importación tarda poco más
+ * que el archivo más lento y no la suma de todos. Un archivo que no se puede leer o que tiene una
+ * línea mal formada no detiene a los demás: su error se anota en su {@link ResultadoArchivo} y sus
+ * filas no se importan. Al final las personas de los archivos correctos, en el orden en que se
+ * eligieron los archivos y sin las repetidas ni las que ya estaban en la lista, se añaden a la lista
+ * en un único cambio. La tarea devuelve el número de personas añadidas.
+ */
+public class ImportarVariosCsvTask extends Task<Integer> {
+
+    /**
+     * Resultado de la lectura de uno de los archivos.
+     *
+     * @param archivo El archivo.
+     * @param filas   Las filas leídas, o 0 si ha fallado.
+     * @param error   El motivo del fallo, o {@code null} si se ha leído entero.
+     */
+    public record ResultadoArchivo(File archivo, int filas, String error) {
+
+        /**
+         * Indica si el archivo no se ha podido importar.
+         *
+         * @return {@code true} si la lectura ha fallado.
+         */
+        public boolean fallido() {
+            return error != null;
+        }
+    }
+
+    private final List<File> archivos;  // Archivos CSV a importar, en el orden en que se fusionan
+    private final ObservableList<Persona> destino;  // Lista a la que se añaden las personas
+    private final Predicate<Persona> existente;  // Indica si una persona ya está en la lista destino
+    private final AtomicLong bytesLeidos = new AtomicLong();  // Bytes leídos entre todos los archivos
+    private final AtomicInteger archivosTerminados = new AtomicInteger();  // Archivos leídos o fallidos
+    private final AtomicInteger archivosFallidos = new AtomicInteger();  // Archivos con error
+    private volatile List<ResultadoArchivo> resultados = List.of();  // Resultado de cada archivo al terminar
+    private long bytesTotales;  // Suma de los tamaños de los archivos
+
+    /**
+     * Crea la tarea de importación.
+     *
+     * @param archivos  Los archivos CSV a importar.
+     * @param destino   La lista a la que se añadirán las personas de los archivos.
+     * @param existente Indica si una persona ya está en la lista; se evalúa en el hilo de JavaFX.
+     */
+    public ImportarVariosCsvTask(List<File> archivos, ObservableList<Persona> destino, Predicate<Persona> existente) {
+        this.archivos = List.copyOf(archivos);
+        this.destino = destino;
+        this.existente = existente;
+    }
+
+    /**
+     * Devuelve el resultado de cada archivo, en el orden en que se eligieron.
+     *
+     * @return Los resultados, o una lista vacía si la tarea no ha terminado.
+     */
+    public List<ResultadoArchivo> getResultados() {
+        return resultados;
+    }
+
+    /**
+     * Lee todos los archivos en paralelo, descarta las filas repetidas y añade las demás a la lista.
+     *
+     * @return El número de personas añadidas a la lista.
+     * @throws Exception Si la tarea se interrumpe mientras espera a la lista.
+     */
+    @Override
+    protected Integer call() throws Exception {
+        for (File archivo : archivos) {
+            bytesTotales += archivo.length();
+        }
+        bytesTotales = Math.max(1, bytesTotales);
+        long inicio = System.nanoTime();
+
+        List<Future<List<Persona>>> lecturas = new ArrayList<>(archivos.size());
+        List<ResultadoArchivo> terminados = new ArrayList<>(archivos.size());
+        List<List<Persona>> leidas = new ArrayList<>(archivos.size());
+        // Al cerrar el ejecutor se espera a que terminen todos los hilos, también si alguno falla
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (File archivo : archivos) {
+                lecturas.add(hilos.submit(() -> leer(archivo)));
+            }
+            for (int i = 0; i < archivos.size(); i++) {
+                try {
+                    List<Persona> personas = lecturas.get(i).get();
+                    leidas.add(personas);
+                    terminados.add(new ResultadoArchivo(archivos.get(i), personas.size(), null));
+                } catch (ExecutionException e) {
+                    Throwable causa = e.getCause();
+                    leidas.add(List.of());
+                    terminados.add(new ResultadoArchivo(archivos.get(i), 0,
+                            causa.getMessage() != null ? causa.getMessage() : causa.toString()));
+                }
+            }
+        }
+        resultados = List.copyOf(terminados);
+        if (isCancelled()) {
+            updateMessage("Importación cancelada");
+            return 0;
+        }
+
+        // Fusión en el orden de los archivos: la primera aparición de cada persona es la que se conserva
+        List<Persona> nuevas = new ArrayList<>();
+        long duplicadas;
+        try (Deduplicador deduplicador = new Deduplicador((nombre, apellido, edad) -> nuevas.add(new Persona(nombre, apellido, edad)))) {
+            for (List<Persona> personas : leidas) {
+                for (Persona persona : personas) {
+                    if (deduplicador.admitir(persona.getNombre(), persona.getApellido(), persona.getEdad())) {
+                        nuevas.add(persona);
+                    }
+                }
+            }
+            deduplicador.terminar();
+            duplicadas = deduplicador.duplicadas();
+        }
+        leidas.clear();
+
+        // Un único cambio de lista, tras descartar las personas que ya estaban en la tabla. Si la tarea se
+        // cancela mientras la fusión espera su turno en el hilo de JavaFX, la fusión ya no añade nada.
+        FutureTask<Integer> fusion = new FutureTask<>(() -> {
+            if (isCancelled()) {
+                return 0;
+            }
+            int antes = nuevas.size();
+            nuevas.removeIf(existente);
+            destino.addAll(nuevas);
+            return antes - nuevas.size();
+        });
+        Platform.runLater(fusion);
+        try {
+            duplicadas += fusion.get();
+        } catch (InterruptedException e) {
+            fusion.cancel(false); // Cancelada la tarea: si la fusión no ha empezado, ya no se ejecuta
+            throw e;
+        }
+
+        double segundos = Math.max(1e-9, (System.nanoTime() - inicio) / 1e9);
+        updateProgress(bytesTotales, bytesTotales);
+        updateMessage(String.format("%,d filas añadidas de %d archivos, %,d duplicadas descartadas, %d archivos con errores (%,.0f filas/s)",
+                nuevas.size(), archivos.size(), duplicadas, archivosFallidos.get(), (nuevas.size() + duplicadas) / segundos));
+        return nuevas.size();
+    }
+
+    /**
+     * Lee un archivo en el hilo virtual que lo tiene asignado y registra su importación en las métricas.
+     * Los archivos grandes se analizan además por trozos con {@link LectorCsvParalelo}, salvo los comprimidos,
+     * que se descomprimen a medida que se leen.
+     *
+     * @param archivo El archivo CSV.
+     * @return Las personas del archivo, en su orden.
+     * @throws IOException Si no se puede leer el archivo, alguna línea está mal formada o se cancela la tarea.
+     */
+    private List<Persona> leer(File archivo) throws IOException {
+        EventoImportacion evento = new EventoImportacion();
+        evento.iniciar();
+        List<Persona> personas = new ArrayList<>();
+        long[] leidos = {0};  // Bytes de este archivo ya sumados al progreso
+        boolean correcto = false;
+        try {
+            if (archivo.length() >= ImportarCsvTask.UMBRAL_PARALELO && !PersonaCsv.comprimido(archivo.toPath())) {
+                new LectorCsvParalelo().leer(archivo.toPath(), (trozo, bytesHasta) -> {
+                    if (isCancelled()) {
+                        return false;
+                    }
+                    personas.addAll(trozo);
+                    avanzar(bytesHasta - leidos[0]);
+                    leidos[0] = bytesHasta;
+                    return true;
+                });
+            } else {
+                try (ImportarCsvTask.ContadorEntrada contador = new ImportarCsvTask.ContadorEntrada(new FileInputStream(archivo));
+                     BufferedReader reader = new BufferedReader(new InputStreamReader(
+                             PersonaCsv.descomprimir(archivo.toPath(), contador), StandardCharsets.UTF_8), 1 << 16)) {
+                    PersonaCsv.leer(reader, (nombre, apellido, edad) -> {
+                        personas.add(new Persona(nombre, apellido, edad));
+                        if (personas.size() % ImportarCsvTask.INTERVALO_PROGRESO == 0) {
+                            if (isCancelled()) {
+                                throw new InterruptedIOException("Importación cancelada");
+                            }
+                            avanzar(contador.leidos - leidos[0]);
+                            leidos[0] = contador.leidos;
+                        }
+                    });
+                }
+            }
+            correcto = !isCancelled();
+        } finally {
+            avanzar(archivo.length() - leidos[0]);  // El archivo cuenta como leído aunque haya fallado
+            Metricas.registrarImportacion(evento, archivo.getName(), personas.size(),
+                    correcto ? archivo.length() : leidos[0], isCancelled());
+            terminarArchivo(archivo, personas.size(), correcto);
+        }
+        return personas;
+    }
+
+    /**
+     * Suma bytes leídos al progreso de la tarea. Se llama desde los hilos de lectura.
+     */
+    private void avanzar(long bytes) {
+        updateProgress(bytesLeidos.addAndGet(bytes), bytesTotales);
+    }
+
+    /**
+     * Anota que un archivo ha terminado, bien o mal, y lo indica en el mensaje de la tarea.
+     */
+    private void terminarArchivo(File archivo, int filas, boolean correcto) {
+        if (!correcto && !isCancelled()) {
+            archivosFallidos.incrementAndGet();
+        }
+        int terminados = archivosTerminados.incrementAndGet();
+        updateMessage(correcto
+                ? String.format("%s: %,d filas leídas (%d de %d archivos)", archivo.getName(), filas, terminados, archivos.size())
+                : String.format("%s: error (%d de %d archivos)", archivo.getName(), terminados, archivos.size()));
+    }
+}
@@ -0,0 +1,304 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lector de CSV de personas que reparte el archivo entre todos los núcleos.
+ * El archivo se divide en trozos que empiezan y terminan en un salto de línea; cada trozo se
+ * proyecta en memoria y se analiza en un {@code ForkJoinPool}. Los trozos se entregan en el orden
+ * del archivo a medida que terminan, así que el resultado es el mismo que al leerlo línea a línea.
+ * Cada trozo cuenta sus líneas, de modo que una línea mal formada se señala con su número de línea
+ * y el mismo mensaje que da {@link PersonaCsv#parsear(String, long)}.
+ */
+public final class LectorCsvParalelo {
+
+    /** Tamaño aproximado de cada trozo que analiza un hilo. */
+    public static final int TAMANO_TROZO = 16 << 20;
+
+    /** Valor que devuelve {@link #entero} cuando el campo no es un entero; queda fuera del rango de {@code int}. */
+    private static final long EDAD_NO_VALIDA = Long.MIN_VALUE;
+
+    /**
+     * Recibe los trozos analizados en el orden del archivo.
+     */
+    @FunctionalInterface
+    public interface Receptor {
+
+        /**
+         * Recibe las personas de un trozo.
+         *
+         * @param personas   Las personas del trozo, en el orden del archivo.
+         * @param bytesHasta La posición del archivo hasta la que se ha leído.
+         * @return {@code false} para dejar de leer (por ejemplo, si se ha cancelado la importación).
+         * @throws IOException Si el receptor no puede procesar el trozo; la lectura se detiene.
+         */
+        boolean recibir(List<Persona> personas, long bytesHasta) throws IOException;
+    }
+
+    /**
+     * Personas de un trozo y número de líneas que contiene, vacías incluidas.
+     */
+    private record Trozo(List<Persona> personas, int lineas) {
+    }
+
+    /**
+     * Error de una línea de un trozo, que solo conoce su posición dentro del trozo. El hilo que recibe
+     * los trozos lo convierte en el mensaje con el número de línea del archivo.
+     */
+    private static final class LineaMalFormada extends IOException {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int lineaEnTrozo;  // Número de la línea dentro del trozo, empezando por 1
+        private final String linea;  // Texto de la línea, sin el salto de línea
+
+        LineaMalFormada(int lineaEnTrozo, String linea) {
+            super("Línea " + lineaEnTrozo + " del trozo mal formada: " + linea);
+            this.lineaEnTrozo = lineaEnTrozo;
+            this.linea = linea;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Crea un lector que usa el pool común de fork-join.
+     */
+    public LectorCsvParalelo() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Crea un lector que analiza los trozos en el pool indicado.
+     *
+     * @param pool El pool donde se analizan los trozos.
+     */
+    public LectorCsvParalelo(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Lee el archivo (omitiendo el encabezado) y entrega sus personas al receptor trozo a trozo.
+     *
+     * @param archivo  El archivo CSV.
+     * @param receptor El receptor de los trozos, que se llama siempre desde el hilo que invoca este método.
+     * @return El número de personas leídas.
+     * @throws IOException Si no se puede leer el archivo o alguna línea está mal formada.
+     */
+    public long leer(Path archivo, Receptor receptor) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long[] limites = limites(canal);
+            List<ForkJoinTask<Trozo>> trozos = new ArrayList<>(limites.length - 1);
+            for (int i = 0; i + 1 < limites.length; i++) {
+                long inicio = limites[i];
+                long fin = limites[i + 1];
+                trozos.add(pool.submit(() -> analizar(canal, inicio, fin)));
+            }
+
+            long total = 0;
+            long lineasAntes = 1; // El encabezado es la línea 1
+            try {
+                for (int i = 0; i < trozos.size(); i++) {
+                    Trozo trozo;
+                    try {
+                        trozo = trozos.get(i).get();
+                    } catch (ExecutionException e) {
+                        if (causa(e) instanceof LineaMalFormada mal) {
+                            throw errorDeLinea(mal, lineasAntes + mal.lineaEnTrozo);
+                        }
+                        throw e;
+                    }
+                    total += trozo.personas().size();
+                    lineasAntes += trozo.lineas();
+                    if (!receptor.recibir(trozo.personas(), limites[i + 1])) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Lectura interrumpida", e);
+            } catch (ExecutionException e) {
+                Throwable causa = causa(e);
+                if (causa instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException(causa);
+            } finally {
+                for (ForkJoinTask<Trozo> trozo : trozos) {
+                    trozo.cancel(false); // Los trozos que aún no han empezado ya no hacen falta
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Obtiene la excepción que lanzó un trozo. El pool envuelve las excepciones comprobadas en RuntimeException.
+     */
+    private static Throwable causa(ExecutionException e) {
+        Throwable causa = e.getCause();
+        while (causa instanceof RuntimeException && causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        return causa;
+    }
+
+    /**
+     * Crea el error de una línea mal formada con el mismo mensaje que la lectura línea a línea.
+     *
+     * @param mal      El error del trozo.
+     * @param numLinea El número de la línea en el archivo.
+     * @return El error para quien lee el archivo.
+     */
+    private static IOException errorDeLinea(LineaMalFormada mal, long numLinea) {
+        try {
+            PersonaCsv.parsear(mal.linea, numLinea);
+        } catch (IOException e) {
+            return e;
+        }
+        return new IOException("Línea " + numLinea + " mal formada: " + mal.linea); // Rechazada solo por el lector rápido
+    }
+
+    /**
+     * Calcula los límites de los trozos: el primero empieza después del encabezado y cada uno
+     * termina justo después de un salto de línea.
+     */
+    private static long[] limites(FileChannel canal) throws IOException {
+        long tamano = canal.size();
+        List<Long> limites = new ArrayList<>();
+        long inicio = siguienteLinea(canal, 0, tamano); // Saltar el encabezado
+        limites.add(inicio);
+        while (inicio < tamano) {
+            long fin = inicio + TAMANO_TROZO >= tamano ? tamano : siguienteLinea(canal, inicio + TAMANO_TROZO, tamano);
+            limites.add(fin);
+            inicio = fin;
+        }
+        return limites.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Devuelve la posición siguiente al primer salto de línea a partir de {@code desde}, o el final del archivo.
+     */
+    private static long siguienteLinea(FileChannel canal, long desde, long tamano) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = desde;
+        while (pos < tamano) {
+            buffer.clear();
+            int leidos = canal.read(buffer, pos);
+            if (leidos <= 0) {
+                break;
+            }
+            for (int i = 0; i < leidos; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += leidos;
+        }
+        return tamano;
+    }
+
+    /**
+     * Analiza las líneas de un trozo proyectado en memoria.
+     *
+     * @throws LineaMalFormada Si alguna línea no tiene tres campos o la edad no es un número válido.
+     */
+    private static Trozo analizar(FileChannel canal, long inicio, long fin) throws IOException {
+        MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+        int limite = buffer.limit();
+        List<Persona> personas = new ArrayList<>(limite / 24);
+        byte[] campo = new byte[256];
+
+        int lineas = 0;
+        int linea = 0;
+        while (linea < limite) {
+            lineas++;
+            // Localizar el final de la línea y las dos primeras comas
+            int finLinea = linea;
+            int coma1 = -1;
+            int coma2 = -1;
+            int coma3 = -1;
+            byte b;
+            while (finLinea < limite && (b = buffer.get(finLinea)) != '\n') {
+                if (b == ',') {
+                    if (coma1 < 0) {
+                        coma1 = finLinea;
+                    } else if (coma2 < 0) {
+                        coma2 = finLinea;
+                    } else if (coma3 < 0) {
+                        coma3 = finLinea;
+                    }
+                }
+                finLinea++;
+            }
+            int finTexto = finLinea > linea && buffer.get(finLinea - 1) == '\r' ? finLinea - 1 : finLinea;
+
+            if (finTexto > linea) { // Las líneas vacías no describen a ninguna persona
+                if (campo.length < finTexto - linea) {
+                    campo = new byte[finTexto - linea];
+                }
+                long edad = coma2 < 0 ? EDAD_NO_VALIDA : entero(buffer, coma2 + 1, coma3 < 0 ? finTexto : coma3);
+                if (edad == EDAD_NO_VALIDA) {
+                    throw new LineaMalFormada(lineas, texto(buffer, linea, finTexto, campo));
+                }
+                String nombre = texto(buffer, linea, coma1, campo);
+                String apellido = texto(buffer, coma1 + 1, coma2, campo);
+                personas.add(new Persona(nombre, apellido, (int) edad));
+            }
+            linea = finLinea + 1;
+        }
+        return new Trozo(personas, lineas);
+    }
+
+    /**
+     * Decodifica como UTF-8 los bytes de un campo, copiándolos antes a un array auxiliar.
+     */
+    private static String texto(MappedByteBuffer buffer, int desde, int hasta, byte[] campo) {
+        int len = hasta - desde;
+        byte[] destino = len <= campo.length ? campo : new byte[len];
+        buffer.get(desde, destino, 0, len);
+        return new String(destino, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convierte los bytes de un campo en un entero con las mismas reglas que {@code Integer.parseInt}.
+     *
+     * @return El entero, o {@link #EDAD_NO_VALIDA} si el campo no es un número válido.
+     */
+    private static long entero(MappedByteBuffer buffer, int desde, int hasta) {
+        int i = desde;
+        boolean negativo = false;
+        if (i < hasta && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negativo = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == hasta || hasta - i > 10) {
+            return EDAD_NO_VALIDA;
+        }
+        long valor = 0;
+        for (; i < hasta; i++) {
+            int digito = buffer.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return EDAD_NO_VALIDA;
+            }
+            valor = valor * 10 + digito;
+        }
+        valor = negativo ? -valor : valor;
+        return valor < Integer.MIN_VALUE || valor > Integer.MAX_VALUE ? EDAD_NO_VALIDA : valor;
+    }
+}
@@ -0,0 +1,312 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.concurrent.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lista de solo lectura con las personas de un archivo CSV que puede ser mayor que la memoria.
+ * <p>
+ * El archivo no se carga: una {@link #indexar() pasada rápida} anota dónde empieza cada página de
+ * {@link #FILAS_PAGINA} filas, y solo se leen y analizan las páginas que se piden, normalmente las
+ * filas que la tabla tiene a la vista. Las últimas {@link #PAGINAS_EN_MEMORIA} páginas usadas se
+ * conservan y las demás se descartan, así que la memoria no depende del tamaño del archivo salvo por
+ * el índice, que ocupa ocho bytes por página. La lista crece a medida que avanza la indexación, de modo
+ * que la tabla muestra las primeras filas en cuanto se han recorrido.
+ * <p>
+ * Igual que al importar, se salta el encabezado y las líneas vacías. Una línea mal formada se muestra
+ * como una persona con el texto de la línea y edad 0. El archivo no debe cambiar mientras está abierto.
+ * La lista solo se usa desde el hilo de JavaFX.
+ */
+public final class ListaCsvPaginada extends ObservableListBase<Persona> implements Closeable {
+
+    /** Filas de cada página, que se leen y se descartan juntas. */
+    public static final int FILAS_PAGINA = 256;
+
+    /** Páginas que se conservan en memoria. */
+    public static final int PAGINAS_EN_MEMORIA = 64;
+
+    /** Bytes que se leen de una vez del archivo. */
+    private static final int TAMANO_LECTURA = 1 << 20;
+
+    /** Intervalo mínimo entre dos publicaciones de páginas indexadas, para no saturar el hilo de JavaFX. */
+    private static final long INTERVALO_PUBLICACION_NS = 100_000_000L;
+
+    private final Path archivo;  // Archivo CSV que se muestra
+    private final FileChannel canal;  // Canal para leer las páginas, solo desde el hilo de JavaFX
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 14);  // Buffer reutilizado al leer una página
+    private final Map<Integer, Persona[]> paginas = new LinkedHashMap<>(PAGINAS_EN_MEMORIA * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Persona[]> masAntigua) {
+            return size() > PAGINAS_EN_MEMORIA;
+        }
+    };  // Páginas leídas, de la menos a la más usada recientemente
+    private long[] inicios = new long[1024];  // Posición en el archivo de la primera fila de cada página
+    private int paginasIndexadas;  // Páginas cuyo inicio ya se conoce
+    private int tamano;  // Filas visibles: las de las páginas completas, o todas al terminar la indexación
+    private Indexacion indexacion;  // Indexación en curso o terminada, o null si no se ha empezado
+    private boolean cerrada;
+
+    /**
+     * Abre el archivo. La lista está vacía hasta que se ejecuta la tarea de {@link #indexar()}.
+     *
+     * @param archivo El archivo CSV.
+     * @throws IOException Si no se puede abrir el archivo.
+     */
+    public ListaCsvPaginada(Path archivo) throws IOException {
+        this.archivo = archivo;
+        this.canal = FileChannel.open(archivo, StandardOpenOption.READ);
+    }
+
+    /**
+     * Obtiene el archivo que muestra la lista.
+     *
+     * @return El archivo.
+     */
+    public Path getArchivo() {
+        return archivo;
+    }
+
+    /**
+     * Crea la tarea que recorre el archivo una vez para localizar las páginas. Las páginas se añaden a la
+     * lista, desde el hilo de JavaFX, a medida que se encuentran. Si se cancela, la lista se queda con las
+     * filas indexadas hasta entonces. La tarea devuelve el número de filas del archivo.
+     *
+     * @return La tarea, que solo puede ejecutarse una vez.
+     */
+    public Task<Integer> indexar() {
+        if (indexacion != null) {
+            throw new IllegalStateException("El archivo ya se ha indexado");
+        }
+        indexacion = new Indexacion();
+        return indexacion;
+    }
+
+    /**
+     * Cancela la indexación si sigue en curso y cierra el archivo. Las filas que ya se han leído siguen
+     * disponibles, pero pedir otras provoca un error.
+     *
+     * @throws IOException Si no se puede cerrar el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        cerrada = true;
+        if (indexacion != null) {
+            indexacion.cancel();
+        }
+        canal.close();
+    }
+
+    @Override
+    public Persona get(int index) {
+        Objects.checkIndex(index, tamano);
+        int pagina = index / FILAS_PAGINA;
+        Persona[] personas = paginas.get(pagina);
+        if (personas == null) {
+            try {
+                personas = leerPagina(pagina);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se puede leer " + archivo.getFileName(), e);
+            }
+            paginas.put(pagina, personas);
+        }
+        return personas[index % FILAS_PAGINA];
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    /**
+     * Añade a la lista las páginas encontradas por la indexación. Se llama en el hilo de JavaFX.
+     *
+     * @param nuevos  La posición de la primera fila de cada página nueva.
+     * @param n       El número de páginas nuevas.
+     * @param visibles El número total de filas que ya se pueden mostrar.
+     */
+    private void publicar(long[] nuevos, int n, int visibles) {
+        if (cerrada) {
+            return;
+        }
+        if (paginasIndexadas + n > inicios.length) {
+            inicios = Arrays.copyOf(inicios, Math.max(paginasIndexadas + n, inicios.length * 2));
+        }
+        System.arraycopy(nuevos, 0, inicios, paginasIndexadas, n);
+        paginasIndexadas += n;
+        if (visibles > tamano) {
+            int antes = tamano;
+            tamano = visibles;
+            beginChange();
+            nextAdd(antes, tamano);
+            endChange();
+        }
+    }
+
+    /**
+     * Lee y analiza las filas de una página a partir de su posición en el archivo.
+     */
+    private Persona[] leerPagina(int pagina) throws IOException {
+        int n = Math.min(FILAS_PAGINA, tamano - pagina * FILAS_PAGINA);
+        Persona[] personas = new Persona[n];
+        long primeraFila = (long) pagina * FILAS_PAGINA;
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(128);
+        long posicion = inicios[pagina];
+        int leidas = 0;
+        while (leidas < n) {
+            buffer.clear();
+            int r = canal.read(buffer, posicion);
+            if (r < 0) {
+                if (linea.size() > 0 && analizar(linea, personas, leidas, primeraFila)) {
+                    leidas++; // Última línea sin salto de línea
+                }
+                break;
+            }
+            byte[] datos = buffer.array();
+            int inicio = 0;
+            for (int i = 0; i < r && leidas < n; i++) {
+                if (datos[i] == '\n') {
+                    linea.write(datos, inicio, i - inicio);
+                    inicio = i + 1;
+                    if (analizar(linea, personas, leidas, primeraFila)) {
+                        leidas++;
+                    }
+                    linea.reset();
+                }
+            }
+            if (leidas < n) {
+                linea.write(datos, inicio, r - inicio);
+            }
+            posicion += r;
+        }
+        if (leidas < n) {
+            throw new IOException("El archivo ha cambiado desde que se abrió");
+        }
+        return personas;
+    }
+
+    /**
+     * Analiza una línea de la página y la guarda en la posición indicada, salvo que esté vacía.
+     *
+     * @return {@code true} si la línea era una fila; {@code false} si estaba vacía.
+     */
+    private static boolean analizar(ByteArrayOutputStream bytes, Persona[] personas, int posicion, long primeraFila) {
+        String linea = bytes.toString(StandardCharsets.UTF_8);
+        if (linea.endsWith("\r")) {
+            linea = linea.substring(0, linea.length() - 1);
+        }
+        if (linea.isEmpty()) {
+            return false;
+        }
+        long fila = primeraFila + posicion + 1;
+        try {
+            personas[posicion] = PersonaCsv.parsear(linea, fila);
+        } catch (IOException e) {
+            personas[posicion] = new Persona(linea, "(fila " + fila + " mal formada)", 0);
+        }
+        return true;
+    }
+
+    /**
+     * Recorre el archivo una vez, contando las filas y anotando dónde empieza cada página, sin analizarlas.
+     */
+    private final class Indexacion extends Task<Integer> {
+
+        private long[] pendientes = new long[1024];  // Inicios de página encontrados y todavía sin publicar
+        private int numPendientes;
+        private long ultimaPublicacion;  // Instante de la última publicación
+
+        @Override
+        protected Integer call() throws IOException {
+            long inicioIndexacion = System.nanoTime();
+            long filas = 0;
+            try (FileChannel lector = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                long tamanoArchivo = Math.max(1, lector.size());
+                ByteBuffer datos = ByteBuffer.allocateDirect(TAMANO_LECTURA);
+                long posicion = 0;
+                long inicioLinea = 0;
+                boolean encabezado = true;
+                boolean lineaVacia = true;  // La línea actual solo tiene, como mucho, un retorno de carro
+                int leidos;
+                while ((leidos = lector.read(datos)) >= 0) {
+                    datos.flip();
+                    for (int i = 0; i < leidos; i++) {
+                        byte b = datos.get(i);
+                        if (b == '\n') {
+                            if (encabezado) {
+                                encabezado = false;
+                            } else if (!lineaVacia && filas < Integer.MAX_VALUE) {
+                                anotar(filas++, inicioLinea);
+                            }
+                            inicioLinea = posicion + i + 1;
+                            lineaVacia = true;
+                        } else if (b != '\r') {
+                            lineaVacia = false;
+                        }
+                    }
+                    posicion += leidos;
+                    datos.clear();
+                    if (isCancelled()) {
+                        publicarPendientes((int) (filas / FILAS_PAGINA * FILAS_PAGINA));
+                        updateMessage(String.format("Indexación cancelada: se muestran las primeras %,d filas",
+                                filas / FILAS_PAGINA * FILAS_PAGINA));
+                        return (int) filas;
+                    }
+                    if (ultimaPublicacion == 0 || System.nanoTime() - ultimaPublicacion > INTERVALO_PUBLICACION_NS) {
+                        // Solo se muestran las páginas completas, porque las incompletas aún pueden crecer
+                        publicarPendientes((int) (filas / FILAS_PAGINA * FILAS_PAGINA));
+                        updateProgress(posicion, tamanoArchivo);
+                        updateMessage(String.format("%,d filas indexadas", filas));
+                    }
+                }
+                if (!encabezado && !lineaVacia && filas < Integer.MAX_VALUE) {
+                    anotar(filas++, inicioLinea); // Última línea sin salto de línea
+                }
+                publicarPendientes((int) filas);
+                double segundos = Math.max(1e-9, (System.nanoTime() - inicioIndexacion) / 1e9);
+                updateProgress(tamanoArchivo, tamanoArchivo);
+                updateMessage(String.format("%s: %,d filas indexadas en %,.1f s; solo se leen las que se muestran",
+                        archivo.getFileName(), filas, segundos));
+            }
+            return (int) filas;
+        }
+
+        /**
+         * Anota el inicio de la fila si es la primera de una página.
+         */
+        private void anotar(long fila, long inicio) {
+            if (fila % FILAS_PAGINA != 0) {
+                return;
+            }
+            if (numPendientes == pendientes.length) {
+                pendientes = Arrays.copyOf(pendientes, pendientes.length * 2);
+            }
+            pendientes[numPendientes++] = inicio;
+        }
+
+        /**
+         * Entrega a la lista los inicios de página pendientes junto con las filas que ya se pueden mostrar.
+         */
+        private void publicarPendientes(int visibles) {
+            long[] nuevos = Arrays.copyOf(pendientes, numPendientes);
+            numPendientes = 0;
+            ultimaPublicacion = System.nanoTime();
+            Platform.runLater(() -> publicar(nuevos, nuevos.length, visibles));
+        }
+    }
+}
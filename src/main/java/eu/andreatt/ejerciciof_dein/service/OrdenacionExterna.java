@@ -0,0 +1,367 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.OrdenPersonas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * La clase {@code OrdenacionExterna} ordena filas de personas que pueden no caber en memoria.
+ * <p>
+ * Las filas se acumulan hasta llenar el presupuesto de memoria; entonces se ordenan con
+ * {@link OrdenPersonas} y se vuelcan a un tramo ordenado en un archivo temporal. Al
+ * {@linkplain #terminar() terminar}, los tramos se mezclan de {@value #MAX_TRAMOS_MEZCLA} en
+ * {@value #MAX_TRAMOS_MEZCLA} con una cola de prioridad hasta entregar todas las filas ordenadas.
+ * Si todas caben en memoria no se toca el disco. Cada tramo guarda junto a los nombres y apellidos
+ * sus claves de colación, de modo que al mezclar se comparan bytes y no hace falta el {@code Collator}.
+ * Las filas iguales según el orden conservan el orden en que se recibieron.
+ */
+public final class OrdenacionExterna implements PersonaCsv.ReceptorFila, Closeable {
+
+    /** Número máximo de tramos que se mezclan a la vez. */
+    static final int MAX_TRAMOS_MEZCLA = 128;
+
+    /** Bytes aproximados que ocupa cada fila en memoria, sin contar los caracteres. */
+    private static final int BYTES_POR_FILA = 112;
+
+    /** Presupuesto mínimo, para no crear un tramo por cada pocas filas. */
+    private static final long PRESUPUESTO_MINIMO = 1L << 20;
+
+    /** Búfer de cada archivo temporal abierto a la vez. */
+    private static final int BUFER = 1 << 14;
+
+    private final OrdenPersonas orden;
+    private final PersonaCsv.ReceptorFila salida;  // Receptor de las filas ordenadas
+    private final long presupuesto;  // Memoria máxima estimada para las filas acumuladas, en bytes
+    private final Path directorio;  // Directorio donde se crean los archivos temporales
+    private final List<Path> tramos = new ArrayList<>();  // Tramos ordenados ya volcados, en orden de creación
+    private String[] nombres = new String[1024];
+    private String[] apellidos = new String[1024];
+    private int[] edades = new int[1024];
+    private int filas;  // Filas acumuladas en memoria
+    private long memoria;  // Memoria estimada de las filas acumuladas
+    private Path temporal;  // Directorio de los archivos temporales, o null si no se ha volcado nada
+    private boolean terminada;
+
+    /**
+     * Crea una ordenación que usa como mucho una octava parte de la memoria máxima de la JVM
+     * y el directorio temporal del sistema.
+     *
+     * @param orden  El orden de las filas.
+     * @param salida El receptor de las filas ordenadas.
+     */
+    public OrdenacionExterna(OrdenPersonas orden, PersonaCsv.ReceptorFila salida) {
+        this(orden, salida, Runtime.getRuntime().maxMemory() / 8, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Crea una ordenación.
+     *
+     * @param orden       El orden de las filas.
+     * @param salida      El receptor de las filas ordenadas.
+     * @param presupuesto La memoria aproximada, en bytes, que pueden ocupar las filas antes de volcarlas a disco.
+     *                    Por debajo de 1 MiB se usa 1 MiB.
+     * @param directorio  El directorio donde crear los archivos temporales.
+     */
+    public OrdenacionExterna(OrdenPersonas orden, PersonaCsv.ReceptorFila salida, long presupuesto, Path directorio) {
+        this.orden = orden;
+        this.salida = salida;
+        this.presupuesto = Math.max(presupuesto, PRESUPUESTO_MINIMO);
+        this.directorio = directorio;
+    }
+
+    /**
+     * Acumula una fila y, si se llena el presupuesto, vuelca las acumuladas a un tramo ordenado.
+     *
+     * @param nombre   El nombre.
+     * @param apellido El apellido.
+     * @param edad     La edad.
+     * @throws IOException Si no se puede escribir el tramo.
+     */
+    @Override
+    public void recibir(String nombre, String apellido, int edad) throws IOException {
+        if (terminada) {
+            throw new IllegalStateException("La ordenación ya ha terminado");
+        }
+        if (filas == edades.length) {
+            int capacidad = filas + (filas >> 1);
+            nombres = Arrays.copyOf(nombres, capacidad);
+            apellidos = Arrays.copyOf(apellidos, capacidad);
+            edades = Arrays.copyOf(edades, capacidad);
+        }
+        nombres[filas] = nombre;
+        apellidos[filas] = apellido;
+        edades[filas++] = edad;
+        memoria += BYTES_POR_FILA + nombre.length() + apellido.length();
+        if (memoria > presupuesto) {
+            volcar();
+        }
+    }
+
+    /**
+     * Entrega todas las filas recibidas a la salida, ordenadas.
+     *
+     * @throws IOException Si no se pueden leer o escribir los tramos, o la salida falla.
+     */
+    public void terminar() throws IOException {
+        if (terminada) {
+            return;
+        }
+        terminada = true;
+        if (tramos.isEmpty()) {
+            // Todo cabe en memoria: se ordena y se entrega sin pasar por disco
+            int[] posiciones = orden.ordenar(filas, i -> nombres[i], i -> apellidos[i], i -> edades[i]);
+            for (int i : posiciones) {
+                salida.recibir(nombres[i], apellidos[i], edades[i]);
+            }
+            liberar();
+            return;
+        }
+        if (filas > 0) {
+            volcar();
+        }
+        liberar();
+
+        // Se mezclan grupos de tramos consecutivos, para que las filas iguales sigan en el orden recibido
+        List<Path> pendientes = new ArrayList<>(tramos);
+        while (pendientes.size() > MAX_TRAMOS_MEZCLA) {
+            List<Path> mezclados = new ArrayList<>();
+            for (int i = 0; i < pendientes.size(); i += MAX_TRAMOS_MEZCLA) {
+                List<Path> grupo = pendientes.subList(i, Math.min(pendientes.size(), i + MAX_TRAMOS_MEZCLA));
+                Path destino = Files.createTempFile(temporal, "m", ".tmp");
+                try (DataOutputStream out = abrirEscritura(destino)) {
+                    mezclar(grupo, fila -> fila.escribir(out));
+                }
+                mezclados.add(destino);
+            }
+            pendientes = mezclados;
+        }
+        mezclar(pendientes, fila -> salida.recibir(fila.nombre, fila.apellido, fila.edad));
+    }
+
+    /**
+     * Borra los archivos temporales. Si se cierra antes de terminar, las filas recibidas se pierden.
+     *
+     * @throws IOException Si no se pueden borrar los archivos temporales.
+     */
+    @Override
+    public void close() throws IOException {
+        terminada = true;
+        liberar();
+        if (temporal != null) {
+            try (Stream<Path> archivos = Files.list(temporal)) {
+                for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                    Files.deleteIfExists(archivo);
+                }
+            }
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Ordena las filas acumuladas y las escribe en un tramo nuevo. Las claves de colación se calculan
+     * una sola vez por cada texto distinto del tramo.
+     */
+    private void volcar() throws IOException {
+        if (temporal == null) {
+            temporal = Files.createTempDirectory(directorio, "orden-");
+        }
+        int[] posiciones = orden.ordenar(filas, i -> nombres[i], i -> apellidos[i], i -> edades[i]);
+        Map<String, byte[]> claves = new HashMap<>();
+        Path tramo = Files.createTempFile(temporal, "t", ".tmp");
+        try (DataOutputStream out = abrirEscritura(tramo)) {
+            for (int i : posiciones) {
+                Fila fila = new Fila(nombres[i], apellidos[i], edades[i]);
+                for (OrdenPersonas.Criterio criterio : orden.criterios()) {
+                    switch (criterio.campo()) {
+                        case NOMBRE -> fila.claves.add(claves.computeIfAbsent(fila.nombre, orden::clave));
+                        case APELLIDO -> fila.claves.add(claves.computeIfAbsent(fila.apellido, orden::clave));
+                        case EDAD -> { }
+                    }
+                }
+                fila.escribir(out);
+            }
+        }
+        tramos.add(tramo);
+        Arrays.fill(nombres, 0, filas, null);
+        Arrays.fill(apellidos, 0, filas, null);
+        filas = 0;
+        memoria = 0;
+    }
+
+    private void liberar() {
+        nombres = new String[0];
+        apellidos = new String[0];
+        edades = new int[0];
+        filas = 0;
+    }
+
+    /**
+     * Mezcla tramos ordenados con una cola de prioridad y borra cada tramo al agotarlo. A igualdad
+     * de claves sale antes la fila del tramo anterior, que es la que se recibió antes.
+     */
+    private void mezclar(List<Path> archivos, ReceptorTramo receptor) throws IOException {
+        PriorityQueue<Cabeza> cola = new PriorityQueue<>(Math.max(1, archivos.size()), this::comparar);
+        try {
+            for (int t = 0; t < archivos.size(); t++) {
+                Cabeza cabeza = new Cabeza(archivos.get(t), t, abrirLectura(archivos.get(t)));
+                if (cabeza.avanzar()) {
+                    cola.add(cabeza);
+                } else {
+                    cabeza.cerrar();
+                }
+            }
+            Cabeza cabeza;
+            while ((cabeza = cola.poll()) != null) {
+                receptor.recibir(cabeza.fila);
+                if (cabeza.avanzar()) {
+                    cola.add(cabeza);
+                } else {
+                    cabeza.cerrar();
+                }
+            }
+        } finally {
+            for (Cabeza abierta : cola) {
+                abierta.in.close();
+            }
+        }
+    }
+
+    /**
+     * Compara las filas de dos tramos con las claves guardadas, sin volver a usar la colación.
+     */
+    private int comparar(Cabeza a, Cabeza b) {
+        int clave = 0;
+        for (OrdenPersonas.Criterio criterio : orden.criterios()) {
+            int c;
+            if (criterio.campo() == OrdenPersonas.Campo.EDAD) {
+                c = Integer.compare(a.fila.edad, b.fila.edad);
+            } else {
+                c = Arrays.compareUnsigned(a.fila.claves.get(clave), b.fila.claves.get(clave));
+                clave++;
+            }
+            if (c != 0) {
+                return criterio.descendente() ? -c : c;
+            }
+        }
+        return Integer.compare(a.tramo, b.tramo);
+    }
+
+    /**
+     * Receptor de filas leídas de un tramo.
+     */
+    @FunctionalInterface
+    private interface ReceptorTramo {
+        void recibir(Fila fila) throws IOException;
+    }
+
+    /**
+     * Fila de un tramo: las claves de colación de sus criterios de texto, en orden, y sus valores.
+     */
+    private static final class Fila {
+
+        private final String nombre;
+        private final String apellido;
+        private final int edad;
+        private final List<byte[]> claves = new ArrayList<>(2);
+
+        Fila(String nombre, String apellido, int edad) {
+            this.nombre = nombre;
+            this.apellido = apellido;
+            this.edad = edad;
+        }
+
+        void escribir(DataOutputStream out) throws IOException {
+            out.writeByte(claves.size());
+            for (byte[] clave : claves) {
+                out.writeInt(clave.length);
+                out.write(clave);
+            }
+            escribirCadena(out, nombre);
+            escribirCadena(out, apellido);
+            out.writeInt(edad);
+        }
+
+        /**
+         * Lee la siguiente fila, o devuelve {@code null} al final del tramo.
+         */
+        static Fila leer(DataInputStream in) throws IOException {
+            int numClaves;
+            try {
+                numClaves = in.readUnsignedByte();
+            } catch (EOFException e) {
+                return null;
+            }
+            List<byte[]> claves = new ArrayList<>(numClaves);
+            for (int i = 0; i < numClaves; i++) {
+                claves.add(leerBytes(in));
+            }
+            Fila fila = new Fila(new String(leerBytes(in), StandardCharsets.UTF_8),
+                    new String(leerBytes(in), StandardCharsets.UTF_8), in.readInt());
+            fila.claves.addAll(claves);
+            return fila;
+        }
+    }
+
+    /**
+     * Tramo que se está mezclando, con la fila que le toca entregar.
+     */
+    private static final class Cabeza {
+
+        private final Path archivo;
+        private final int tramo;  // Posición del tramo entre los que se mezclan, para desempatar
+        private final DataInputStream in;
+        private Fila fila;
+
+        Cabeza(Path archivo, int tramo, DataInputStream in) {
+            this.archivo = archivo;
+            this.tramo = tramo;
+            this.in = in;
+        }
+
+        boolean avanzar() throws IOException {
+            fila = Fila.leer(in);
+            return fila != null;
+        }
+
+        void cerrar() throws IOException {
+            in.close();
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    private static void escribirCadena(DataOutputStream out, String cadena) throws IOException {
+        byte[] bytes = cadena.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] leerBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static DataOutputStream abrirEscritura(Path archivo) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(archivo), BUFER));
+    }
+
+    private static DataInputStream abrirLectura(Path archivo) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), BUFER));
+    }
+}
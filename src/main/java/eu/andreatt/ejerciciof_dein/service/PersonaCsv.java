@@ -0,0 +1,144 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * La clase {@code PersonaCsv} agrupa el formato CSV que usa la aplicación para las personas.
+ * Cada línea tiene la forma {@code nombre,apellido,edad} y el archivo empieza con un encabezado.
+ * Los archivos terminados en {@code .gz} se leen y se escriben comprimidos en gzip.
+ */
+public final class PersonaCsv {
+
+    /** Encabezado que se escribe en la primera línea de los archivos exportados. */
+    public static final String ENCABEZADO = "Nombre,Apellido,Edad";
+
+    /** Tamaño del buffer del descompresor al leer archivos comprimidos. */
+    private static final int TAMANO_BUFFER_GZIP = 1 << 16;
+
+    private PersonaCsv() {
+    }
+
+    /**
+     * Indica si un archivo CSV va comprimido en gzip, según su extensión.
+     *
+     * @param archivo El archivo.
+     * @return {@code true} si el nombre termina en {@code .gz}.
+     */
+    public static boolean comprimido(Path archivo) {
+        return archivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    /**
+     * Descomprime sobre la marcha la entrada si el archivo va comprimido, sin archivos temporales.
+     *
+     * @param archivo El archivo del que procede la entrada.
+     * @param entrada La entrada con los bytes del archivo.
+     * @return La entrada descomprimida, o la misma entrada si el archivo no va comprimido.
+     * @throws IOException Si la cabecera gzip no es válida.
+     */
+    public static InputStream descomprimir(Path archivo, InputStream entrada) throws IOException {
+        return comprimido(archivo) ? new GZIPInputStream(entrada, TAMANO_BUFFER_GZIP) : entrada;
+    }
+
+    /**
+     * Comprime en paralelo lo que se escriba en el canal si el archivo debe ir comprimido.
+     *
+     * @param archivo El archivo de destino.
+     * @param canal   El canal abierto sobre el archivo.
+     * @return Un {@link CanalGzipParalelo} sobre el canal, o el mismo canal si el archivo no va comprimido.
+     */
+    public static WritableByteChannel comprimir(Path archivo, WritableByteChannel canal) {
+        return comprimido(archivo) ? new CanalGzipParalelo(canal) : canal;
+    }
+
+    /**
+     * Recibe los campos de cada fila a medida que se analizan, sin crear una {@code Persona}.
+     */
+    @FunctionalInterface
+    public interface ReceptorFila {
+
+        /**
+         * Recibe una fila.
+         *
+         * @param nombre   El nombre.
+         * @param apellido El apellido.
+         * @param edad     La edad.
+         * @throws IOException Si el receptor no puede procesar la fila.
+         */
+        void recibir(String nombre, String apellido, int edad) throws IOException;
+    }
+
+    /**
+     * Convierte una línea del CSV en una {@code Persona}.
+     * Los campos que haya después de la edad se ignoran, igual que hacía {@code String.split}.
+     *
+     * @param linea    La línea a analizar, sin el salto de línea.
+     * @param numLinea El número de línea dentro del archivo, usado en los mensajes de error.
+     * @return La persona descrita por la línea.
+     * @throws IOException Si la línea no tiene tres campos o la edad no es un número válido.
+     */
+    public static Persona parsear(String linea, long numLinea) throws IOException {
+        Persona[] persona = new Persona[1];
+        parsear(linea, numLinea, (nombre, apellido, edad) -> persona[0] = new Persona(nombre, apellido, edad));
+        return persona[0];
+    }
+
+    /**
+     * Analiza una línea del CSV y entrega sus campos al receptor.
+     *
+     * @param linea    La línea a analizar, sin el salto de línea.
+     * @param numLinea El número de línea dentro del archivo, usado en los mensajes de error.
+     * @param receptor El receptor de los campos.
+     * @throws IOException Si la línea no tiene tres campos, la edad no es un número válido o el receptor falla.
+     */
+    public static void parsear(String linea, long numLinea, ReceptorFila receptor) throws IOException {
+        int coma1 = linea.indexOf(',');
+        int coma2 = coma1 < 0 ? -1 : linea.indexOf(',', coma1 + 1);
+        if (coma2 < 0) {
+            throw new IOException("Línea " + numLinea + " mal formada: " + linea);
+        }
+        int fin = linea.indexOf(',', coma2 + 1);
+        if (fin < 0) {
+            fin = linea.length();
+        }
+
+        int edad;
+        try {
+            edad = Integer.parseInt(linea, coma2 + 1, fin, 10);
+        } catch (NumberFormatException e) {
+            throw new IOException("Línea " + numLinea + ": la edad no es un número válido: " + linea);
+        }
+        receptor.recibir(linea.substring(0, coma1), linea.substring(coma1 + 1, coma2), edad);
+    }
+
+    /**
+     * Lee un CSV línea a línea, omitiendo el encabezado y las líneas vacías, y entrega cada fila al receptor.
+     * Solo mantiene en memoria la línea actual.
+     *
+     * @param reader   El lector del CSV, situado al principio del archivo.
+     * @param receptor El receptor de las filas.
+     * @return El número de filas leídas.
+     * @throws IOException Si no se puede leer, alguna línea está mal formada o el receptor falla.
+     */
+    public static long leer(BufferedReader reader, ReceptorFila receptor) throws IOException {
+        long filas = 0;
+        long numLinea = 1;
+        String linea = reader.readLine(); // Saltar el encabezado
+        while (linea != null && (linea = reader.readLine()) != null) {
+            numLinea++;
+            if (!linea.isEmpty()) {
+                parsear(linea, numLinea, receptor);
+                filas++;
+            }
+        }
+        return filas;
+    }
+}
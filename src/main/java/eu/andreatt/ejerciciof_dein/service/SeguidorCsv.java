@@ -0,0 +1,337 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sigue un archivo CSV, o todos los CSV de una carpeta, al que otro programa va añadiendo personas,
+ * y entrega solo las líneas nuevas a medida que aparecen.
+ * <p>
+ * De cada archivo se recuerda la posición del final de la última línea completa leída. Cuando el
+ * {@link WatchService} avisa de que ha cambiado, se lee desde esa posición hasta el final, así que el
+ * coste de cada aviso depende de lo que se ha añadido y no del tamaño del archivo. Una línea que todavía
+ * no termina en salto de línea se deja para el siguiente aviso. Si el archivo encoge, se entiende que se
+ * ha sustituido por otro y se vuelve a leer desde el principio.
+ * <p>
+ * Las líneas mal formadas se notifican y se saltan, para que una fila errónea no detenga el seguimiento.
+ * Además de atender a los avisos, cada {@link #INTERVALO_COMPROBACION_MS} milisegundos se comprueban
+ * los archivos por si el sistema de archivos no avisa de los cambios (por ejemplo, en carpetas de red).
+ * <p>
+ * Al cerrarlo, el hilo del seguidor deja de leer en cuanto termina el bloque en curso, aunque esté a
+ * mitad de un archivo grande, y no entrega nada más.
+ */
+public final class SeguidorCsv implements Closeable {
+
+    /** Personas que se entregan como máximo en cada llamada al receptor. */
+    public static final int TAMANO_LOTE = 5_000;
+
+    /** Intervalo máximo entre dos comprobaciones de los archivos aunque no haya avisos. */
+    public static final long INTERVALO_COMPROBACION_MS = 2_000;
+
+    /** Bytes que se leen de una vez del archivo. */
+    private static final int TAMANO_LECTURA = 1 << 16;
+
+    /**
+     * Recibe las personas nuevas y los errores. Se llama siempre desde el hilo del seguidor.
+     */
+    public interface Receptor {
+
+        /**
+         * Recibe un lote de personas añadidas a uno de los archivos, en el orden del archivo.
+         *
+         * @param archivo  El archivo del que proceden.
+         * @param personas Las personas, como mucho {@link #TAMANO_LOTE}.
+         */
+        void recibir(Path archivo, List<Persona> personas);
+
+        /**
+         * Avisa de una línea mal formada o de un archivo que no se ha podido leer.
+         *
+         * @param archivo El archivo.
+         * @param mensaje La descripción del error.
+         */
+        void error(Path archivo, String mensaje);
+    }
+
+    /**
+     * Lo leído de un archivo: dónde empieza la primera línea sin leer y qué número de línea es.
+     */
+    private static final class Posicion {
+        long bytes;  // Posición del primer byte sin leer, siempre al principio de una línea
+        long linea;  // Número de líneas completas leídas, incluido el encabezado
+    }
+
+    private final Path carpeta;  // Carpeta que se vigila
+    private final Path archivo;  // Archivo que se sigue, o null para seguir todos los CSV de la carpeta
+    private final Receptor receptor;
+    private final Map<Path, Posicion> posiciones = new HashMap<>();  // Solo la usa el hilo del seguidor
+    private final WatchService vigilante;
+    private final Thread hilo;
+    private volatile boolean cerrado;  // Se ha pedido cerrar: el hilo no lee ni entrega nada más
+
+    /**
+     * Empieza a seguir un archivo o una carpeta.
+     *
+     * @param objetivo      El archivo CSV a seguir, o una carpeta para seguir todos sus archivos {@code .csv}.
+     * @param leerExistente {@code true} para entregar también lo que ya contienen los archivos;
+     *                      {@code false} para entregar solo lo que se añada a partir de ahora.
+     * @param receptor      El receptor de las personas nuevas y de los errores.
+     * @throws IOException Si no se puede vigilar la carpeta.
+     */
+    public SeguidorCsv(Path objetivo, boolean leerExistente, Receptor receptor) throws IOException {
+        Path absoluto = objetivo.toAbsolutePath();
+        boolean esCarpeta = Files.isDirectory(absoluto);
+        this.carpeta = esCarpeta ? absoluto : absoluto.getParent();
+        this.archivo = esCarpeta ? null : absoluto;
+        this.receptor = receptor;
+
+        for (Path existente : archivosSeguidos()) {
+            Posicion posicion = new Posicion();
+            if (!leerExistente) {
+                saltarHastaElFinal(existente, posicion);
+            }
+            posiciones.put(existente, posicion);
+        }
+        this.vigilante = carpeta.getFileSystem().newWatchService();
+        try {
+            carpeta.register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            vigilante.close();
+            throw e;
+        }
+        this.hilo = new Thread(this::seguirEnBucle, "seguidor-csv");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    /**
+     * Deja de seguir los archivos. No espera al hilo del seguidor, así que puede llamarse desde el hilo
+     * de JavaFX: el hilo termina en cuanto acaba el bloque que está leyendo, y hasta entonces el receptor
+     * todavía puede recibir, como mucho, el lote que ya estaba entregando.
+     *
+     * @throws IOException Si no se puede cerrar el vigilante.
+     */
+    @Override
+    public void close() throws IOException {
+        cerrado = true;
+        vigilante.close();
+    }
+
+    /**
+     * Espera avisos del vigilante y lee los archivos que han cambiado, hasta que se cierra el seguidor.
+     */
+    private void seguirEnBucle() {
+        try {
+            leerTodos(); // Lo que ya había, si se pidió, y lo añadido mientras se arrancaba el hilo
+            while (!cerrado) {
+                WatchKey clave = vigilante.poll(INTERVALO_COMPROBACION_MS, TimeUnit.MILLISECONDS);
+                if (clave == null) {
+                    leerTodos();
+                    continue;
+                }
+                // Se juntan todos los avisos pendientes para leer cada archivo una sola vez
+                Set<Path> cambiados = new LinkedHashSet<>();
+                boolean desbordado = false;
+                while (clave != null) {
+                    for (WatchEvent<?> evento : clave.pollEvents()) {
+                        if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            desbordado = true;
+                        } else {
+                            Path cambiado = carpeta.resolve((Path) evento.context());
+                            if (seguido(cambiado)) {
+                                cambiados.add(cambiado);
+                            }
+                        }
+                    }
+                    clave.reset();
+                    clave = vigilante.poll();
+                }
+                if (desbordado) {
+                    leerTodos();
+                } else {
+                    for (Path cambiado : cambiados) {
+                        leerNuevas(cambiado);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // El seguidor se ha cerrado
+        }
+    }
+
+    /**
+     * Lee lo nuevo de todos los archivos seguidos.
+     */
+    private void leerTodos() {
+        try {
+            for (Path seguido : archivosSeguidos()) {
+                if (cerrado) {
+                    return;
+                }
+                leerNuevas(seguido);
+            }
+        } catch (IOException e) {
+            if (!cerrado) {
+                receptor.error(carpeta, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lee las líneas completas añadidas a un archivo desde la última lectura y entrega sus personas por lotes.
+     */
+    private void leerNuevas(Path seguido) {
+        Posicion posicion = posiciones.computeIfAbsent(seguido, p -> new Posicion());
+        List<Persona> lote = new ArrayList<>();
+        try (FileChannel canal = FileChannel.open(seguido, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < posicion.bytes) {
+                posicion.bytes = 0; // El archivo se ha sustituido por otro más corto
+                posicion.linea = 0;
+            }
+            if (tamano == posicion.bytes) {
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_LECTURA);
+            ByteArrayOutputStream linea = new ByteArrayOutputStream();
+            long leido = posicion.bytes;
+            canal.position(leido);
+            while (leido < tamano) {
+                if (cerrado) {
+                    return; // Lo que falta de leer se descarta, igual que el lote sin entregar
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), tamano - leido));
+                int n = canal.read(buffer);
+                if (n < 0) {
+                    break;
+                }
+                byte[] datos = buffer.array();
+                int inicio = 0;
+                for (int i = 0; i < n; i++) {
+                    if (datos[i] != '\n') {
+                        continue;
+                    }
+                    linea.write(datos, inicio, i - inicio);
+                    inicio = i + 1;
+                    posicion.bytes = leido + inicio;
+                    posicion.linea++;
+                    analizar(seguido, linea, posicion.linea, lote);
+                    linea.reset();
+                    if (lote.size() == TAMANO_LOTE && !cerrado) {
+                        receptor.recibir(seguido, lote);
+                        lote = new ArrayList<>();
+                    }
+                }
+                linea.write(datos, inicio, n - inicio); // Resto de una línea que sigue en la siguiente lectura
+                leido += n;
+            }
+            // La última línea sin salto se vuelve a leer entera en el siguiente aviso
+        } catch (NoSuchFileException e) {
+            posiciones.remove(seguido); // Se ha borrado; si vuelve a aparecer se leerá desde el principio
+        } catch (IOException e) {
+            if (!cerrado) {
+                receptor.error(seguido, e.getMessage());
+            }
+        } finally {
+            if (!lote.isEmpty() && !cerrado) {
+                receptor.recibir(seguido, lote);
+            }
+        }
+    }
+
+    /**
+     * Analiza una línea completa, saltando el encabezado y las líneas vacías, y añade su persona al lote.
+     */
+    private void analizar(Path seguido, ByteArrayOutputStream bytes, long numLinea, List<Persona> lote) {
+        if (numLinea == 1) {
+            return; // Encabezado
+        }
+        String linea = bytes.toString(StandardCharsets.UTF_8);
+        if (linea.endsWith("\r")) {
+            linea = linea.substring(0, linea.length() - 1);
+        }
+        if (linea.isEmpty()) {
+            return;
+        }
+        try {
+            lote.add(PersonaCsv.parsear(linea, numLinea));
+        } catch (IOException e) {
+            receptor.error(seguido, e.getMessage());
+        }
+    }
+
+    /**
+     * Sitúa la posición de un archivo al final de su última línea completa, sin entregar nada.
+     */
+    private static void saltarHastaElFinal(Path existente, Posicion posicion) throws IOException {
+        try (FileChannel canal = FileChannel.open(existente, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_LECTURA);
+            long leido = 0;
+            while (true) {
+                buffer.clear();
+                int n = canal.read(buffer);
+                if (n < 0) {
+                    return;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (buffer.get(i) == '\n') {
+                        posicion.linea++;
+                        posicion.bytes = leido + i + 1;
+                    }
+                }
+                leido += n;
+            }
+        }
+    }
+
+    /**
+     * Devuelve los archivos seguidos que existen ahora mismo.
+     */
+    private List<Path> archivosSeguidos() throws IOException {
+        List<Path> seguidos = new ArrayList<>();
+        if (archivo != null) {
+            if (Files.isRegularFile(archivo)) {
+                seguidos.add(archivo);
+            }
+            return seguidos;
+        }
+        try (DirectoryStream<Path> contenido = Files.newDirectoryStream(carpeta, "*.csv")) {
+            for (Path candidato : contenido) {
+                if (Files.isRegularFile(candidato)) {
+                    seguidos.add(candidato);
+                }
+            }
+        }
+        seguidos.sort(null);
+        return seguidos;
+    }
+
+    private boolean seguido(Path candidato) {
+        return archivo != null ? archivo.equals(candidato) : candidato.getFileName().toString().endsWith(".csv");
+    }
+}
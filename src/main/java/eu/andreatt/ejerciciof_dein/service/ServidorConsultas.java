@@ -0,0 +1,240 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.andreatt.ejerciciof_dein.model.ConsultaPersonas;
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Servidor HTTP local, de solo lectura, para que otros programas del mismo equipo consulten la agenda
+ * mientras la aplicación está abierta.
+ * <p>
+ * Atiende {@code GET /personas} con los parámetros opcionales {@code q} (una consulta con la sintaxis
+ * de {@link ConsultaPersonas}, por ejemplo {@code apellido:López edad>=30}), {@code desde} (posición de
+ * la primera persona devuelta, 0 por defecto) y {@code limite} (personas por página, {@value #LIMITE_DEFECTO}
+ * por defecto y {@value #LIMITE_MAXIMO} como mucho). Responde en JSON con el total de coincidencias y la
+ * página pedida, por ejemplo
+ * {@code {"total":2,"desde":0,"personas":[{"nombre":"Ana","apellido":"López","edad":31}, ...]}}.
+ * Una consulta no válida se responde con el código 400 y {@code {"error":"..."}}.
+ * <p>
+ * Las peticiones nunca tocan la lista de la agenda: leen la última {@link InstantaneaAgenda} que el hilo
+ * de JavaFX ha {@link #publicar publicado}, que se sustituye entera de forma atómica. Cada petición se
+ * atiende en su propio hilo virtual, así que las consultas no bloquean la interfaz ni esperan unas a otras.
+ * El servidor solo escucha en la interfaz local, y solo responde a las peticiones cuya cabecera
+ * {@code Host} nombra el equipo local con el puerto del servidor; las demás reciben un 403. Así una página
+ * web que haga apuntar su propio nombre a 127.0.0.1 (DNS rebinding) no puede leer la agenda desde el navegador.
+ */
+public final class ServidorConsultas implements Closeable {
+
+    /** Personas por página cuando no se indica el límite. */
+    public static final int LIMITE_DEFECTO = 50;
+
+    /** Máximo de personas por página. */
+    public static final int LIMITE_MAXIMO = 1_000;
+
+    private final HttpServer servidor;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();  // Un hilo virtual por petición
+    private final AtomicReference<InstantaneaAgenda> agenda = new AtomicReference<>(InstantaneaAgenda.VACIA);  // Última instantánea publicada
+
+    /**
+     * Arranca el servidor en la interfaz local. Hasta que se publique la primera instantánea, la agenda
+     * aparece vacía.
+     *
+     * @param puerto El puerto, o 0 para que el sistema elija uno libre.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public ServidorConsultas(int puerto) throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        servidor.setExecutor(hilos);
+        servidor.createContext("/personas", this::atender);
+        servidor.start();
+    }
+
+    /**
+     * Obtiene el puerto en el que escucha el servidor.
+     *
+     * @return El puerto.
+     */
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Sustituye la agenda que ven las consultas. Las consultas en curso terminan con la anterior.
+     *
+     * @param instantanea La nueva instantánea, con las claves de búsqueda copiadas para no normalizar cada fila.
+     */
+    public void publicar(InstantaneaAgenda instantanea) {
+        agenda.set(instantanea);
+    }
+
+    /**
+     * Deja de aceptar peticiones, espera como mucho un segundo a las que están en curso y para el servidor.
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        hilos.shutdownNow();
+    }
+
+    /**
+     * Atiende una petición a {@code /personas}.
+     */
+    private void atender(HttpExchange intercambio) throws IOException {
+        try (intercambio) {
+            if (!hostLocal(intercambio.getRequestHeaders().getFirst("Host"))) {
+                responder(intercambio, 403, error("Solo se atienden peticiones a localhost"));
+                return;
+            }
+            if (!"GET".equals(intercambio.getRequestMethod())) {
+                intercambio.getResponseHeaders().set("Allow", "GET");
+                responder(intercambio, 405, error("Solo se admite GET"));
+                return;
+            }
+            if (!"/personas".equals(intercambio.getRequestURI().getPath())) {
+                responder(intercambio, 404, error("No existe " + intercambio.getRequestURI().getPath()));
+                return;
+            }
+            ConsultaPersonas consulta;
+            int desde;
+            int limite;
+            try {
+                Map<String, String> parametros = parametros(intercambio.getRequestURI().getRawQuery());
+                consulta = ConsultaPersonas.compilar(parametros.get("q"));
+                desde = entero(parametros, "desde", 0);
+                limite = Math.min(entero(parametros, "limite", LIMITE_DEFECTO), LIMITE_MAXIMO);
+            } catch (IllegalArgumentException e) {
+                responder(intercambio, 400, error(e.getMessage()));
+                return;
+            }
+            responder(intercambio, 200, buscar(agenda.get(), consulta, desde, limite));
+        }
+    }
+
+    /**
+     * Comprueba que la cabecera {@code Host} de una petición nombra el equipo local y el puerto del servidor.
+     */
+    private boolean hostLocal(String host) {
+        if (host == null) {
+            return false;
+        }
+        String puerto = ":" + getPuerto();
+        return host.equalsIgnoreCase("localhost" + puerto) || host.equals("127.0.0.1" + puerto) || host.equals("[::1]" + puerto);
+    }
+
+    /**
+     * Recorre la instantánea contando las coincidencias y escribe en JSON las de la página pedida.
+     */
+    private static String buscar(InstantaneaAgenda instantanea, ConsultaPersonas consulta, int desde, int limite) {
+        StringBuilder personas = new StringBuilder();
+        int n = instantanea.tamano();
+        int total = 0;
+        if (consulta.vacia()) {
+            // Sin condiciones la página se toma directamente y el total es el tamaño de la agenda
+            for (int i = desde; i < n && i - desde < limite; i++) {
+                agregarPersona(personas, instantanea, i);
+            }
+            total = n;
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (instantanea.acepta(i, consulta)) {
+                    if (total >= desde && total - desde < limite) {
+                        agregarPersona(personas, instantanea, i);
+                    }
+                    total++;
+                }
+            }
+        }
+        return "{\"total\":" + total + ",\"desde\":" + desde + ",\"personas\":[" + personas + "]}";
+    }
+
+    private static void agregarPersona(StringBuilder personas, InstantaneaAgenda instantanea, int i) {
+        personas.append(personas.isEmpty() ? "{\"nombre\":" : ",{\"nombre\":");
+        cadena(personas, instantanea.nombre(i)).append(",\"apellido\":");
+        cadena(personas, instantanea.apellido(i)).append(",\"edad\":").append(instantanea.edad(i)).append('}');
+    }
+
+    private static void responder(HttpExchange intercambio, int codigo, String json) throws IOException {
+        byte[] cuerpo = json.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(codigo, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static String error(String mensaje) {
+        return cadena(new StringBuilder("{\"error\":"), mensaje).append('}').toString();
+    }
+
+    /**
+     * Escribe una cadena JSON entre comillas, escapando las comillas, las barras y los caracteres de control.
+     */
+    private static StringBuilder cadena(StringBuilder json, String texto) {
+        json.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Separa los parámetros de la consulta de la URL y los decodifica.
+     */
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            String clave = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(clave, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    private static int entero(Map<String, String> parametros, String nombre, int porDefecto) {
+        String valor = parametros.get(nombre);
+        if (valor == null || valor.isEmpty()) {
+            return porDefecto;
+        }
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero < 0) {
+                throw new IllegalArgumentException("El parámetro " + nombre + " no puede ser negativo");
+            }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " no es un número: " + valor);
+        }
+    }
+}
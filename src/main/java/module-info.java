@@ -3,6 +3,8 @@ module eu.andreatt.ejerciciof_dein {
     requires javafx.fxml;
     requires java.desktop;
     requires org.slf4j;
+    requires jdk.jfr;
+    requires jdk.httpserver;
 
 
 //    opens eu.andreatt.ejercicioe_dein to javafx.fxml;
@@ -0,0 +1,95 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsultaPersonasTest {
+
+    private static boolean acepta(String consulta, String nombre, String apellido, int edad) {
+        return ConsultaPersonas.compilar(consulta).acepta(new Persona(nombre, apellido, edad));
+    }
+
+    @Test
+    void unIntervaloDeEdadIncluyeSusExtremos() {
+        assertFalse(acepta("edad:30-39", "Ana", "López", 29));
+        assertTrue(acepta("edad:30-39", "Ana", "López", 30));
+        assertTrue(acepta("edad:30-39", "Ana", "López", 39));
+        assertFalse(acepta("edad:30-39", "Ana", "López", 40));
+        assertTrue(acepta("edad=-5--1", "Ana", "López", -3)); // El primer guion es el signo
+    }
+
+    @Test
+    void losOperadoresDeEdadDistinguenLosExtremos() {
+        assertFalse(acepta("edad>30", "Ana", "López", 30));
+        assertTrue(acepta("edad>30", "Ana", "López", 31));
+        assertTrue(acepta("edad>=30", "Ana", "López", 30));
+        assertFalse(acepta("edad<40", "Ana", "López", 40));
+        assertTrue(acepta("edad<=40", "Ana", "López", 40));
+        assertTrue(acepta("edad:30", "Ana", "López", 30));
+        assertFalse(acepta("edad:30", "Ana", "López", 31));
+        assertFalse(acepta("edad>30 edad<30", "Ana", "López", 30)); // Las condiciones se cumplen todas
+    }
+
+    @Test
+    void losTextosEntreComillasPuedenLlevarEspacios() {
+        assertTrue(acepta("apellido:\"de la Fuente\"", "Ana", "De la Fuénte", 30));
+        assertFalse(acepta("apellido:\"de la Fuente\"", "de la Fuente", "López", 30));
+        assertTrue(acepta("\"ana lo\"", "Ana Lola", "Gil", 30));
+        assertFalse(acepta("\"ana lo\"", "Ana", "Lopez", 30));
+    }
+
+    @Test
+    void losTextosNoDistinguenTildesNiMayusculasNiCampos() {
+        assertTrue(acepta("LOPEZ", "Ana", "López", 30));
+        assertTrue(acepta("nombre:ána", "Ana", "Gil", 30));
+        assertFalse(acepta("nombre:gil", "Ana", "Gil", 30));
+        assertTrue(acepta("ciudad:madrid", "Ciudad:Madrid", "Gil", 30)); // Campo desconocido: se busca como texto
+        assertTrue(acepta("edadista", "Ana", "Edadista", 30));
+    }
+
+    @Test
+    void unaCondicionMalFormadaSeRechaza() {
+        assertThrows(IllegalArgumentException.class, () -> ConsultaPersonas.compilar("edad>"));
+        assertThrows(IllegalArgumentException.class, () -> ConsultaPersonas.compilar("edad:treinta"));
+        assertThrows(IllegalArgumentException.class, () -> ConsultaPersonas.compilar("edad:30-"));
+        assertThrows(IllegalArgumentException.class, () -> ConsultaPersonas.compilar("nombre:"));
+        assertThrows(IllegalArgumentException.class, () -> ConsultaPersonas.compilar("apellido:"));
+    }
+
+    @Test
+    void unaConsultaVaciaNoFiltra() {
+        assertTrue(ConsultaPersonas.compilar("  ").vacia());
+        assertTrue(ConsultaPersonas.compilar(null).vacia());
+        assertNull(new IndiceBusqueda(FXCollections.observableArrayList()).consultar(ConsultaPersonas.compilar("")));
+    }
+
+    @Test
+    void elIndiceDaLoMismoQueComprobarCadaPersona() {
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        String[] nombres = {"Ana", "Ángel", "Luis", "Lucía", "José Luis", "María"};
+        String[] apellidos = {"López", "de la Fuente", "Gil", "Núñez", "Martínez"};
+        for (int i = 0; i < 300; i++) {
+            personas.add(new Persona(nombres[i % nombres.length], apellidos[i % apellidos.length], i % 90));
+        }
+        IndiceBusqueda indice = new IndiceBusqueda(personas);
+
+        for (String texto : List.of("edad:30-39", "edad>80", "lu", "nombre:luis edad<20", "apellido:\"de la\" edad>=45",
+                "nunez", "angel edad=10", "xyz")) {
+            ConsultaPersonas consulta = ConsultaPersonas.compilar(texto);
+            Predicate<Persona> predicado = indice.consultar(consulta);
+            for (Persona persona : personas) {
+                assertEquals(consulta.acepta(persona), predicado.test(persona), texto + " / " + persona.getNombre());
+            }
+        }
+    }
+}
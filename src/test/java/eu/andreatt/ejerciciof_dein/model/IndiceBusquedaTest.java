@@ -0,0 +1,103 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndiceBusquedaTest {
+
+    private static final List<String> CONSULTAS = List.of("lu", "luis", "nombre:ana", "apellido:lopez edad>=40",
+            "nunez", "gil edad:20-29", "edad<10", "edad=77", "fuente", "xyz");
+
+    private static final String[] NOMBRES = {"Ana", "Ángel", "Luis", "Lucía", "José Luis", "María"};
+    private static final String[] APELLIDOS = {"López", "de la Fuente", "Gil", "Núñez", "Martínez"};
+
+    private static Persona persona(int i) {
+        return new Persona(NOMBRES[i % NOMBRES.length], APELLIDOS[i % APELLIDOS.length], i % 90);
+    }
+
+    /**
+     * Obtiene del índice el predicado de cada consulta de {@link #CONSULTAS}.
+     */
+    private static Map<ConsultaPersonas, Predicate<Persona>> consultar(IndiceBusqueda indice) {
+        Map<ConsultaPersonas, Predicate<Persona>> predicados = new LinkedHashMap<>();
+        for (String texto : CONSULTAS) {
+            ConsultaPersonas consulta = ConsultaPersonas.compilar(texto);
+            predicados.put(consulta, indice.consultar(consulta));
+        }
+        return predicados;
+    }
+
+    /**
+     * Comprueba que cada predicado acepta exactamente las personas de la lista que cumplen su consulta.
+     */
+    private static void comprobar(Map<ConsultaPersonas, Predicate<Persona>> predicados, List<Persona> personas) {
+        predicados.forEach((consulta, predicado) -> {
+            for (Persona persona : personas) {
+                if (consulta.acepta(persona) != predicado.test(persona)) {
+                    throw new AssertionError(consulta + ": " + persona.getNombre() + " " + persona.getApellido()
+                            + " " + persona.getEdad() + " debería " + (consulta.acepta(persona) ? "" : "no ") + "aceptarse");
+                }
+            }
+        });
+    }
+
+    @Test
+    void losPredicadosSiguenValiendoTrasEditarQuitarYVolverAAnadir() {
+        ListaPersonas personas = new ListaPersonas();
+        for (int i = 0; i < 600; i++) {
+            personas.add(persona(i));
+        }
+        IndiceBusqueda indice = new IndiceBusqueda(personas);
+        Map<ConsultaPersonas, Predicate<Persona>> predicados = consultar(indice);
+        comprobar(predicados, personas);
+
+        // Ediciones posteriores a la consulta: el sello de la persona es más nuevo que el de la consulta
+        personas.get(0).setNombre("Luisa");
+        personas.get(1).setApellido("Gil");
+        personas.get(2).setEdad(77);
+        personas.get(3).setNombre("Xyzabc");
+        // Bajas que vuelven a entrar con un identificador nuevo, más allá del límite de la consulta
+        List<Persona> quitadas = new ArrayList<>(personas.subList(10, 40));
+        personas.lote().eliminarTodas(quitadas).confirmar();
+        quitadas.get(0).setApellido("Núñez"); // Editada fuera de la lista
+        personas.addAll(quitadas);
+        personas.add(new Persona("Lucas", "López", 45));
+
+        comprobar(predicados, personas);
+        comprobar(consultar(indice), personas);
+    }
+
+    @Test
+    void losPredicadosSiguenValiendoTrasReconstruirElIndice() {
+        List<Persona> iniciales = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            iniciales.add(persona(i));
+        }
+        ListaPersonas personas = new ListaPersonas(iniciales);
+        IndiceBusqueda indice = new IndiceBusqueda(personas);
+        Map<ConsultaPersonas, Predicate<Persona>> predicados = consultar(indice);
+
+        // Más identificadores muertos que vivos, y por encima del mínimo: el índice se reconstruye
+        List<Persona> quitadas = new ArrayList<>(personas.subList(0, 80_000));
+        personas.lote().eliminarTodas(quitadas).confirmar();
+        for (Persona persona : personas) {
+            // Sin reconstruir, las que quedan conservarían sus identificadores, de 80.000 en adelante
+            assertTrue(persona.idBusqueda < 80_000, "El índice no se ha reconstruido");
+        }
+        personas.get(0).setNombre("Luis");
+        personas.addAll(quitadas.subList(0, 500));
+
+        // Tras la reconstrucción, los identificadores de la consulta anterior ya no significan lo mismo
+        comprobar(predicados, personas);
+        comprobar(consultar(indice), personas);
+        assertEquals(20_500, personas.size());
+    }
+}
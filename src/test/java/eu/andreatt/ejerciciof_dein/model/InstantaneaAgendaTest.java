@@ -0,0 +1,102 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InstantaneaAgendaTest {
+
+    private static final int BLOQUE = InstantaneaAgenda.TAMANO_BLOQUE;
+
+    private static ListaPersonas lista(int tamano) {
+        List<Persona> personas = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            personas.add(new Persona("Nombre" + i, "Apellído" + i % 100, i % 90));
+        }
+        return new ListaPersonas(personas);
+    }
+
+    private static void comprobar(List<Persona> personas, InstantaneaAgenda instantanea) {
+        assertEquals(personas.size(), instantanea.tamano());
+        ConsultaPersonas consulta = ConsultaPersonas.compilar("apellido:apellido1");
+        for (int i = 0; i < personas.size(); i++) {
+            Persona persona = personas.get(i);
+            assertEquals(persona.getNombre(), instantanea.nombre(i), "Posición " + i);
+            assertEquals(persona.getApellido(), instantanea.apellido(i));
+            assertEquals(persona.getEdad(), instantanea.edad(i));
+            assertEquals(consulta.acepta(persona), instantanea.acepta(i, consulta));
+        }
+    }
+
+    @Test
+    void unaEdicionSoloCopiaSuBloque() {
+        ListaPersonas lista = lista(10 * BLOQUE);
+        InstantaneaAgenda.Seguimiento seguimiento = InstantaneaAgenda.seguir(lista);
+        InstantaneaAgenda anterior = seguimiento.siguiente();
+
+        lista.get(3 * BLOQUE + 5).setNombre("Eva");
+        InstantaneaAgenda nueva = seguimiento.siguiente();
+
+        assertEquals(9, nueva.bloquesCompartidos(anterior));
+        assertEquals("Nombre" + (3 * BLOQUE + 5), anterior.nombre(3 * BLOQUE + 5)); // La anterior no cambia
+        comprobar(lista, nueva);
+    }
+
+    @Test
+    void anadirAlFinalSoloCopiaElUltimoBloqueYLosNuevos() {
+        ListaPersonas lista = lista(5 * BLOQUE + 10);
+        InstantaneaAgenda.Seguimiento seguimiento = InstantaneaAgenda.seguir(lista);
+        InstantaneaAgenda anterior = seguimiento.siguiente();
+
+        lista.addAll(List.of(new Persona("Eva", "Sanz", 25), new Persona("Luis", "Gil", 40)));
+        InstantaneaAgenda nueva = seguimiento.siguiente();
+
+        assertEquals(5, nueva.bloquesCompartidos(anterior));
+        comprobar(lista, nueva);
+    }
+
+    @Test
+    void unLoteDeModificacionesNoCopiaLosBloquesSinCambios() {
+        ListaPersonas lista = lista(8 * BLOQUE);
+        InstantaneaAgenda.Seguimiento seguimiento = InstantaneaAgenda.seguir(lista);
+        InstantaneaAgenda anterior = seguimiento.siguiente();
+
+        lista.lote().modificar(lista.get(10), "Ana", "López", 30).modificar(lista.get(BLOQUE + 1), "Eva", "Gil", 20).confirmar();
+        InstantaneaAgenda nueva = seguimiento.siguiente();
+
+        assertEquals(6, nueva.bloquesCompartidos(anterior));
+        comprobar(lista, nueva);
+    }
+
+    @Test
+    void cualquierSecuenciaDeCambiosDaLaMismaCopiaQueDesdeCero() {
+        Random azar = new Random(21);
+        ListaPersonas lista = lista(3 * BLOQUE + 100);
+        InstantaneaAgenda.Seguimiento seguimiento = InstantaneaAgenda.seguir(lista);
+        seguimiento.siguiente();
+
+        for (int ronda = 0; ronda < 40; ronda++) {
+            for (int paso = 0; paso < 1 + azar.nextInt(4); paso++) {
+                switch (azar.nextInt(6)) {
+                    case 0 -> lista.get(azar.nextInt(lista.size())).setEdad(azar.nextInt(90));
+                    case 1 -> lista.add(azar.nextInt(lista.size() + 1), new Persona("Nueva" + ronda, "Sanz", ronda));
+                    case 2 -> lista.remove(azar.nextInt(lista.size()));
+                    case 3 -> lista.addAll(List.of(new Persona("Final" + ronda, "Gil", 1), new Persona("Otra", "Gil", 2)));
+                    case 4 -> lista.removeAll(List.of(lista.get(azar.nextInt(lista.size())), lista.get(azar.nextInt(lista.size()))));
+                    default -> lista.set(azar.nextInt(lista.size()), new Persona("Cambiada" + ronda, "Ruiz", 3));
+                }
+            }
+            comprobar(lista, seguimiento.siguiente());
+        }
+
+        // Tras detenerlo, los cambios de la lista ya no marcan bloques
+        seguimiento.detener();
+        InstantaneaAgenda ultima = seguimiento.siguiente();
+        lista.get(0).setNombre("Sin seguimiento");
+        assertEquals((lista.size() + BLOQUE - 1) / BLOQUE, seguimiento.siguiente().bloquesCompartidos(ultima));
+    }
+}
@@ -0,0 +1,144 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListaPersonasTest {
+
+    /**
+     * Copia de la lista que se mantiene solo con los cambios notificados, y anota los cambios recibidos
+     * y las posiciones actualizadas.
+     */
+    private static final class Espejo implements ListChangeListener<Persona> {
+
+        final List<Persona> copia;
+        final List<Integer> actualizadas = new ArrayList<>();
+        int cambios;
+        int reemplazos;
+
+        Espejo(ListaPersonas lista) {
+            copia = new ArrayList<>(lista);
+            lista.addListener(this);
+        }
+
+        @Override
+        public void onChanged(Change<? extends Persona> cambio) {
+            cambios++;
+            while (cambio.next()) {
+                if (cambio.wasUpdated()) {
+                    for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                        actualizadas.add(i);
+                    }
+                } else {
+                    if (cambio.wasReplaced()) {
+                        reemplazos++;
+                    }
+                    copia.subList(cambio.getFrom(), cambio.getFrom() + cambio.getRemovedSize()).clear();
+                    copia.addAll(cambio.getFrom(), cambio.getAddedSubList());
+                }
+            }
+        }
+
+        void comprobar(ListaPersonas lista) {
+            assertEquals(lista.size(), copia.size());
+            for (int i = 0; i < lista.size(); i++) {
+                assertTrue(lista.get(i) == copia.get(i), "Posición " + i);
+            }
+        }
+    }
+
+    private static ListaPersonas lista(int tamano) {
+        List<Persona> personas = new ArrayList<>();
+        for (int i = 0; i < tamano; i++) {
+            personas.add(new Persona("Nombre" + i, "Apellido" + i, i));
+        }
+        return new ListaPersonas(personas);
+    }
+
+    @Test
+    void quitarPocosTramosLosNotificaComoEliminaciones() {
+        ListaPersonas lista = lista(10);
+        Espejo espejo = new Espejo(lista);
+
+        lista.removeAll(List.of(lista.get(1), lista.get(2), lista.get(5), lista.get(9)));
+
+        assertEquals(1, espejo.cambios);
+        assertEquals(0, espejo.reemplazos);
+        assertEquals(6, lista.size());
+        espejo.comprobar(lista);
+    }
+
+    @Test
+    void quitarTramosDispersosLosNotificaComoUnReemplazo() {
+        ListaPersonas lista = lista(200);
+        Espejo espejo = new Espejo(lista);
+        List<Persona> impares = new ArrayList<>();
+        for (int i = 1; i < lista.size(); i += 2) {
+            impares.add(lista.get(i));
+        }
+
+        lista.removeAll(impares);
+
+        assertEquals(1, espejo.cambios);
+        assertEquals(1, espejo.reemplazos);
+        assertEquals(100, lista.size());
+        espejo.comprobar(lista);
+    }
+
+    @Test
+    void unLoteSeNotificaComoUnSoloCambio() {
+        ListaPersonas lista = lista(10);
+        Espejo espejo = new Espejo(lista);
+        Persona modificada = lista.get(7);
+
+        lista.lote()
+                .eliminar(lista.get(0))
+                .eliminar(lista.get(4))
+                .agregar(new Persona("Eva", "Sanz", 25))
+                .modificar(modificada, "Luis", "Gil", 40)
+                .confirmar();
+
+        assertEquals(1, espejo.cambios);
+        assertEquals(9, lista.size());
+        assertEquals(new Persona("Luis", "Gil", 40), lista.get(5));
+        espejo.comprobar(lista);
+        assertTrue(espejo.actualizadas.isEmpty()); // Las modificaciones llegan como reemplazos
+    }
+
+    @Test
+    void unaEdicionSeNotificaEnSuPosicionTrasDesplazamientos() {
+        ListaPersonas lista = lista(50);
+        Persona persona = lista.get(30);
+        Espejo espejo = new Espejo(lista);
+
+        lista.add(0, new Persona("Eva", "Sanz", 25));
+        lista.addAll(10, List.of(new Persona("A", "a", 1), new Persona("B", "b", 2)));
+        lista.remove(5);
+        lista.removeAll(List.of(lista.get(1), lista.get(3), lista.get(20)));
+        persona.setEdad(99);
+
+        assertEquals(List.of(lista.indexOf(persona)), espejo.actualizadas);
+        assertEquals(29, lista.indexOf(persona));
+        espejo.comprobar(lista);
+    }
+
+    @Test
+    void unaPersonaEnDosListasSeNotificaEnCadaUna() {
+        ListaPersonas primera = lista(5);
+        Persona persona = primera.get(3);
+        ListaPersonas segunda = new ListaPersonas(List.of(new Persona("Eva", "Sanz", 25), persona));
+        Espejo espejoPrimera = new Espejo(primera);
+        Espejo espejoSegunda = new Espejo(segunda);
+
+        persona.setNombre("Luis");
+
+        assertEquals(List.of(3), espejoPrimera.actualizadas);
+        assertEquals(List.of(1), espejoSegunda.actualizadas);
+    }
+}
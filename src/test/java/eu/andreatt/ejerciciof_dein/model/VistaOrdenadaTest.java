@@ -0,0 +1,92 @@
+package eu.andreatt.ejerciciof_dein.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VistaOrdenadaTest {
+
+    private static final OrdenPersonas ORDEN = new OrdenPersonas(List.of(
+            new OrdenPersonas.Criterio(OrdenPersonas.Campo.APELLIDO, false),
+            new OrdenPersonas.Criterio(OrdenPersonas.Campo.EDAD, true)));
+
+    private static Persona aleatoria(Random azar) {
+        return new Persona("N" + azar.nextInt(50), "A" + azar.nextInt(20), azar.nextInt(10));
+    }
+
+    /**
+     * Comprueba que la vista coincide con el orden calculado desde cero y que sus índices son coherentes.
+     */
+    private static void comprobar(ListaPersonas lista, VistaOrdenada vista) {
+        int[] esperado = ORDEN.ordenar(lista);
+        assertEquals(lista.size(), vista.size());
+        for (int v = 0; v < vista.size(); v++) {
+            assertSame(lista.get(esperado[v]), vista.get(v), "Posición " + v);
+            assertEquals(esperado[v], vista.getSourceIndex(v));
+            assertEquals(v, vista.getViewIndex(esperado[v]));
+        }
+    }
+
+    @Test
+    void losCambiosSueltosDejanLaVistaComoUnOrdenDesdeCero() {
+        Random azar = new Random(42);
+        ListaPersonas lista = new ListaPersonas();
+        for (int i = 0; i < 300; i++) {
+            lista.add(aleatoria(azar));
+        }
+        VistaOrdenada vista = new VistaOrdenada(lista);
+        vista.setOrden(ORDEN);
+        comprobar(lista, vista);
+
+        for (int paso = 0; paso < 500; paso++) {
+            switch (azar.nextInt(5)) {
+                case 0 -> lista.add(azar.nextInt(lista.size() + 1), aleatoria(azar));
+                case 1 -> lista.remove(azar.nextInt(lista.size()));
+                case 2 -> lista.get(azar.nextInt(lista.size())).setEdad(azar.nextInt(10));
+                case 3 -> {
+                    int desde = azar.nextInt(lista.size() - 3);
+                    lista.subList(desde, desde + 3).clear();
+                }
+                default -> {
+                    List<Persona> nuevas = new ArrayList<>();
+                    for (int i = 0; i < 1 + azar.nextInt(4); i++) {
+                        nuevas.add(aleatoria(azar));
+                    }
+                    lista.addAll(azar.nextInt(lista.size() + 1), nuevas);
+                }
+            }
+            comprobar(lista, vista);
+        }
+    }
+
+    @Test
+    void unaPermutacionDelOrigenMantieneLaVista() {
+        Random azar = new Random(7);
+        ObservableList<Persona> lista = FXCollections.observableArrayList();
+        for (int i = 0; i < 100; i++) {
+            lista.add(aleatoria(azar));
+        }
+        VistaOrdenada vista = new VistaOrdenada(lista);
+        vista.setOrden(ORDEN);
+
+        FXCollections.sort(lista, (a, b) -> a.getNombre().compareTo(b.getNombre()));
+
+        // La vista no se reordena: las personas iguales según el orden pueden quedar en cualquier sitio entre ellas
+        assertEquals(lista.size(), vista.size());
+        for (int v = 0; v < vista.size(); v++) {
+            assertSame(lista.get(vista.getSourceIndex(v)), vista.get(v));
+            assertEquals(v, vista.getViewIndex(vista.getSourceIndex(v)));
+            if (v > 0) {
+                assertTrue(ORDEN.comparador().compare(vista.get(v - 1), vista.get(v)) <= 0, "Posición " + v);
+            }
+        }
+    }
+}
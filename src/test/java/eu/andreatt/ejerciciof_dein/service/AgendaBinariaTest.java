@@ -0,0 +1,74 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgendaBinariaTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void guardarYCargarDevuelveLasMismasPersonas() throws IOException {
+        List<Persona> personas = List.of(new Persona("Ana", "López", 30), new Persona("Luis", "López", -4),
+                new Persona("Ana", "Gil", Integer.MAX_VALUE), new Persona("", "Ñúñez", Integer.MIN_VALUE));
+        Path archivo = dir.resolve("agenda.agdb");
+
+        int huella = AgendaBinaria.guardar(archivo, InstantaneaAgenda.de(personas));
+
+        assertEquals(personas, AgendaBinaria.cargar(archivo));
+        assertEquals(huella, AgendaBinaria.huella(archivo));
+        assertFalse(Files.exists(dir.resolve("agenda.agdb.tmp")));
+    }
+
+    @Test
+    void unByteCambiadoSeRechazaPorElCrc() throws IOException {
+        Path archivo = dir.resolve("agenda.agdb");
+        AgendaBinaria.guardar(archivo, InstantaneaAgenda.de(List.of(new Persona("Ana", "López", 30))));
+        byte[] datos = Files.readAllBytes(archivo);
+        datos[9] ^= 1;
+        Files.write(archivo, datos);
+
+        IOException error = assertThrows(IOException.class, () -> AgendaBinaria.cargar(archivo));
+
+        assertTrue(error.getMessage().contains("CRC"), error.getMessage());
+    }
+
+    @Test
+    void unTextoMasLargoQueElBufferSeLeeEntero() throws IOException {
+        // Los textos que cruzan el final del bloque de lectura se copian por partes
+        List<Persona> personas = List.of(new Persona("Ana", "x".repeat(200_000), 30), new Persona("ñ".repeat(40_000), "Gil", 41));
+        Path archivo = dir.resolve("largo.agdb");
+
+        AgendaBinaria.guardar(archivo, InstantaneaAgenda.de(personas));
+
+        assertEquals(personas, AgendaBinaria.cargar(archivo));
+    }
+
+    @Test
+    void masTextosQueElDiccionarioSeLeenIgual() throws IOException {
+        List<Persona> personas = new ArrayList<>();
+        for (int i = 0; i < AgendaBinaria.MAX_TEXTOS_DICCIONARIO + 1000; i++) {
+            // Apellidos repetidos a ambos lados del vaciado del diccionario
+            personas.add(new Persona("Nombre" + i, "Apellido" + i % 7, i));
+        }
+        Path archivo = dir.resolve("grande.agdb");
+
+        AgendaBinaria.guardar(archivo, InstantaneaAgenda.de(personas));
+
+        assertEquals(personas, AgendaBinaria.cargar(archivo));
+    }
+}
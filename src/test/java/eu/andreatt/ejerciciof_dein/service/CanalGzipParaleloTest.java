@@ -0,0 +1,112 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CanalGzipParaleloTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Filas CSV de algo más de tres bloques, para que el archivo tenga varios miembros.
+     */
+    private static byte[] datos() {
+        Random azar = new Random(5);
+        StringBuilder csv = new StringBuilder("nombre,apellido,edad\n");
+        while (csv.length() < 3 * CanalGzipParalelo.TAMANO_BLOQUE + 12_345) {
+            csv.append("Nombre").append(azar.nextInt(5000)).append(",Pérez").append(azar.nextInt(300))
+                    .append(',').append(azar.nextInt(100)).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void escribir(Path archivo, byte[] datos, int hilos) throws IOException {
+        Random azar = new Random(9);
+        try (CanalGzipParalelo canal = new CanalGzipParalelo(FileChannel.open(archivo,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), hilos)) {
+            int pos = 0;
+            while (pos < datos.length) {
+                // Escrituras de un byte, pequeñas y mayores que un bloque
+                int n = switch (azar.nextInt(3)) {
+                    case 0 -> 1;
+                    case 1 -> 1 + azar.nextInt(10_000);
+                    default -> CanalGzipParalelo.TAMANO_BLOQUE + azar.nextInt(1000);
+                };
+                ByteBuffer trozo = ByteBuffer.wrap(datos, pos, Math.min(n, datos.length - pos));
+                while (trozo.hasRemaining()) {
+                    pos += canal.write(trozo);
+                }
+            }
+        }
+    }
+
+    private static byte[] descomprimir(Path archivo) throws IOException {
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(archivo))) {
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            entrada.transferTo(salida);
+            return salida.toByteArray();
+        }
+    }
+
+    /**
+     * Cuenta los miembros gzip por sus cabeceras, que en este canal empiezan siempre igual.
+     */
+    private static int miembros(byte[] gzip) {
+        int miembros = 0;
+        for (int i = 0; i + 3 < gzip.length; i++) {
+            if (gzip[i] == 0x1f && gzip[i + 1] == (byte) 0x8b && gzip[i + 2] == 8 && gzip[i + 3] == 0) {
+                miembros++;
+            }
+        }
+        return miembros;
+    }
+
+    @Test
+    void variosMiembrosSeLeenConGZIPInputStream() throws IOException {
+        byte[] datos = datos();
+        Path archivo = dir.resolve("agenda.csv.gz");
+
+        escribir(archivo, datos, 4);
+
+        assertArrayEquals(datos, descomprimir(archivo));
+        assertTrue(miembros(Files.readAllBytes(archivo)) >= 4, "Se esperaba un miembro por bloque");
+    }
+
+    @Test
+    void elResultadoNoDependeDelNumeroDeHilos() throws IOException {
+        byte[] datos = datos();
+        Path uno = dir.resolve("uno.csv.gz");
+        Path varios = dir.resolve("varios.csv.gz");
+
+        escribir(uno, datos, 1);
+        escribir(varios, datos, 8);
+
+        assertArrayEquals(Files.readAllBytes(uno), Files.readAllBytes(varios));
+    }
+
+    @Test
+    void unArchivoVacioEsUnGzipValido() throws IOException {
+        Path archivo = dir.resolve("vacio.csv.gz");
+
+        escribir(archivo, new byte[0], 2);
+
+        assertEquals(0, descomprimir(archivo).length);
+    }
+}
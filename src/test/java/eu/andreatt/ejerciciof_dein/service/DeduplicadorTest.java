@@ -0,0 +1,77 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.ClavePersona;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeduplicadorTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Filas con muchas repetidas, y bastantes distintas como para no caber en el presupuesto mínimo.
+     */
+    private static List<ClavePersona> filas(int n, int distintas) {
+        Random azar = new Random(11);
+        List<ClavePersona> filas = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int k = azar.nextInt(distintas);
+            filas.add(new ClavePersona("Nombre" + k % 997, "Apellido" + k / 997, k % 7));
+        }
+        return filas;
+    }
+
+    @Test
+    void alDesbordarEntregaLoMismoYEnElMismoOrdenQueEnMemoria() throws IOException {
+        List<ClavePersona> filas = filas(120_000, 40_000);
+        Set<ClavePersona> esperadas = new LinkedHashSet<>(filas);
+
+        List<ClavePersona> entregadas = new ArrayList<>();
+        long duplicadas;
+        try (Deduplicador deduplicador = new Deduplicador(
+                (nombre, apellido, edad) -> entregadas.add(new ClavePersona(nombre, apellido, edad)), 0, dir)) {
+            for (ClavePersona fila : filas) {
+                deduplicador.recibir(fila.nombre(), fila.apellido(), fila.edad());
+            }
+            assertTrue(deduplicador.desbordado());
+            deduplicador.terminar();
+            duplicadas = deduplicador.duplicadas();
+        }
+
+        assertEquals(new ArrayList<>(esperadas), entregadas);
+        assertEquals(filas.size() - esperadas.size(), duplicadas);
+        try (Stream<Path> temporales = Files.list(dir)) {
+            assertEquals(0, temporales.count(), "Quedan archivos temporales");
+        }
+    }
+
+    @Test
+    void sinDesbordarEntregaCadaFilaNuevaAlMomento() throws IOException {
+        List<ClavePersona> filas = filas(5_000, 1_000);
+        List<ClavePersona> entregadas = new ArrayList<>();
+        try (Deduplicador deduplicador = new Deduplicador(
+                (nombre, apellido, edad) -> entregadas.add(new ClavePersona(nombre, apellido, edad)), 0, dir)) {
+            for (ClavePersona fila : filas) {
+                deduplicador.recibir(fila.nombre(), fila.apellido(), fila.edad());
+            }
+            assertFalse(deduplicador.desbordado());
+            assertEquals(new ArrayList<>(new LinkedHashSet<>(filas)), entregadas); // Antes de terminar
+            deduplicador.terminar();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.ClavePersona;
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiarioCambiosTest {
+
+    @TempDir
+    Path dir;
+
+    private Path agenda() {
+        return dir.resolve("agenda.agdb");
+    }
+
+    private Path diario() {
+        return dir.resolve("agenda.journal");
+    }
+
+    /**
+     * Abre el diario sobre la agenda vacía y registra dos altas, una modificación y una baja, sin compactar.
+     */
+    private void registrarCambios() throws IOException {
+        DiarioCambios diario = DiarioCambios.abrir(agenda(), diario());
+        assertTrue(diario.personasRecuperadas().isEmpty());
+        Persona ana = new Persona("Ana", "López", 30);
+        Persona luis = new Persona("Luis", "Gil", 40);
+        diario.registrarAlta(ana);
+        diario.registrarAlta(luis);
+        ClavePersona anterior = ClavePersona.de(ana);
+        ana.setEdad(31);
+        diario.registrarModificacion(anterior, ana);
+        diario.registrarBaja(luis);
+        diario.close();
+        assertNull(diario.error());
+    }
+
+    @Test
+    void losRegistrosSeReproducenAlReabrir() throws IOException {
+        registrarCambios();
+
+        try (DiarioCambios diario = DiarioCambios.abrir(agenda(), diario())) {
+            assertEquals(List.of(new Persona("Ana", "López", 31)), diario.personasRecuperadas());
+        }
+    }
+
+    @Test
+    void unRegistroAMediasMarcaElFinalDelDiario() throws IOException {
+        registrarCambios();
+        // Simula un cierre mientras se escribía un registro: longitud de 40 bytes y solo tres de ellos
+        Files.write(diario(), new byte[]{40, 1, 3, 'E'}, StandardOpenOption.APPEND);
+
+        try (DiarioCambios diario = DiarioCambios.abrir(agenda(), diario())) {
+            assertEquals(List.of(new Persona("Ana", "López", 31)), diario.personasRecuperadas());
+        }
+    }
+
+    @Test
+    void unRegistroDanadoSeIgnoraConLosSiguientes() throws IOException {
+        registrarCambios();
+        byte[] datos = Files.readAllBytes(diario());
+        datos[datos.length - 6] ^= 1; // Un byte de datos de la última baja
+
+        Files.write(diario(), datos);
+
+        try (DiarioCambios diario = DiarioCambios.abrir(agenda(), diario())) {
+            assertEquals(List.of(new Persona("Ana", "López", 31), new Persona("Luis", "Gil", 40)),
+                    diario.personasRecuperadas());
+        }
+    }
+
+    @Test
+    void trasCompactarSeReproduceSoloLoPosterior() throws IOException {
+        DiarioCambios diario = DiarioCambios.abrir(agenda(), diario());
+        Persona ana = new Persona("Ana", "López", 30);
+        diario.registrarAlta(ana);
+        diario.compactar(InstantaneaAgenda.de(List.of(ana)));
+        diario.registrarAlta(new Persona("Eva", "Sanz", 25));
+        diario.close();
+
+        try (DiarioCambios reabierto = DiarioCambios.abrir(agenda(), diario())) {
+            assertEquals(List.of(ana, new Persona("Eva", "Sanz", 25)), reabierto.personasRecuperadas());
+        }
+        // Al reabrir se compactó de nuevo: la agenda ya contiene las dos personas
+        assertEquals(List.of(ana, new Persona("Eva", "Sanz", 25)), AgendaBinaria.cargar(agenda()));
+    }
+
+    @Test
+    void unDiarioAnteriorALaAgendaSeIgnora() throws IOException {
+        registrarCambios();
+        byte[] antiguo = Files.readAllBytes(diario());
+        try (DiarioCambios diario = DiarioCambios.abrir(agenda(), diario())) {
+            diario.registrarAlta(new Persona("Eva", "Sanz", 25));
+        }
+        // Cierre entre guardar la agenda y sustituir el diario: queda el diario de la agenda anterior
+        DiarioCambios.abrir(agenda(), diario()).close();
+        Files.write(diario(), antiguo);
+
+        try (DiarioCambios diario = DiarioCambios.abrir(agenda(), diario())) {
+            assertEquals(List.of(new Persona("Ana", "López", 31), new Persona("Eva", "Sanz", 25)),
+                    diario.personasRecuperadas());
+        }
+    }
+
+    @Test
+    void unEscritorInterrumpidoSeNotificaYNoAcumulaCompactaciones() throws IOException, InterruptedException {
+        DiarioCambios diario = DiarioCambios.abrir(agenda(), diario());
+        Thread escritor = Thread.getAllStackTraces().keySet().stream()
+                .filter(hilo -> hilo.getName().equals("diario-cambios") && hilo.isAlive())
+                .findFirst().orElseThrow();
+        escritor.interrupt();
+        escritor.join();
+
+        assertInstanceOf(InterruptedIOException.class, diario.error());
+        Persona ana = new Persona("Ana", "López", 30);
+        diario.registrarAlta(ana);
+        diario.compactar(InstantaneaAgenda.de(List.of(ana))); // Se descarta: nadie la escribiría
+        assertFalse(diario.convieneCompactar());
+        assertThrows(InterruptedIOException.class, diario::close);
+        assertFalse(Files.exists(agenda()));
+    }
+}
@@ -0,0 +1,87 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LectorCsvParaleloTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Escribe un CSV de más de un trozo con líneas vacías y saltos de línea de Windows, y con una línea
+     * mal formada en el segundo trozo.
+     */
+    private Path archivoConError(String lineaMala) throws IOException {
+        Path archivo = dir.resolve("grande.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            out.write("nombre,apellido,edad\n");
+            long escritos = 0;
+            int i = 0;
+            while (escritos < LectorCsvParalelo.TAMANO_TROZO + (1 << 20)) {
+                String linea = i % 1000 == 0 ? "\n" : "Nombre" + i + ",Apellido" + i + "," + (i % 100) + (i % 2 == 0 ? "\r\n" : "\n");
+                out.write(linea);
+                escritos += linea.length();
+                i++;
+            }
+            out.write(lineaMala + "\n");
+            out.write("Ana,López,30\n");
+        }
+        return archivo;
+    }
+
+    private static String errorLineaALinea(Path archivo) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            return assertThrows(IOException.class, () -> PersonaCsv.leer(reader, (n, a, e) -> { })).getMessage();
+        }
+    }
+
+    @Test
+    void unaLineaSinCamposDaElMismoMensajeQueLaLecturaLineaALinea() throws IOException {
+        Path archivo = archivoConError("solo-un-campo");
+        String esperado = errorLineaALinea(archivo);
+
+        IOException error = assertThrows(IOException.class, () -> new LectorCsvParalelo().leer(archivo, (p, b) -> true));
+
+        assertTrue(esperado.startsWith("Línea "), esperado);
+        assertEquals(esperado, error.getMessage());
+    }
+
+    @Test
+    void unaEdadNoValidaDaElMismoMensajeQueLaLecturaLineaALinea() throws IOException {
+        Path archivo = archivoConError("Luis,Gil,cuarenta");
+        String esperado = errorLineaALinea(archivo);
+
+        IOException error = assertThrows(IOException.class, () -> new LectorCsvParalelo().leer(archivo, (p, b) -> true));
+
+        assertEquals(esperado, error.getMessage());
+    }
+
+    @Test
+    void sinErroresLeeLasMismasFilasQueLineaALinea() throws IOException {
+        Path archivo = dir.resolve("correcto.csv");
+        Files.writeString(archivo, "nombre,apellido,edad\nAna,López,30\r\n\nLuis,Gil,40,extra\nEva,Sanz,-1");
+
+        long[] filas = new long[1];
+        long leidas = new LectorCsvParalelo().leer(archivo, (personas, bytes) -> {
+            filas[0] += personas.size();
+            return true;
+        });
+
+        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            assertEquals(PersonaCsv.leer(reader, (n, a, e) -> { }), leidas);
+        }
+        assertEquals(3, filas[0]);
+    }
+}
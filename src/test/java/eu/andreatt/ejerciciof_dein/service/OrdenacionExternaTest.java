@@ -0,0 +1,66 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.OrdenPersonas;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrdenacionExternaTest {
+
+    private static final OrdenPersonas ORDEN = new OrdenPersonas(List.of(
+            new OrdenPersonas.Criterio(OrdenPersonas.Campo.APELLIDO, false),
+            new OrdenPersonas.Criterio(OrdenPersonas.Campo.NOMBRE, true),
+            new OrdenPersonas.Criterio(OrdenPersonas.Campo.EDAD, false)));
+
+    @TempDir
+    Path dir;
+
+    private record Fila(String nombre, String apellido, int edad) {
+    }
+
+    @Test
+    void conVariosTramosEnDiscoDaLoMismoQueElOrdenEnMemoria() throws IOException {
+        Random azar = new Random(3);
+        int n = 60_000; // Con el presupuesto mínimo de 1 MiB se vuelcan varios tramos
+        String[] nombres = new String[n];
+        String[] apellidos = new String[n];
+        int[] edades = new int[n];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = "Nombre" + azar.nextInt(200);
+            apellidos[i] = azar.nextBoolean() ? "Álvarez" + azar.nextInt(30) : "alvarez" + azar.nextInt(30);
+            edades[i] = azar.nextInt(100) - 5;
+        }
+
+        List<Fila> ordenadas = new ArrayList<>(n);
+        try (OrdenacionExterna ordenacion = new OrdenacionExterna(ORDEN,
+                (nombre, apellido, edad) -> ordenadas.add(new Fila(nombre, apellido, edad)), 0, dir)) {
+            for (int i = 0; i < n; i++) {
+                ordenacion.recibir(nombres[i], apellidos[i], edades[i]);
+            }
+            try (Stream<Path> temporales = Files.walk(dir)) {
+                assertTrue(temporales.anyMatch(Files::isRegularFile), "No se ha volcado ningún tramo");
+            }
+            ordenacion.terminar();
+        }
+
+        int[] esperado = ORDEN.ordenar(n, i -> nombres[i], i -> apellidos[i], i -> edades[i]);
+        assertEquals(n, ordenadas.size());
+        for (int k = 0; k < n; k++) {
+            int i = esperado[k];
+            assertEquals(new Fila(nombres[i], apellidos[i], edades[i]), ordenadas.get(k), "Fila " + k);
+        }
+        try (Stream<Path> temporales = Files.list(dir)) {
+            assertEquals(0, temporales.count(), "Quedan archivos temporales");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeguidorCsvTest {
+
+    /** Tiempo máximo de espera de un lote: el seguidor comprueba los archivos al menos cada dos segundos. */
+    private static final long ESPERA_MS = 10_000;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Receptor que deja cada lote en una cola para que el test lo espere.
+     */
+    private static final class Lotes implements SeguidorCsv.Receptor {
+
+        final BlockingQueue<List<Persona>> recibidos = new LinkedBlockingQueue<>();
+
+        @Override
+        public void recibir(Path archivo, List<Persona> personas) {
+            recibidos.add(personas);
+        }
+
+        @Override
+        public void error(Path archivo, String mensaje) {
+            throw new AssertionError(archivo + ": " + mensaje);
+        }
+
+        List<Persona> siguiente() throws InterruptedException {
+            List<Persona> lote = recibidos.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+            assertNotNull(lote, "No ha llegado ningún lote");
+            return lote;
+        }
+    }
+
+    private static void anadir(Path archivo, String texto) throws IOException {
+        Files.writeString(archivo, texto, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void unaLineaAMediasSeEntregaCuandoSeCompleta() throws IOException, InterruptedException {
+        Path archivo = dir.resolve("altas.csv");
+        Files.writeString(archivo, "Nombre,Apellido,Edad\nAna,López,30\nLu", StandardCharsets.UTF_8);
+        Lotes lotes = new Lotes();
+
+        SeguidorCsv seguidor = new SeguidorCsv(archivo, true, lotes);
+        try {
+            assertEquals(List.of(new Persona("Ana", "López", 30)), lotes.siguiente());
+
+            anadir(archivo, "is,Gil,40\r\nEva,");
+            assertEquals(List.of(new Persona("Luis", "Gil", 40)), lotes.siguiente());
+
+            anadir(archivo, "Sanz,25\n");
+            assertEquals(List.of(new Persona("Eva", "Sanz", 25)), lotes.siguiente());
+        } finally {
+            seguidor.close();
+        }
+    }
+
+    @Test
+    void unArchivoQueEncogeSeVuelveALeerDesdeElPrincipio() throws IOException, InterruptedException {
+        Path archivo = dir.resolve("altas.csv");
+        Files.writeString(archivo, "Nombre,Apellido,Edad\nAna,López,30\nLuis,Gil,40\n", StandardCharsets.UTF_8);
+        Lotes lotes = new Lotes();
+
+        SeguidorCsv seguidor = new SeguidorCsv(archivo, false, lotes);
+        try {
+            // Otro programa sustituye el archivo por uno nuevo, más corto que lo ya leído
+            Files.writeString(archivo, "Nombre,Apellido,Edad\nEva,Sanz,25\n", StandardCharsets.UTF_8);
+
+            assertEquals(List.of(new Persona("Eva", "Sanz", 25)), lotes.siguiente());
+        } finally {
+            seguidor.close();
+        }
+    }
+
+    @Test
+    void cerrarNoEsperaAlHiloNiEntregaMasLotes() throws IOException, InterruptedException {
+        Path archivo = dir.resolve("grande.csv");
+        StringBuilder texto = new StringBuilder("Nombre,Apellido,Edad\n");
+        for (int i = 0; i < 4 * SeguidorCsv.TAMANO_LOTE; i++) {
+            texto.append("Nombre").append(i).append(",Apellido,").append(i % 100).append('\n');
+        }
+        Files.writeString(archivo, texto, StandardCharsets.UTF_8);
+
+        CountDownLatch entregando = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        List<List<Persona>> recibidos = new ArrayList<>();
+        SeguidorCsv seguidor = new SeguidorCsv(archivo, true, new SeguidorCsv.Receptor() {
+            @Override
+            public void recibir(Path origen, List<Persona> personas) {
+                synchronized (recibidos) {
+                    recibidos.add(personas);
+                }
+                entregando.countDown();
+                try {
+                    continuar.await(); // El receptor tarda, como un hilo de JavaFX ocupado
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void error(Path origen, String mensaje) {
+                throw new AssertionError(mensaje);
+            }
+        });
+        assertTrue(entregando.await(ESPERA_MS, TimeUnit.MILLISECONDS));
+
+        // Si cerrar esperase al hilo, se quedaría bloqueado en el receptor
+        assertTimeoutPreemptively(Duration.ofSeconds(2), seguidor::close);
+        continuar.countDown();
+        Thread.sleep(500);
+
+        synchronized (recibidos) {
+            assertEquals(1, recibidos.size());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package eu.andreatt.ejerciciof_dein.service;
+
+import eu.andreatt.ejerciciof_dein.model.InstantaneaAgenda;
+import eu.andreatt.ejerciciof_dein.model.Persona;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServidorConsultasTest {
+
+    private ServidorConsultas servidor;
+
+    /**
+     * Respuesta de una petición: el código y el cuerpo.
+     */
+    private record Respuesta(int codigo, String cuerpo) {
+    }
+
+    @BeforeEach
+    void arrancar() throws IOException {
+        servidor = new ServidorConsultas(0);
+        servidor.publicar(InstantaneaAgenda.conClaves(List.of(new Persona("Ana", "López", 30),
+                new Persona("Luis", "Gil", 40), new Persona("Eva", "López", 25),
+                new Persona("Dice \"hola\"", "Barra\\Tab\tSalto\n\u0001", 50))));
+    }
+
+    @AfterEach
+    void parar() {
+        servidor.close();
+    }
+
+    /**
+     * Hace una petición GET escribiendo la cabecera {@code Host} a mano, cosa que los clientes HTTP del JDK no permiten.
+     */
+    private Respuesta pedir(String ruta, String host) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), servidor.getPuerto())) {
+            OutputStream salida = socket.getOutputStream();
+            salida.write(("GET " + ruta + " HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            salida.flush();
+            InputStream entrada = socket.getInputStream();
+            String respuesta = new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+            int codigo = Integer.parseInt(respuesta.substring(9, 12));
+            return new Respuesta(codigo, respuesta.substring(respuesta.indexOf("\r\n\r\n") + 4));
+        }
+    }
+
+    private Respuesta pedir(String ruta) throws IOException {
+        return pedir(ruta, "localhost:" + servidor.getPuerto());
+    }
+
+    @Test
+    void unHostAjenoSeRechaza() throws IOException {
+        assertEquals(403, pedir("/personas", "atacante.example:" + servidor.getPuerto()).codigo());
+        assertEquals(403, pedir("/personas", "localhost").codigo());
+        assertEquals(200, pedir("/personas", "127.0.0.1:" + servidor.getPuerto()).codigo());
+        assertEquals(200, pedir("/personas", "LocalHost:" + servidor.getPuerto()).codigo());
+    }
+
+    @Test
+    void laPaginaRespetaDesdeYLimite() throws IOException {
+        assertEquals("{\"total\":4,\"desde\":1,\"personas\":[{\"nombre\":\"Luis\",\"apellido\":\"Gil\",\"edad\":40}]}",
+                pedir("/personas?desde=1&limite=1").cuerpo());
+        assertEquals("{\"total\":2,\"desde\":1,\"personas\":[{\"nombre\":\"Eva\",\"apellido\":\"López\",\"edad\":25}]}",
+                pedir("/personas?q=apellido:lopez&desde=1&limite=5").cuerpo());
+        // Más allá del final la página está vacía, pero el total se sigue contando
+        assertEquals("{\"total\":2,\"desde\":9,\"personas\":[]}", pedir("/personas?q=apellido:lopez&desde=9").cuerpo());
+        assertEquals("{\"total\":4,\"desde\":0,\"personas\":[]}", pedir("/personas?limite=0").cuerpo());
+        assertEquals(400, pedir("/personas?desde=-1").codigo());
+        assertEquals(400, pedir("/personas?limite=muchos").codigo());
+    }
+
+    @Test
+    void losTextosSeEscapanEnElJson() throws IOException {
+        String cuerpo = pedir("/personas?desde=3").cuerpo();
+
+        assertEquals("{\"total\":4,\"desde\":3,\"personas\":[{\"nombre\":\"Dice \\\"hola\\\"\","
+                + "\"apellido\":\"Barra\\\\Tab\\tSalto\\n\\u0001\",\"edad\":50}]}", cuerpo);
+    }
+
+    @Test
+    void unaConsultaNoValidaDevuelve400() throws IOException {
+        Respuesta respuesta = pedir("/personas?q=edad%3Atreinta");
+
+        assertEquals(400, respuesta.codigo());
+        assertTrue(respuesta.cuerpo().startsWith("{\"error\":\"Edad no válida"), respuesta.cuerpo());
+    }
+}